@@ -0,0 +1,98 @@
+package com.example.android.popmovies;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the heap used by a deep grid of movies kept as a MovieData object per movie with the
+ * same movies kept in a MovieListStore. The movies are built the way the json parser builds them,
+ * with a separate String for every field of every movie even when the text is the same.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MovieListStoreFootprintTest
+{
+    private static final String TAG = MovieListStoreFootprintTest.class.getSimpleName();
+
+    // about 500 pages of 20 movies
+    private static final int MOVIE_COUNT = 10000;
+
+    // the movies are held in fields so they stay reachable only for as long as they are measured
+    private ArrayList<MovieData> mMovies;
+    private MovieListStore mStore;
+
+    @After
+    public void releaseMovies()
+    {
+        mMovies = null;
+        mStore = null;
+    }
+
+    @Test
+    public void storeUsesLessHeapThanMovieDataObjects() throws InterruptedException
+    {
+        long baseline = usedHeap();
+
+        mMovies = buildMovies();
+        long listBytes = usedHeap() - baseline;
+
+        mStore = new MovieListStore();
+        mStore.addAll(mMovies);
+        mMovies = null;
+        long storeBytes = usedHeap() - baseline;
+
+        Log.i(TAG, MOVIE_COUNT + " movies as MovieData objects: " + listBytes / 1024 + " KB, in a store: "
+                + storeBytes / 1024 + " KB");
+
+        assertEquals(MOVIE_COUNT, mStore.size());
+        assertTrue("The store used " + storeBytes + " bytes and the objects " + listBytes,
+                storeBytes < listBytes);
+    }
+
+    private static ArrayList<MovieData> buildMovies()
+    {
+        ArrayList<MovieData> movies = new ArrayList<>(MOVIE_COUNT);
+        for (int i = 0; i < MOVIE_COUNT; i++)
+        {
+            MovieData movie = new MovieData();
+            movie.id = 100000 + i;
+            movie.title = "Movie " + i;
+            movie.original_title = "Movie " + i;
+            movie.original_language = new String("en");
+            movie.poster_path = "/poster" + i + ".jpg";
+            movie.backdrop_path = "/backdrop" + i + ".jpg";
+            movie.overview = "A story about movie number " + i + " that goes on for a while so the overview "
+                    + "is about as long as a real one, with a hero, a villain and a twist nobody saw coming.";
+            movie.release_date = MovieData.toEpochDay(2017, 6, 1 + i % 28);
+            movie.popularity = 100.5 - i % 100;
+            movie.vote_count = 1000 + i;
+            movie.vote_average = 7.5;
+            movie.is_summary = true;
+            movies.add(movie);
+        }
+        return movies;
+    }
+
+    /**
+     * @return the bytes of the heap in use once the unreachable objects have been collected
+     */
+    private static long usedHeap() throws InterruptedException
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+        {
+            runtime.gc();
+            System.runFinalization();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
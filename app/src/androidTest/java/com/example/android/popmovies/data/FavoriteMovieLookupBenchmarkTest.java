@@ -0,0 +1,145 @@
+package com.example.android.popmovies.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.RenamingDelegatingContext;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Looks up every one of 10,000 favorites by its movie id through the content provider, and checks
+ * that SQLite finds them with the unique index on the movie id rather than by reading the table.
+ * The same lookups made without the index are timed for comparison.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FavoriteMovieLookupBenchmarkTest
+{
+    private static final String TAG = FavoriteMovieLookupBenchmarkTest.class.getSimpleName();
+
+    // The database file is prefixed with this so it doesn't replace the app's database
+    private static final String TEST_PREFIX = "lookup_benchmark.";
+
+    private static final String DATABASE_NAME = "favoriteMoviesDb.db";
+
+    private static final int FAVORITE_COUNT = 10000;
+
+    // Every lookup without the index reads the whole table, so only some of them are timed
+    private static final int UNINDEXED_LOOKUPS = 200;
+
+    private Context mContext;
+    private FavoriteMoviesContentProvider mProvider;
+    private FavoriteMoviesDbHelper mDbHelper;
+
+    @Before
+    public void storeFavorites()
+    {
+        mContext = new RenamingDelegatingContext(InstrumentationRegistry.getTargetContext(), TEST_PREFIX);
+        mContext.deleteDatabase(DATABASE_NAME);
+
+        mProvider = new FavoriteMoviesContentProvider();
+        mProvider.attachInfo(mContext, null);
+
+        ContentValues[] favorites = new ContentValues[FAVORITE_COUNT];
+        for (int i = 0; i < FAVORITE_COUNT; i++)
+        {
+            favorites[i] = FavoriteMoviesConcurrencyTest.buildFavorite(i + 1, "Movie " + (i + 1));
+        }
+        assertEquals(FAVORITE_COUNT,
+                mProvider.bulkInsert(FavoriteMoviesContract.FavoiteMovieEntry.CONTENT_URI, favorites));
+
+        mDbHelper = new FavoriteMoviesDbHelper(mContext);
+    }
+
+    @After
+    public void deleteDatabase()
+    {
+        mDbHelper.close();
+        mProvider.shutdown();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void lookupByMovieIdUsesTheUniqueIndex()
+    {
+        Cursor plan = mDbHelper.getReadableDatabase().rawQuery("EXPLAIN QUERY PLAN SELECT * FROM " +
+                FavoriteMoviesContract.FavoiteMovieEntry.TABLE_NAME + " WHERE " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_MOVIE_DB_ID + "=?", new String[]{"1"});
+        StringBuilder details = new StringBuilder();
+        try
+        {
+            while (plan.moveToNext())
+            {
+                // the last column describes the step
+                details.append(plan.getString(plan.getColumnCount() - 1)).append('\n');
+            }
+        }
+        finally
+        {
+            plan.close();
+        }
+
+        assertTrue("The lookup doesn't use the index: " + details,
+                details.toString().contains("INDEX " + FavoriteMoviesContract.FavoiteMovieEntry.TABLE_NAME + "_movie_id"));
+    }
+
+    @Test
+    public void everyFavoriteIsFoundByItsMovieId()
+    {
+        long start = System.nanoTime();
+        for (int movieId = 1; movieId <= FAVORITE_COUNT; movieId++)
+        {
+            Cursor favorite = mProvider.query(buildFavoriteUri(movieId), null, null, null, null);
+            try
+            {
+                assertTrue("Favorite " + movieId + " wasn't found", favorite.moveToFirst());
+            }
+            finally
+            {
+                favorite.close();
+            }
+        }
+        long indexedNanos = (System.nanoTime() - start) / FAVORITE_COUNT;
+
+        // the same lookup with SQLite told not to use an index
+        SQLiteDatabase db = mDbHelper.getReadableDatabase();
+        start = System.nanoTime();
+        for (int movieId = 1; movieId <= UNINDEXED_LOOKUPS; movieId++)
+        {
+            Cursor favorite = db.rawQuery("SELECT * FROM " + FavoriteMoviesContract.FavoiteMovieEntry.TABLE_NAME +
+                    " NOT INDEXED WHERE " + FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_MOVIE_DB_ID + "=?",
+                    new String[]{String.valueOf(movieId * (FAVORITE_COUNT / UNINDEXED_LOOKUPS))});
+            try
+            {
+                assertTrue(favorite.moveToFirst());
+            }
+            finally
+            {
+                favorite.close();
+            }
+        }
+        long unindexedNanos = (System.nanoTime() - start) / UNINDEXED_LOOKUPS;
+
+        Log.i(TAG, "Looking up one of " + FAVORITE_COUNT + " favorites took " + indexedNanos / 1000 +
+                " us with the index and " + unindexedNanos / 1000 + " us without it");
+
+        assertTrue(indexedNanos < unindexedNanos);
+    }
+
+    private static Uri buildFavoriteUri(int movieId)
+    {
+        return FavoriteMoviesContract.FavoiteMovieEntry.CONTENT_URI.buildUpon()
+                .appendPath(String.valueOf(movieId)).build();
+    }
+}
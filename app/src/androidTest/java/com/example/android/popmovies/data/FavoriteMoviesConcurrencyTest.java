@@ -0,0 +1,310 @@
+package com.example.android.popmovies.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.RenamingDelegatingContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Adds, removes and reads favorites through the content provider from several threads at once
+ * against the write-ahead logged database. The database is created under a renamed file so the
+ * favorites of the installed app are left alone.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FavoriteMoviesConcurrencyTest
+{
+    // The database file is prefixed with this so it doesn't replace the app's database
+    private static final String TEST_PREFIX = "concurrency_test.";
+
+    private static final String DATABASE_NAME = "favoriteMoviesDb.db";
+
+    // Every thread works on the same movie ids so they contend for the same rows
+    private static final int MOVIE_COUNT = 50;
+    private static final int WRITER_THREADS = 4;
+    private static final int READER_THREADS = 2;
+    private static final int ROUNDS = 20;
+
+    // How long a read may take while a write transaction is held open
+    private static final long READ_TIMEOUT_SECONDS = 2;
+
+    private Context mContext;
+    private BlockingProvider mProvider;
+
+    /**
+     * A provider whose inserts can be held inside the transaction of the batch applying them
+     */
+    public static class BlockingProvider extends FavoriteMoviesContentProvider
+    {
+        // counted down once an insert is waiting inside its transaction
+        volatile CountDownLatch insertStarted;
+
+        // the insert waits until this is counted down, null to insert without waiting
+        volatile CountDownLatch releaseInsert;
+
+        @Override
+        public Uri insert(@NonNull Uri uri, ContentValues values)
+        {
+            Uri inserted = super.insert(uri, values);
+            CountDownLatch release = releaseInsert;
+            if (release != null)
+            {
+                insertStarted.countDown();
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return inserted;
+        }
+    }
+
+    @Before
+    public void createProvider()
+    {
+        mContext = new RenamingDelegatingContext(InstrumentationRegistry.getTargetContext(), TEST_PREFIX);
+        mContext.deleteDatabase(DATABASE_NAME);
+
+        mProvider = new BlockingProvider();
+        mProvider.attachInfo(mContext, null);
+    }
+
+    @After
+    public void deleteDatabase()
+    {
+        mProvider.shutdown();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void concurrentInsertsDeletesAndQueriesDontFailOrDuplicate() throws Exception
+    {
+        final ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(WRITER_THREADS + READER_THREADS);
+
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int thread = 0; thread < WRITER_THREADS; thread++)
+        {
+            final boolean deletes = thread % 2 == 1;
+            tasks.add(executor.submit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        for (int round = 0; round < ROUNDS; round++)
+                        {
+                            for (int id = 1; id <= MOVIE_COUNT; id++)
+                            {
+                                if (deletes && id % 3 == round % 3)
+                                {
+                                    mProvider.delete(buildFavoriteUri(id), null, null);
+                                }
+                                else
+                                {
+                                    mProvider.insert(FavoriteMoviesContract.FavoiteMovieEntry.CONTENT_URI,
+                                            buildFavorite(id, "Movie " + id + " round " + round));
+                                }
+                            }
+                        }
+                    }
+                    catch (Throwable e)
+                    {
+                        errors.add(e);
+                    }
+                }
+            }));
+        }
+
+        for (int thread = 0; thread < READER_THREADS; thread++)
+        {
+            tasks.add(executor.submit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        for (int round = 0; round < ROUNDS * 5; round++)
+                        {
+                            countFavorites();
+                            Cursor favorite = mProvider.query(buildFavoriteUri(round % MOVIE_COUNT + 1),
+                                    null, null, null, null);
+                            favorite.getCount();
+                            favorite.close();
+                        }
+                    }
+                    catch (Throwable e)
+                    {
+                        errors.add(e);
+                    }
+                }
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> task : tasks)
+        {
+            task.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // a SQLiteDatabaseLockedException or any other failure of a thread fails the test
+        if (!errors.isEmpty())
+        {
+            Throwable first = errors.peek();
+            AssertionError failure = new AssertionError(errors.size() + " operations failed, the first with " + first);
+            failure.initCause(first);
+            throw failure;
+        }
+
+        // the unique movie id keeps each favorite to a single row however the upserts interleave
+        Cursor favorites = mProvider.query(FavoriteMoviesContract.FavoiteMovieEntry.CONTENT_URI,
+                new String[]{FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_MOVIE_DB_ID}, null, null, null);
+        HashSet<Integer> movieIds = new HashSet<>();
+        try
+        {
+            while (favorites.moveToNext())
+            {
+                assertTrue("Favorite " + favorites.getInt(0) + " is stored more than once",
+                        movieIds.add(favorites.getInt(0)));
+            }
+        }
+        finally
+        {
+            favorites.close();
+        }
+        assertFalse(movieIds.isEmpty());
+    }
+
+    @Test
+    public void readsAreNotBlockedByAnOpenWriteTransaction() throws Exception
+    {
+        mProvider.insert(FavoriteMoviesContract.FavoiteMovieEntry.CONTENT_URI, buildFavorite(1, "Committed"));
+
+        mProvider.insertStarted = new CountDownLatch(1);
+        mProvider.releaseInsert = new CountDownLatch(1);
+
+        // the batch holds its transaction open while the insert waits to be released
+        final ArrayList<ContentProviderOperation> batch = new ArrayList<>();
+        batch.add(ContentProviderOperation.newInsert(FavoriteMoviesContract.FavoiteMovieEntry.CONTENT_URI)
+                .withValues(buildFavorite(2, "Uncommitted"))
+                .build());
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        Future<?> write = writer.submit(new Callable<Void>()
+        {
+            @Override
+            public Void call() throws Exception
+            {
+                mProvider.applyBatch(batch);
+                return null;
+            }
+        });
+
+        try
+        {
+            assertTrue("The batch never started", mProvider.insertStarted.await(10, TimeUnit.SECONDS));
+
+            // the read runs on another connection so it completes while the write is open, and
+            // only sees the committed favorite
+            ExecutorService reader = Executors.newSingleThreadExecutor();
+            Future<Integer> read = reader.submit(new Callable<Integer>()
+            {
+                @Override
+                public Integer call()
+                {
+                    return countFavorites();
+                }
+            });
+            try
+            {
+                assertEquals(1, (int) read.get(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            }
+            catch (TimeoutException e)
+            {
+                fail("Reading the favorites waited for the open write transaction");
+            }
+            reader.shutdown();
+        }
+        finally
+        {
+            mProvider.releaseInsert.countDown();
+        }
+
+        write.get(10, TimeUnit.SECONDS);
+        writer.shutdown();
+        mProvider.releaseInsert = null;
+        assertEquals(2, countFavorites());
+    }
+
+    private int countFavorites()
+    {
+        Cursor favorites = mProvider.query(FavoriteMoviesContract.FavoiteMovieEntry.CONTENT_URI,
+                null, null, null, null);
+        try
+        {
+            return favorites.getCount();
+        }
+        finally
+        {
+            favorites.close();
+        }
+    }
+
+    private static Uri buildFavoriteUri(int movieId)
+    {
+        return FavoriteMoviesContract.FavoiteMovieEntry.CONTENT_URI.buildUpon()
+                .appendPath(String.valueOf(movieId)).build();
+    }
+
+    static ContentValues buildFavorite(int movieId, String title)
+    {
+        ContentValues values = new ContentValues();
+        values.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER, "/poster" + movieId + ".jpg");
+        values.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ADULT, 0);
+        values.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_OVERVIEW, "The overview of " + title);
+        values.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_RELEASE_DATE, 17000);
+        values.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_MOVIE_DB_ID, movieId);
+        values.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ORIGINAL_TITLE, title);
+        values.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_BACKDROP, "/backdrop" + movieId + ".jpg");
+        values.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POPULARITY, 10.5);
+        values.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VOTE_AVERAGE, 7.5);
+        values.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VOTE_COUNT, 100);
+        values.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VIDEO, 0);
+        return values;
+    }
+}
@@ -0,0 +1,140 @@
+package utilities;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import com.example.android.popmovies.MovieData;
+import com.example.android.popmovies.ReviewData;
+import com.example.android.popmovies.TrailerData;
+
+/**
+ * The parsers TheMovieDBJsonUtils used before responses were streamed through a JsonReader. Each
+ * one is handed the whole response as a String and builds a JSONObject tree before any model
+ * object is created. They are only kept as the baseline of TheMovieDBJsonParserBenchmarkTest.
+ */
+final class LegacyTheMovieDBJsonUtils
+{
+    // Store the class name for logging
+    private static final String TAG = LegacyTheMovieDBJsonUtils.class.getSimpleName();
+
+    private LegacyTheMovieDBJsonUtils()
+    {
+    }
+
+    static ArrayList<ReviewData> getMovieReviewsFromJson(String MovieReviewJsonStr) throws JSONException
+    {
+        JSONObject reviewJson = new JSONObject(MovieReviewJsonStr);
+
+        JSONArray reviewArray = reviewJson.getJSONArray(TheMovieDBJsonUtils.OUTER_TAG);
+
+        ArrayList<ReviewData> parsedReviewData = new ArrayList<ReviewData>();
+
+        Log.v(TAG, "Creating ReviewData objects for the " + reviewArray.length() + " reviews that were passed by the api");
+
+        for (int i = 0; i < reviewArray.length(); i++)
+        {
+            JSONObject singleReviewJSON = reviewArray.getJSONObject(i);
+            ReviewData singleReview = new ReviewData();
+
+            singleReview.reviewId = singleReviewJSON.optString(TheMovieDBJsonUtils.RD_ID, null);
+            singleReview.reviewerName = singleReviewJSON.getString("author");
+            singleReview.reviewContent = singleReviewJSON.getString("content");
+
+            Log.v(TAG, "Adding ReviewData for the review by " + singleReview.reviewerName);
+            parsedReviewData.add(singleReview);
+        }
+
+        return parsedReviewData;
+    }
+
+    static ArrayList<TrailerData> getMovieTrailersFromJson(String MovieTrailerJsonStr) throws JSONException
+    {
+        JSONObject trailerJson = new JSONObject(MovieTrailerJsonStr);
+
+        JSONArray trailerArray = trailerJson.getJSONArray(TheMovieDBJsonUtils.OUTER_TAG);
+
+        ArrayList<TrailerData> parsedTrailerData = new ArrayList<TrailerData>();
+
+        Log.v(TAG, "Creating TrailerData objects for the " + trailerArray.length() + " Trailers that were passed by the api");
+
+        for (int i = 0; i < trailerArray.length(); i++)
+        {
+            JSONObject singleTrailerJSON = trailerArray.getJSONObject(i);
+            TrailerData singleTrailer = new TrailerData();
+
+            singleTrailer.setTrailerKey(singleTrailerJSON.getString("key"));
+            singleTrailer.trailerSite = singleTrailerJSON.getString("site");
+            singleTrailer.trailerType = singleTrailerJSON.getString("type");
+            singleTrailer.trailerName = singleTrailerJSON.getString("name");
+
+            Log.v(TAG, "Created the TrailerData objects for the trailer " + singleTrailer.trailerName);
+
+            if(singleTrailer.isTrailerSupported())
+            {
+                Log.v(TAG, "Added the supported movie trailer " + singleTrailer.trailerName);
+                parsedTrailerData.add(singleTrailer);
+            }
+        }
+
+        return parsedTrailerData;
+    }
+
+    /**
+     * This method parses JSON from a web response and returns an array of MovieData with information
+     * about each movies.
+     *
+     * @param MovieJsonStr JSON response from server
+     *
+     * @return Array list of MovieData describing each movie
+     *
+     * @throws JSONException If JSON data cannot be properly parsed
+     */
+    static ArrayList<MovieData> getMovieDataFromJson(String MovieJsonStr)
+            throws JSONException
+    {
+        // The overall response as a JSONObject
+        JSONObject movieJson = new JSONObject(MovieJsonStr);
+
+        // The array of data about each movie
+        JSONArray movieArray = movieJson.getJSONArray(TheMovieDBJsonUtils.OUTER_TAG);
+
+        // stores the information about each movie
+        ArrayList<MovieData> parsedMovieData = new ArrayList<>();
+        Log.v(TAG, "Creating MovieData objects for the " + movieArray.length() + " movies that were passed by the api");
+        // loop through all the JSON objects containing movie data
+        for (int i = 0; i < movieArray.length(); i++)
+        {
+
+            /* Get the JSON object representing the movie data */
+            JSONObject singleMovieJSON = movieArray.getJSONObject(i);
+            MovieData singleMovie = new MovieData();
+
+            // Retrieve and store all the data about a single movie
+            singleMovie.poster_path = singleMovieJSON.getString(TheMovieDBJsonUtils.MD_POSTER_PATH);
+            singleMovie.adult = singleMovieJSON.optBoolean(TheMovieDBJsonUtils.MD_ADULT);
+            singleMovie.overview = singleMovieJSON.getString(TheMovieDBJsonUtils.MD_OVERVIEW);
+            singleMovie.release_date = TheMovieDBJsonUtils.releaseDay(singleMovieJSON.optString(TheMovieDBJsonUtils.MD_RELEASE_DATE));
+            singleMovie.id = singleMovieJSON.getInt(TheMovieDBJsonUtils.MD_ID);
+            singleMovie.original_title = singleMovieJSON.getString(TheMovieDBJsonUtils.MD_ORIGINAL_TITLE);
+            singleMovie.original_language = singleMovieJSON.getString(TheMovieDBJsonUtils.MD_ORIGINAL_LANGUAGE);
+            singleMovie.title = singleMovieJSON.getString(TheMovieDBJsonUtils.MD_TITLE);
+            singleMovie.backdrop_path = singleMovieJSON.getString(TheMovieDBJsonUtils.MD_BACKDROP_PATH);
+            singleMovie.popularity = singleMovieJSON.optDouble(TheMovieDBJsonUtils.MD_POPULARITY, 0);
+            singleMovie.vote_count = singleMovieJSON.optInt(TheMovieDBJsonUtils.MD_VOTE_COUNT);
+            singleMovie.video = singleMovieJSON.optBoolean(TheMovieDBJsonUtils.MD_VIDEO);
+            singleMovie.vote_average = singleMovieJSON.optDouble(TheMovieDBJsonUtils.MD_VOTE_AVERAGE, 0);
+
+            Log.v(TAG, "Created the MovieData objects for the movie " + singleMovie.original_title);
+
+            // save the single movies data in the list of all the movies
+            parsedMovieData.add(singleMovie);
+        }
+
+        // Return the movie data
+        return parsedMovieData;
+    }
+}
@@ -0,0 +1,259 @@
+package utilities;
+
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+
+import com.example.android.popmovies.MovieData;
+import com.example.android.popmovies.ReviewData;
+import com.example.android.popmovies.TrailerData;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Parses a page of movies, a movie's videos and a page of its reviews with the JSONObject parsers
+ * the app used to have and with the streaming parsers of TheMovieDBJsonUtils, and compares the
+ * time and heap each one takes. The responses are stored as assets in the format theMovieDB
+ * returns them, and are read into memory first so only the parsing is measured.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TheMovieDBJsonParserBenchmarkTest
+{
+    private static final String TAG = TheMovieDBJsonParserBenchmarkTest.class.getSimpleName();
+
+    private static final String MOVIE_PAGE_ASSET = "tmdb/movie_page.json";
+    private static final String VIDEOS_ASSET = "tmdb/videos.json";
+    private static final String REVIEWS_ASSET = "tmdb/reviews.json";
+
+    // the responses are parsed this many times before and while they are measured
+    private static final int WARM_UP_ITERATIONS = 20;
+    private static final int ITERATIONS = 200;
+
+    // the old parsers were handed the response as a String
+    private static final String RESPONSE_ENCODING = "UTF-8";
+
+    private byte[] mMoviePage;
+    private byte[] mVideos;
+    private byte[] mReviews;
+
+    /**
+     * A single parse of a response
+     */
+    private interface Parse
+    {
+        void run() throws Exception;
+    }
+
+    /**
+     * The average time and heap a parse took
+     */
+    private static class Measurement
+    {
+        long nanos;
+        long allocatedBytes;
+        long allocatedObjects;
+
+        @Override
+        public String toString()
+        {
+            return nanos / 1000 + " us, " + allocatedBytes + " bytes in " + allocatedObjects + " objects";
+        }
+    }
+
+    @Before
+    public void readResponses() throws Exception
+    {
+        mMoviePage = readAsset(MOVIE_PAGE_ASSET);
+        mVideos = readAsset(VIDEOS_ASSET);
+        mReviews = readAsset(REVIEWS_ASSET);
+    }
+
+    @Test
+    public void moviePage() throws Exception
+    {
+        ArrayList<MovieData> legacyMovies =
+                LegacyTheMovieDBJsonUtils.getMovieDataFromJson(new String(mMoviePage, RESPONSE_ENCODING));
+        ArrayList<MovieData> streamedMovies =
+                TheMovieDBJsonUtils.getMoviePageFromStream(new ByteArrayInputStream(mMoviePage)).results;
+        assertEquals(20, streamedMovies.size());
+        assertEquals(legacyMovies.size(), streamedMovies.size());
+        for (int i = 0; i < legacyMovies.size(); i++)
+        {
+            assertSameMovie(legacyMovies.get(i), streamedMovies.get(i));
+        }
+
+        compare(MOVIE_PAGE_ASSET, new Parse()
+        {
+            @Override
+            public void run() throws Exception
+            {
+                LegacyTheMovieDBJsonUtils.getMovieDataFromJson(new String(mMoviePage, RESPONSE_ENCODING));
+            }
+        }, new Parse()
+        {
+            @Override
+            public void run() throws Exception
+            {
+                TheMovieDBJsonUtils.getMoviePageFromStream(new ByteArrayInputStream(mMoviePage));
+            }
+        });
+    }
+
+    @Test
+    public void videos() throws Exception
+    {
+        ArrayList<TrailerData> legacyTrailers =
+                LegacyTheMovieDBJsonUtils.getMovieTrailersFromJson(new String(mVideos, RESPONSE_ENCODING));
+        ArrayList<TrailerData> streamedTrailers =
+                TheMovieDBJsonUtils.getMovieTrailersFromStream(new ByteArrayInputStream(mVideos));
+        assertTrue(!streamedTrailers.isEmpty());
+        assertEquals(legacyTrailers.size(), streamedTrailers.size());
+        for (int i = 0; i < legacyTrailers.size(); i++)
+        {
+            assertEquals(legacyTrailers.get(i).getTrailerKey(), streamedTrailers.get(i).getTrailerKey());
+            assertEquals(legacyTrailers.get(i).trailerName, streamedTrailers.get(i).trailerName);
+            assertEquals(legacyTrailers.get(i).trailerSite, streamedTrailers.get(i).trailerSite);
+            assertEquals(legacyTrailers.get(i).trailerType, streamedTrailers.get(i).trailerType);
+        }
+
+        compare(VIDEOS_ASSET, new Parse()
+        {
+            @Override
+            public void run() throws Exception
+            {
+                LegacyTheMovieDBJsonUtils.getMovieTrailersFromJson(new String(mVideos, RESPONSE_ENCODING));
+            }
+        }, new Parse()
+        {
+            @Override
+            public void run() throws Exception
+            {
+                TheMovieDBJsonUtils.getMovieTrailersFromStream(new ByteArrayInputStream(mVideos));
+            }
+        });
+    }
+
+    @Test
+    public void reviews() throws Exception
+    {
+        ArrayList<ReviewData> legacyReviews =
+                LegacyTheMovieDBJsonUtils.getMovieReviewsFromJson(new String(mReviews, RESPONSE_ENCODING));
+        ArrayList<ReviewData> streamedReviews =
+                TheMovieDBJsonUtils.getReviewPageFromStream(new ByteArrayInputStream(mReviews)).results;
+        assertTrue(!streamedReviews.isEmpty());
+        assertEquals(legacyReviews.size(), streamedReviews.size());
+        for (int i = 0; i < legacyReviews.size(); i++)
+        {
+            assertEquals(legacyReviews.get(i).reviewId, streamedReviews.get(i).reviewId);
+            assertEquals(legacyReviews.get(i).reviewerName, streamedReviews.get(i).reviewerName);
+            assertEquals(legacyReviews.get(i).reviewContent, streamedReviews.get(i).reviewContent);
+        }
+
+        compare(REVIEWS_ASSET, new Parse()
+        {
+            @Override
+            public void run() throws Exception
+            {
+                LegacyTheMovieDBJsonUtils.getMovieReviewsFromJson(new String(mReviews, RESPONSE_ENCODING));
+            }
+        }, new Parse()
+        {
+            @Override
+            public void run() throws Exception
+            {
+                TheMovieDBJsonUtils.getReviewPageFromStream(new ByteArrayInputStream(mReviews));
+            }
+        });
+    }
+
+    /**
+     * Measure both parsers, log the results and check the streaming parser allocates less
+     */
+    private static void compare(String response, Parse legacyParse, Parse streamingParse) throws Exception
+    {
+        Measurement legacy = measure(legacyParse);
+        Measurement streaming = measure(streamingParse);
+
+        Log.i(TAG, "Parsing " + response + " with JSONObject: " + legacy + ", with JsonReader: " + streaming);
+
+        // the runtime only counts allocations on some versions of Android
+        assumeTrue("Allocations aren't counted on this device", legacy.allocatedBytes > 0);
+        assertTrue("The streaming parser allocated " + streaming.allocatedBytes + " bytes and the JSONObject parser "
+                + legacy.allocatedBytes, streaming.allocatedBytes < legacy.allocatedBytes);
+    }
+
+    /**
+     * @return the average time and allocations of a parse on this thread
+     */
+    @SuppressWarnings("deprecation")
+    private static Measurement measure(Parse parse) throws Exception
+    {
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++)
+        {
+            parse.run();
+        }
+
+        Measurement measurement = new Measurement();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+        {
+            parse.run();
+        }
+        measurement.nanos = (System.nanoTime() - start) / ITERATIONS;
+
+        // counted separately so counting doesn't slow down the timed parses
+        Debug.resetThreadAllocCount();
+        Debug.resetThreadAllocSize();
+        Debug.startAllocCounting();
+        try
+        {
+            for (int i = 0; i < ITERATIONS; i++)
+            {
+                parse.run();
+            }
+        }
+        finally
+        {
+            Debug.stopAllocCounting();
+        }
+        measurement.allocatedBytes = Debug.getThreadAllocSize() / ITERATIONS;
+        measurement.allocatedObjects = Debug.getThreadAllocCount() / ITERATIONS;
+        return measurement;
+    }
+
+    private static void assertSameMovie(MovieData expected, MovieData actual)
+    {
+        assertEquals(expected.id, actual.id);
+        assertEquals(expected.title, actual.title);
+        assertEquals(expected.original_title, actual.original_title);
+        assertEquals(expected.original_language, actual.original_language);
+        assertEquals(expected.overview, actual.overview);
+        assertEquals(expected.poster_path, actual.poster_path);
+        assertEquals(expected.backdrop_path, actual.backdrop_path);
+        assertEquals(expected.release_date, actual.release_date);
+        assertEquals(expected.popularity, actual.popularity, 0);
+        assertEquals(expected.vote_count, actual.vote_count);
+        assertEquals(expected.vote_average, actual.vote_average, 0);
+        assertEquals(expected.adult, actual.adult);
+        assertEquals(expected.video, actual.video);
+    }
+
+    /**
+     * @return the contents of an asset of the test apk
+     */
+    private static byte[] readAsset(String name) throws Exception
+    {
+        return HttpClient.readFully(InstrumentationRegistry.getContext().getAssets().open(name));
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.android.popmovies;
+
+import android.content.Context;
+import android.content.Loader;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import utilities.FetchScheduler;
+
+/**
+ * A loader whose request is submitted straight to a lane of the FetchScheduler rather than run on
+ * the shared AsyncTaskLoader pool, so it is prioritised against the other requests to theMovieDB,
+ * no other thread waits on it, and it is removed from the queue if the loader is cancelled before
+ * the request starts. The result is delivered on the main thread.
+ */
+public abstract class FetchTaskLoader<T> extends Loader<T>
+{
+    private final FetchScheduler.Priority mPriority;
+
+    // used to deliver the result on the main thread
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // the request currently queued or running, null when no request is being made. Only used on
+    // the main thread
+    private FetchRequest mRequest;
+
+    public FetchTaskLoader(Context context, FetchScheduler.Priority priority)
+    {
+        super(context);
+        mPriority = priority;
+    }
+
+    /**
+     * Make the request, this is run on one of the FetchScheduler's threads
+     *
+     * @return the result to deliver or null if the request failed
+     */
+    public abstract T fetchInBackground() throws Exception;
+
+    @Override
+    protected void onForceLoad()
+    {
+        super.onForceLoad();
+
+        // a forced load replaces any request that is still being made
+        cancelRequest();
+        mRequest = new FetchRequest();
+        mRequest.execute();
+    }
+
+    @Override
+    protected boolean onCancelLoad()
+    {
+        if (!cancelRequest())
+        {
+            return false;
+        }
+        deliverCancellation();
+        return true;
+    }
+
+    @Override
+    protected void onReset()
+    {
+        super.onReset();
+        cancelRequest();
+    }
+
+    /**
+     * Cancel the current request, removing it from the queue if it hasn't started
+     *
+     * @return true if there was a request to cancel
+     */
+    private boolean cancelRequest()
+    {
+        if (mRequest == null)
+        {
+            return false;
+        }
+        mRequest.cancel();
+        mRequest = null;
+        return true;
+    }
+
+    /**
+     * Make the request in a lane of the FetchScheduler and hand the result back on the main thread
+     */
+    private class FetchRequest implements Callable<Void>
+    {
+        // used to cancel the request, removing it from the queue if it hasn't started
+        private Future<Void> mFuture;
+
+        void execute()
+        {
+            mFuture = FetchScheduler.getInstance().submit(mPriority, this);
+        }
+
+        void cancel()
+        {
+            mFuture.cancel(true);
+        }
+
+        @Override
+        public Void call()
+        {
+            T result;
+            try
+            {
+                result = fetchInBackground();
+            }
+            catch (Exception e)
+            {
+                // if there was an issue print the stack trace to help determine what the issue is
+                e.printStackTrace();
+                result = null;
+            }
+
+            final T data = result;
+            mMainHandler.post(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    // ignore the result of a request that was cancelled or replaced since
+                    if (mRequest != FetchRequest.this)
+                    {
+                        return;
+                    }
+                    mRequest = null;
+                    if (!isAbandoned())
+                    {
+                        deliverResult(data);
+                    }
+                }
+            });
+            return null;
+        }
+    }
+}
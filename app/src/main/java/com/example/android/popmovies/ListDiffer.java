@@ -0,0 +1,312 @@
+package com.example.android.popmovies;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+import android.support.v7.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Holds the list displayed by an adapter and updates the adapter with only the items that changed
+ * when a new list is submitted. The difference between the lists is calculated on a background
+ * thread and the new list only replaces the displayed list once the changes are dispatched, so the
+ * adapter always sees a list that matches the events it has received.
+ *
+ * The lists can be of any type that a ListCallback knows how to copy and compare, so a list does
+ * not have to be an object per item. ArrayListCallback handles the common case of an ArrayList.
+ * An adapter that displays several lists one after the other gives each list its own differ with
+ * an AdapterSectionCallback, which moves the changes to the positions the list is displayed at.
+ *
+ * Must only be used from the main thread.
+ */
+
+public class ListDiffer<L>
+{
+    /**
+     * Decides if two items represent the same thing and if it is displayed the same way
+     */
+    public interface ItemCallback<T>
+    {
+        boolean areItemsTheSame(T oldItem, T newItem);
+
+        boolean areContentsTheSame(T oldItem, T newItem);
+    }
+
+    /**
+     * Knows how to create, copy, extend and compare the items of a type of list
+     */
+    public interface ListCallback<L>
+    {
+        L newList();
+
+        L copy(L list);
+
+        int size(L list);
+
+        void addAll(L list, L items);
+
+        boolean areItemsTheSame(L oldList, int oldPosition, L newList, int newPosition);
+
+        boolean areContentsTheSame(L oldList, int oldPosition, L newList, int newPosition);
+    }
+
+    /**
+     * Compares the items of ArrayLists with an ItemCallback
+     */
+    public static class ArrayListCallback<T> implements ListCallback<ArrayList<T>>
+    {
+        private final ItemCallback<T> mItemCallback;
+
+        public ArrayListCallback(ItemCallback<T> itemCallback)
+        {
+            mItemCallback = itemCallback;
+        }
+
+        @Override
+        public ArrayList<T> newList()
+        {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public ArrayList<T> copy(ArrayList<T> list)
+        {
+            return new ArrayList<>(list);
+        }
+
+        @Override
+        public int size(ArrayList<T> list)
+        {
+            return list.size();
+        }
+
+        @Override
+        public void addAll(ArrayList<T> list, ArrayList<T> items)
+        {
+            list.addAll(items);
+        }
+
+        @Override
+        public boolean areItemsTheSame(ArrayList<T> oldList, int oldPosition, ArrayList<T> newList, int newPosition)
+        {
+            return mItemCallback.areItemsTheSame(oldList.get(oldPosition), newList.get(newPosition));
+        }
+
+        @Override
+        public boolean areContentsTheSame(ArrayList<T> oldList, int oldPosition, ArrayList<T> newList, int newPosition)
+        {
+            return mItemCallback.areContentsTheSame(oldList.get(oldPosition), newList.get(newPosition));
+        }
+    }
+
+    /**
+     * Tells an adapter about the changes to a list that is displayed from an adapter position
+     * other than the first, such as a section of an adapter that displays several lists
+     */
+    public abstract static class AdapterSectionCallback implements ListUpdateCallback
+    {
+        private final RecyclerView.Adapter<?> mAdapter;
+
+        public AdapterSectionCallback(RecyclerView.Adapter<?> adapter)
+        {
+            mAdapter = adapter;
+        }
+
+        /**
+         * @return the adapter position of the first item of the list, asked for every change
+         * since the sections before the list may have changed size
+         */
+        protected abstract int getSectionStart();
+
+        @Override
+        public void onInserted(int position, int count)
+        {
+            mAdapter.notifyItemRangeInserted(getSectionStart() + position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count)
+        {
+            mAdapter.notifyItemRangeRemoved(getSectionStart() + position, count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition)
+        {
+            int sectionStart = getSectionStart();
+            mAdapter.notifyItemMoved(sectionStart + fromPosition, sectionStart + toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload)
+        {
+            mAdapter.notifyItemRangeChanged(getSectionStart() + position, count, payload);
+        }
+    }
+
+    // the lists of every adapter are compared one at a time on the same background thread
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final ListUpdateCallback mUpdateCallback;
+    private final ListCallback<L> mListCallback;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // the list the adapter is currently displaying
+    private L mList;
+
+    // the list that is being compared to the displayed list, null if there isn't one
+    private L mPendingList;
+
+    // increased with every submitted list so the result of an older comparison is ignored
+    private int mGeneration;
+
+    public ListDiffer(RecyclerView.Adapter<?> adapter, ListCallback<L> listCallback)
+    {
+        this(new AdapterSectionCallback(adapter)
+        {
+            @Override
+            protected int getSectionStart()
+            {
+                return 0;
+            }
+        }, listCallback);
+    }
+
+    /**
+     * @param updateCallback told about the inserted, removed, moved and changed items of the displayed list
+     */
+    public ListDiffer(ListUpdateCallback updateCallback, ListCallback<L> listCallback)
+    {
+        mUpdateCallback = updateCallback;
+        mListCallback = listCallback;
+        mList = listCallback.newList();
+    }
+
+    /**
+     * @return the list the adapter is currently displaying, it must not be modified
+     */
+    public L getList()
+    {
+        return mList;
+    }
+
+    /**
+     * @return the most recently submitted list even if it isn't displayed yet, it must not be modified
+     */
+    public L getLatestList()
+    {
+        return mPendingList != null ? mPendingList : mList;
+    }
+
+    /**
+     * Replace the displayed list. An empty list is replaced or cleared straight away, otherwise
+     * the adapter is told about the inserted, removed, moved and changed items once they are known.
+     *
+     * @param newList the items to display or null to display nothing
+     */
+    public void submitList(L newList)
+    {
+        final int generation = ++mGeneration;
+        mPendingList = null;
+
+        if (newList == null || mListCallback.size(newList) == 0)
+        {
+            int removedCount = mListCallback.size(mList);
+            mList = mListCallback.newList();
+            mUpdateCallback.onRemoved(0, removedCount);
+            return;
+        }
+
+        // the list is copied so later changes by the caller don't affect the displayed list
+        final L submittedList = mListCallback.copy(newList);
+        if (mListCallback.size(mList) == 0)
+        {
+            mList = submittedList;
+            mUpdateCallback.onInserted(0, mListCallback.size(submittedList));
+            return;
+        }
+
+        final L oldList = mList;
+        mPendingList = submittedList;
+        DIFF_EXECUTOR.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(new DiffUtil.Callback()
+                {
+                    @Override
+                    public int getOldListSize()
+                    {
+                        return mListCallback.size(oldList);
+                    }
+
+                    @Override
+                    public int getNewListSize()
+                    {
+                        return mListCallback.size(submittedList);
+                    }
+
+                    @Override
+                    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition)
+                    {
+                        return mListCallback.areItemsTheSame(oldList, oldItemPosition, submittedList, newItemPosition);
+                    }
+
+                    @Override
+                    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition)
+                    {
+                        return mListCallback.areContentsTheSame(oldList, oldItemPosition, submittedList, newItemPosition);
+                    }
+                });
+
+                mMainHandler.post(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        // a newer list has been submitted since this one
+                        if (generation != mGeneration)
+                        {
+                            return;
+                        }
+                        mPendingList = null;
+                        mList = submittedList;
+                        result.dispatchUpdatesTo(mUpdateCallback);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Add items after the last item of the most recently submitted list, only the new items are bound
+     */
+    public void append(L items)
+    {
+        if (mPendingList != null)
+        {
+            // the items belong after the list that is still being compared
+            L newList = mListCallback.copy(mPendingList);
+            mListCallback.addAll(newList, items);
+            submitList(newList);
+            return;
+        }
+
+        int positionStart = mListCallback.size(mList);
+        mListCallback.addAll(mList, items);
+        mUpdateCallback.onInserted(positionStart, mListCallback.size(items));
+    }
+
+    /**
+     * @return true if both are null or they are equal
+     */
+    static boolean equals(Object a, Object b)
+    {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -6,40 +6,86 @@ import android.os.Parcelable;
 /**
  * Created by Daniel Sullivan on 5/2/2017.
  * Saves all the data relating to a single movie from theMovieDB
- *
- * The logic to write and retrieve the poster data in the parcelable is inspired by the stack overflow post
- * https://stackoverflow.com/questions/28135819/getting-nullpointerexception-attempt-to-get-length-of-null-array-in-parcelable
  */
 
 public class MovieData implements Parcelable
 {
-    public int poster_size = 0;
-    public byte[] poster_data;
+    // the name of the stored poster file of a favorite movie, null if the poster isn't stored
+    public String poster_file;
     public String poster_path;
-    public String adult;
+    public boolean adult;
     public String overview;
-    public String release_date;
-    public String id;
+    // the release date in days since 1970-01-01 or NO_RELEASE_DATE if theMovieDB doesn't have one
+    public int release_date = NO_RELEASE_DATE;
+    public int id;
     public String original_title;
     public String original_language;
     public String title;
     public String backdrop_path;
-    public String popularity;
-    public String vote_count;
-    public String video;
-    public String vote_average;
+    public double popularity;
+    public int vote_count;
+    public boolean video;
+    // the average user rating out of 10
+    public double vote_average;
+    // true if only the fields displayed in the grid have been loaded, the rest of a favorite
+    // movie's fields are loaded when it is opened
+    public boolean is_summary;
 
-    //the base path to retrieve a movie poster from
-    private String POSTER_BASE_PATH = "http://image.tmdb.org/t/p/w342/";
+    // used as the release date of movies without one
+    public static final int NO_RELEASE_DATE = Integer.MIN_VALUE;
+
+    // the size of the posters displayed in the app
+    public static final String DEFAULT_POSTER_SIZE = "w342";
+
+    //the base path to retrieve a movie poster from, followed by the size of the poster
+    private static final String POSTER_BASE_PATH = "http://image.tmdb.org/t/p/";
 
     public MovieData(){}
 
     /**
-     * @return the full address to the movie poster on theMovieDB
+     * @param posterSize one of the sizes theMovieDB resizes posters to such as w185
+     * @return the full address to the movie poster of the given size on theMovieDB
+     */
+    public String getPosterURL(String posterSize)
+    {
+        return POSTER_BASE_PATH + posterSize + "/" + poster_path;
+    }
+
+    /**
+     * @return the year the movie was released or an empty string if the release date isn't known
+     */
+    public String getReleaseYear()
+    {
+        if (release_date == NO_RELEASE_DATE)
+        {
+            return "";
+        }
+
+        // convert the days since the epoch to a year in the proleptic gregorian calendar
+        // http://howardhinnant.github.io/date_algorithms.html#civil_from_days
+        int days = release_date + 719468;
+        int era = (days >= 0 ? days : days - 146096) / 146097;
+        int dayOfEra = days - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        // the shifted year starts in march so january and february belong to the next year
+        int year = yearOfEra + era * 400 + (shiftedMonth >= 10 ? 1 : 0);
+        return String.valueOf(year);
+    }
+
+    /**
+     * @return the number of days between 1970-01-01 and the date
      */
-    public String getMoviePostURL()
+    public static int toEpochDay(int year, int month, int day)
     {
-        return  POSTER_BASE_PATH + poster_path;
+        // http://howardhinnant.github.io/date_algorithms.html#days_from_civil
+        year -= month <= 2 ? 1 : 0;
+        int era = (year >= 0 ? year : year - 399) / 400;
+        int yearOfEra = year - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
     }
 
     //required creator for implementing parcelable
@@ -61,28 +107,21 @@ public class MovieData implements Parcelable
     // convert a parcel into a MovieData object
     protected MovieData(Parcel in)
     {
-        poster_size = in.readInt();
-
-        // If there is a poster stored retrieve the poster data
-        if(poster_size>0)
-        {
-            poster_data = new byte[poster_size];
-            in.readByteArray(poster_data);
-        }
-
+        poster_file = in.readString();
         poster_path = in.readString();
-        adult = in.readString();
+        adult = in.readByte() != 0;
         overview = in.readString();
-        release_date = in.readString();
-        id = in.readString();
+        release_date = in.readInt();
+        id = in.readInt();
         original_title = in.readString();
         original_language = in.readString();
         title = in.readString();
         backdrop_path = in.readString();
-        popularity = in.readString();
-        vote_count = in.readString();
-        video = in.readString();
-        vote_average = in.readString();
+        popularity = in.readDouble();
+        vote_count = in.readInt();
+        video = in.readByte() != 0;
+        vote_average = in.readDouble();
+        is_summary = in.readByte() != 0;
     }
 
     @Override
@@ -94,25 +133,20 @@ public class MovieData implements Parcelable
     @Override
     public void writeToParcel(Parcel dest, int flags)
     {
-        dest.writeInt(poster_size);
-
-        // if there is a poster store the poster
-        if(poster_size>0)
-        {
-            dest.writeByteArray(poster_data);
-        }
+        dest.writeString(poster_file);
         dest.writeString(poster_path);
-        dest.writeString(adult);
+        dest.writeByte((byte) (adult ? 1 : 0));
         dest.writeString(overview);
-        dest.writeString(release_date);
-        dest.writeString(id);
+        dest.writeInt(release_date);
+        dest.writeInt(id);
         dest.writeString(original_title);
         dest.writeString(original_language);
         dest.writeString(title);
         dest.writeString(backdrop_path);
-        dest.writeString(popularity);
-        dest.writeString(vote_count);
-        dest.writeString(video);
-        dest.writeString(vote_average);
+        dest.writeDouble(popularity);
+        dest.writeInt(vote_count);
+        dest.writeByte((byte) (video ? 1 : 0));
+        dest.writeDouble(vote_average);
+        dest.writeByte((byte) (is_summary ? 1 : 0));
     }
 }
\ No newline at end of file
@@ -2,33 +2,32 @@ package com.example.android.popmovies;
 
 import android.app.LoaderManager;
 import android.content.AsyncQueryHandler;
-import android.content.AsyncTaskLoader;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Intent;
 import android.content.Loader;
 import android.database.Cursor;
 import android.databinding.DataBindingUtil;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.drawable.BitmapDrawable;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SimpleItemAnimator;
 import android.util.Log;
-import android.view.View;
 
 import com.example.android.popmovies.data.FavoriteMoviesContract;
+import com.example.android.popmovies.data.MovieRepository;
+import com.example.android.popmovies.data.PosterFileStore;
 import com.example.android.popmovies.databinding.ActivityMovieDetailBinding;
-import com.squareup.picasso.Picasso;
+import com.example.android.popmovies.posters.PosterCache;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
 
+import utilities.FetchScheduler;
 import utilities.NetworkUtils;
 import utilities.TheMovieDBJsonUtils;
 
@@ -41,18 +40,28 @@ import utilities.TheMovieDBJsonUtils;
  * I referenced the link below to use an asyncqueryhandler to perform content provider calls asynchronously
  * http://codetheory.in/using-asyncqueryhandler-to-access-content-providers-asynchronously-in-android/
  */
-public class MovieDetailActivity extends AppCompatActivity implements MovieTrailerAdapter.MovieTrailerAdapterOnClickHandler {
+public class MovieDetailActivity extends AppCompatActivity implements MovieDetailAdapter.MovieDetailAdapterOnClickHandler,
+        ReviewPager.ReviewPagerListener {
 
     // used for manipulating various UI components with binding
     ActivityMovieDetailBinding mBinding;
 
-    MovieReviewAdapter mMovieReviewAdapter;
-    MovieTrailerAdapter mTrailerAdapter;
+    // displays the movie's details, trailers and reviews
+    MovieDetailAdapter mDetailAdapter;
+
+    // loads more pages of reviews as the user scrolls towards the end of them
+    ReviewPager mReviewPager;
+
+    // measures the text of the reviews off the main thread
+    ReviewLayouts mReviewLayouts;
 
     int trailerLoaderID = 100;
     int reviewLoaderId = 200;
+    int detailLoaderId = 250;
 
     int favoriteMovieHandlerID = 300;
+    int favoriteDetailsHandlerID = 350;
+    int storedMovieHandlerID = 375;
 
     FavoritesQueryHandler favoritesQueryHandler;
 
@@ -91,17 +100,26 @@ public class MovieDetailActivity extends AppCompatActivity implements MovieTrail
     private void isFavoriteMovie() {
         // Query the favorite movies database to determine if it contains movie data with the matching id
         Uri uri = FavoriteMoviesContract.FavoiteMovieEntry.CONTENT_URI;
-        uri = uri.buildUpon().appendPath(movieData.id).build();
-        favoritesQueryHandler.startQuery(favoriteMovieHandlerID,null,uri, null, null, null, null);
+        uri = uri.buildUpon().appendPath(String.valueOf(movieData.id)).build();
+        // only the id is needed to know the movie is a favorite
+        favoritesQueryHandler.startQuery(favoriteMovieHandlerID, null, uri,
+                new String[]{FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_MOVIE_DB_ID}, null, null, null);
         // set the favorite button to disabled while we attempt to validate if this is a favorite movie
-        mBinding.favoriteButton.setEnabled(false);
+        mDetailAdapter.disableFavorite();
     }
 
     @Override
     protected void onSaveInstanceState(Bundle outState) {
-        // store the review data and trailer data so it can be retrieved if the screen is rotated
-        outState.putParcelableArrayList("reviewData", mMovieReviewAdapter.mReviewData);
-        outState.putParcelableArrayList("trailerData", mTrailerAdapter.mTrailerData);
+        // keep the review data and trailer data in the registry so it can be retrieved if the
+        // screen is rotated, the movie's id in the intent is all that is needed to find it
+        if (movieData != null) {
+            MovieDetails details = new MovieDetails();
+            details.movie = movieData;
+            details.trailers = mDetailAdapter.getTrailerData();
+            details.reviews.results = mDetailAdapter.getReviewData();
+            details.reviewPages = mReviewPager.getPages();
+            MovieRegistry.getInstance().putMovieDetails(details);
+        }
         super.onSaveInstanceState(outState);
     }
 
@@ -115,126 +133,309 @@ public class MovieDetailActivity extends AppCompatActivity implements MovieTrail
 
         Intent startingIntent = getIntent();
 
-        String movieDataKey = getString(R.string.movie_all_data_key);
-
         movieIDKey = getString(R.string.movie_id);
         apiToken = getString(R.string.apiToken);
 
         // Asynchronously makes requests to the content provider
         favoritesQueryHandler = new FavoritesQueryHandler(getContentResolver());
 
+        // Display the movie's details, trailers and reviews in a single list so only the rows on
+        // screen are laid out and bound however many reviews the movie has
+        RecyclerView detailView = mBinding.rvMovieDetail;
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        detailView.setLayoutManager(layoutManager);
+        detailView.setHasFixedSize(true);
+
+        // the header is updated in place as the movie is read instead of cross fading to a new row
+        ((SimpleItemAnimator) detailView.getItemAnimator()).setSupportsChangeAnimations(false);
+
+        mReviewLayouts = new ReviewLayouts(this);
+        mDetailAdapter = new MovieDetailAdapter(this, mReviewLayouts, getResources().getInteger(R.integer.reviewPreviewLines));
+        detailView.setAdapter(mDetailAdapter);
+
+        mReviewPager = new ReviewPager(apiToken, getResources().getInteger(R.integer.maxReviewPagesInMemory),
+                mReviewLayouts, this);
+
+        // request the next page of reviews before the user reaches the end of the reviews, this is
+        // also called after every layout that changes which rows are visible
+        detailView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                loadReviewsNearViewport(layoutManager);
+            }
+        });
+
         // If the starting intent is not null retrieve the information passed in about the movie
         if (startingIntent != null) {
 
-            // Check if the intent contains the various extras with the movie data, trailer and review data
-            // and if they were passed in display them in the appropriate views or get new data from theMovieDB api.
-            if (startingIntent.hasExtra(movieDataKey)) {
-                ArrayList<MovieData> allPassedMovieData = startingIntent.getParcelableArrayListExtra(movieDataKey);
-                if (allPassedMovieData.size() == 1) {
-                    movieData = allPassedMovieData.get(0);
-
-
+            // Check if the intent contains the id of the movie and display the movie the grid
+            // registered, or read the movie from the database if the app was restarted since then
+            if (startingIntent.hasExtra(movieIDKey)) {
+                int movieId = startingIntent.getIntExtra(movieIDKey, 0);
+                movieData = MovieRegistry.getInstance().getMovie(movieId);
+                if (movieData != null) {
                     Log.v(TAG, "Displaying detailed information for the movie " + movieData.original_language);
 
-                    // load the movie poster into the ImageView using the Picasso library or if a bitmap was
-                    // provided use that instead
-                    if (movieData.poster_data == null || movieData.poster_data.equals("")) {
-                        Log.v(TAG, "Loading the movie poster from the Url: " + movieData.poster_path);
-                        Picasso.with(getBaseContext()).load(movieData.getMoviePostURL()).into(mBinding.ivMoviePoster);
+                    // Display the movie data
+                    displayMovieSummary();
+                    if (movieData.is_summary) {
+                        // the grid of favorites only loaded the title and poster
+                        loadFavoriteDetails();
                     } else {
-                        // This bitmap logic was inspired by the stack overflow post:
-                        // https://stackoverflow.com/questions/8306623/get-bitmap-attached-to-imageview
-                        Bitmap mapData = BitmapFactory.decodeByteArray(movieData.poster_data, 0, movieData.poster_data.length);
-                        mBinding.ivMoviePoster.setImageBitmap(mapData);
+                        displayMovieDetails();
                     }
+                } else {
+                    Log.v(TAG, "The movie " + movieId + " is no longer registered, reading it from the database");
+                    movieData = new MovieData();
+                    movieData.id = movieId;
+                    movieData.is_summary = true;
+                    loadStoredMovie();
+                }
+                MovieRegistry.getInstance().putMovie(movieData);
+            }
 
-                    // Display the movie data
-                    mBinding.tvOriginalTitle.setText(movieData.title);
-                    mBinding.tvReleaseDate.setText(movieData.release_date);
-                    mBinding.tvPlotSynopsis.setText(movieData.overview);
-                    mBinding.tvUserRating.setText(movieData.vote_average);
+            // If the screen is being recreated and the registry still has the previously loaded
+            // review and trailer data use that data rather then re-obtaining the data.
+            MovieDetails savedDetails = null;
+            if (savedInstanceState != null && movieData != null) {
+                savedDetails = MovieRegistry.getInstance().getMovieDetails(movieData.id);
+            }
 
+            if (savedDetails != null) {
+                Log.v(TAG, "Using previously loaded movie data");
+                if (!savedDetails.reviewPages.isEmpty()) {
+                    mReviewPager.restore(String.valueOf(movieData.id), savedDetails.reviewPages);
+                    mReviewLayouts.measureInBackground(mReviewPager.getReviews());
+                    mDetailAdapter.setReviewData(mReviewPager.getReviews());
+                } else {
+                    mReviewLayouts.measureInBackground(savedDetails.reviews.results);
+                    mDetailAdapter.setReviewData(savedDetails.reviews.results);
                 }
+                mDetailAdapter.setTrailerData(savedDetails.trailers);
+            } else {
+                Log.v(TAG, "No previously saved movie data, loading data from theMovieDB api");
+                // if no previous data exists then retrieve new data
+
+                // get the trailers and reviews in a single request, if that fails the trailers
+                // and reviews are requested separately
+                Bundle movieDataBundle = new Bundle();
+                movieDataBundle.putString(movieIDKey, String.valueOf(movieData.id));
+                getLoaderManager().initLoader(detailLoaderId, movieDataBundle, movieDetailsLoaderCallbacks);
             }
 
-            // Get the recycler views that will display the trailers and the reviews
-            RecyclerView mTrailersView = mBinding.rvTrailers;
-            RecyclerView mReviewsView = mBinding.rvReviewss;
+            // Set the favorite button to the proper state depending on if the movie is a favorite
+            // movie or not, the button is part of the list so its state isn't restored with the views
+            isFavoriteMovie();
+        }
+    }
 
-            LinearLayoutManager layoutManager = new LinearLayoutManager(this);
-            mTrailersView.setLayoutManager(layoutManager);
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // a page of reviews that arrives after the screen is gone isn't needed
+        if (mReviewPager != null) {
+            mReviewPager.cancel();
+        }
+    }
 
-            LinearLayoutManager layoutManager2 = new LinearLayoutManager(this);
-            mReviewsView.setLayoutManager(layoutManager2);
+    /**
+     * Display the reviews of the pages the pager has in memory. The list keeps the review the user
+     * is reading in place when reviews are inserted or removed above it.
+     */
+    @Override
+    public void onReviewsChanged(ArrayList<ReviewData> reviews) {
+        mDetailAdapter.setReviewData(reviews);
+    }
+
+    /**
+     * Request the page of reviews after the displayed reviews once the user scrolls within a screen
+     * of their end, or the dropped page before them once the user scrolls within a screen of their start
+     */
+    private void loadReviewsNearViewport(LinearLayoutManager layoutManager) {
+        int firstVisible = layoutManager.findFirstVisibleItemPosition();
+        int lastVisible = layoutManager.findLastVisibleItemPosition();
+        if (firstVisible == RecyclerView.NO_POSITION || mDetailAdapter.getReviewCount() == 0) {
+            return;
+        }
+
+        // a screen's worth of rows at the current scroll position
+        int visibleRows = lastVisible - firstVisible + 1;
+        int firstReview = mDetailAdapter.getFirstReviewPosition();
+        int lastReview = mDetailAdapter.getItemCount() - 1;
+        if (lastVisible + visibleRows >= lastReview) {
+            mReviewPager.loadNextPage();
+        } else if (lastVisible >= firstReview && firstVisible - visibleRows <= firstReview) {
+            mReviewPager.loadPreviousPage();
+        }
+    }
 
-            // the child layouts size will not change in the RecyclerView
-            mTrailersView.setHasFixedSize(false);
-            mReviewsView.setHasFixedSize(false);
+    /**
+     * Display the movie's poster and title
+     */
+    private void displayMovieSummary() {
+        mDetailAdapter.setMovie(movieData);
+    }
 
-            mMovieReviewAdapter = new MovieReviewAdapter();
-            mTrailerAdapter = new MovieTrailerAdapter(this);
+    /**
+     * Display the fields of the movie that aren't part of a summary
+     */
+    private void displayMovieDetails() {
+        // the header displays the rest of the fields once the movie is no longer a summary
+        mDetailAdapter.setMovie(movieData);
+    }
 
-            mReviewsView.setAdapter(mMovieReviewAdapter);
-            mTrailersView.setAdapter(mTrailerAdapter);
+    /**
+     * Read the rest of the favorite movie's fields from the favorites database
+     */
+    private void loadFavoriteDetails() {
+        Uri uri = FavoriteMoviesContract.FavoiteMovieEntry.CONTENT_URI;
+        uri = uri.buildUpon().appendPath(String.valueOf(movieData.id)).build();
+        favoritesQueryHandler.startQuery(favoriteDetailsHandlerID, null, uri, null, null, null, null);
+    }
 
-            // If there is a saved instance state that contains previously loaded review and trailer data
-            // use that data rather then re-obtaining the data.
-            if (savedInstanceState != null && savedInstanceState.getParcelableArrayList("reviewData") != null && savedInstanceState.getParcelableArrayList("trailerData") != null) {
-                Log.v(TAG, "Using previously loaded movie data");
+    /**
+     * Read the movie from the movies cached for the popular and top rated lists, or from the
+     * favorites if it isn't cached. A movie the grid still displays stays cached when the first
+     * page of its list is refreshed, it is only removed once the grid no longer displays it.
+     */
+    private void loadStoredMovie() {
+        Uri uri = FavoriteMoviesContract.CachedMovieEntry.CONTENT_URI;
+        uri = uri.buildUpon().appendPath(String.valueOf(movieData.id)).build();
+        favoritesQueryHandler.startQuery(storedMovieHandlerID, null, uri, null, null, null, null);
+    }
 
-                ArrayList<ReviewData> reviewsSavedData = savedInstanceState.getParcelableArrayList("reviewData");
-                mMovieReviewAdapter.setReviewData(reviewsSavedData);
+    /**
+     * Display the cached movie or look for the movie in the favorites if it wasn't cached
+     */
+    private void onStoredMovieLoaded(Cursor cursor) {
+        if (!cursor.moveToFirst()) {
+            loadFavoriteDetails();
+            return;
+        }
 
-                ArrayList<TrailerData> trailersSavedData = savedInstanceState.getParcelableArrayList("trailerData");
-                mTrailerAdapter.setTrailerData(trailersSavedData);
-            } else {
-                Log.v(TAG, "No previously saved movie data, loading data from theMovieDB api");
-                // if no previous data exists then retrieve new data
+        movieData = MovieRepository.readMovie(cursor, new MovieRepository.MovieColumns(cursor));
+        MovieRegistry.getInstance().putMovie(movieData);
+        displayMovieSummary();
+        displayMovieDetails();
+    }
 
-                Bundle movieDataBundle = new Bundle();
-                movieDataBundle.putString(movieIDKey, movieData.id);
-                getLoaderManager().initLoader(reviewLoaderId, movieDataBundle, reviewDataLoaderCallbacks);
-                getLoaderManager().initLoader(trailerLoaderID, movieDataBundle, trailerDataLoaderCallbacks);
+    /**
+     * Fill in the fields of the movie summary from the favorite's row and display them
+     */
+    private void onFavoriteDetailsLoaded(Cursor cursor) {
+        if (!cursor.moveToFirst()) {
+            Log.v(TAG, "The favorite movie " + movieData.id + " is no longer stored");
+            return;
+        }
 
-                // Set the favorite button to the proper state depending on if the movie is a favorite movie or not
-                isFavoriteMovie();
-            }
+        // a movie read after the app was restarted doesn't have the summary the grid loaded
+        if (movieData.title == null) {
+            movieData.title = cursor.getString(cursor.getColumnIndex(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ORIGINAL_TITLE));
+            movieData.poster_path = cursor.getString(cursor.getColumnIndex(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER));
+            movieData.poster_file = cursor.getString(cursor.getColumnIndex(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_FILE));
+            displayMovieSummary();
         }
+
+        movieData.adult = cursor.getInt(cursor.getColumnIndex(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ADULT)) != 0;
+        movieData.overview = cursor.getString(cursor.getColumnIndex(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_OVERVIEW));
+        movieData.release_date = cursor.getInt(cursor.getColumnIndex(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_RELEASE_DATE));
+        movieData.backdrop_path = cursor.getString(cursor.getColumnIndex(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_BACKDROP));
+        movieData.popularity = cursor.getDouble(cursor.getColumnIndex(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POPULARITY));
+        movieData.vote_count = cursor.getInt(cursor.getColumnIndex(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VOTE_COUNT));
+        movieData.video = cursor.getInt(cursor.getColumnIndex(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VIDEO)) != 0;
+        movieData.vote_average = cursor.getDouble(cursor.getColumnIndex(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VOTE_AVERAGE));
+        movieData.is_summary = false;
+
+        displayMovieDetails();
     }
 
+    /**
+     * Request the trailers and reviews separately, used if they could not be retrieved in a single request
+     */
+    private void loadTrailersAndReviewsSeparately() {
+        Log.v(TAG, "Retrieving the trailers and reviews with separate requests");
+        Bundle movieDataBundle = new Bundle();
+        movieDataBundle.putString(movieIDKey, String.valueOf(movieData.id));
+        getLoaderManager().initLoader(reviewLoaderId, movieDataBundle, reviewDataLoaderCallbacks);
+        getLoaderManager().initLoader(trailerLoaderID, movieDataBundle, trailerDataLoaderCallbacks);
+    }
+
+    private LoaderManager.LoaderCallbacks<MovieDetails> movieDetailsLoaderCallbacks = new LoaderManager.LoaderCallbacks<MovieDetails>() {
+
+        @Override
+        public Loader<MovieDetails> onCreateLoader(int id, final Bundle args) {
+            return new FetchTaskLoader<MovieDetails>(getBaseContext(), FetchScheduler.Priority.DETAIL)
+            {
+                @Override
+                public MovieDetails fetchInBackground() throws Exception {
+                    // get the url to retrieve the movie's details with its trailers and reviews appended
+                    URL movieDBRequestUrl = NetworkUtils.buildMovieDetailsUrl(args.getString(movieIDKey), apiToken);
+
+                    Log.v(TAG, "Retrieving the movie details using the Url: " + movieDBRequestUrl);
+                    // get the details from theMovieDB, sharing the request if it is already being made,
+                    // and parse the details, trailers and reviews in a single pass
+                    MovieDetails details = NetworkUtils.fetch(movieDBRequestUrl, TheMovieDBJsonUtils.MOVIE_DETAILS_PARSER);
+
+                    // measure the text of the reviews while still off the main thread
+                    if (details != null) {
+                        mReviewLayouts.measure(details.reviews.results);
+                    }
+                    return details;
+                }
+
+                @Override
+                protected void onStartLoading()
+                {
+                    // if we don't already have trailer or review data get the data
+                    if(mDetailAdapter.getTrailerCount() == 0 && mDetailAdapter.getReviewCount() == 0)
+                    {
+                        forceLoad();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void onLoadFinished(Loader<MovieDetails> loader, MovieDetails data) {
+            if (data != null) {
+                Log.v(TAG, "Displaying the trailers and reviews");
+                mDetailAdapter.setTrailerData(data.trailers);
+                mReviewPager.start(String.valueOf(movieData.id), data.reviews);
+            } else {
+                loadTrailersAndReviewsSeparately();
+            }
+        }
+
+        @Override
+        public void onLoaderReset(Loader<MovieDetails> loader) {
+
+        }
+    };
+
     private LoaderManager.LoaderCallbacks<ArrayList<TrailerData>> trailerDataLoaderCallbacks = new LoaderManager.LoaderCallbacks<ArrayList<TrailerData>>() {
 
         @Override
         public Loader<ArrayList<TrailerData>> onCreateLoader(int id, final Bundle args) {
-            return new AsyncTaskLoader<ArrayList<TrailerData>>(getBaseContext())
+            return new FetchTaskLoader<ArrayList<TrailerData>>(getBaseContext(), FetchScheduler.Priority.DETAIL)
             {
                 @Override
-                public ArrayList<TrailerData> loadInBackground() {
+                public ArrayList<TrailerData> fetchInBackground() throws Exception {
                     // get the url to retrieve movie data based on the selected filter
                     URL movieDBRequestUrl = NetworkUtils.buildTrailersUrl(args.getString(movieIDKey), apiToken);
 
-                    try {
-
-                        Log.v(TAG, "Retrieving trailer data using the Url: " + movieDBRequestUrl);
-                        // get a response from theMovieDB
-                        String MovieDataResponse = NetworkUtils.getResponseFromHttpUrl(movieDBRequestUrl);
-
-                        // parse the response into TrailerData objects that contain information about each movie trailer
-                        ArrayList<TrailerData> allTrailerData = TheMovieDBJsonUtils
-                                .getMovieTrailersFromJson(MovieDataResponse);
-                        return allTrailerData;
-                    } catch (Exception e) {
-                        // if there was an issue print the stack trace to help determine what the issue is
-                        e.printStackTrace();
-                        return null;
-                    }
+                    Log.v(TAG, "Retrieving trailer data using the Url: " + movieDBRequestUrl);
+                    // get the trailers from theMovieDB and parse the response into TrailerData objects
+                    // that contain information about each movie trailer
+                    ArrayList<TrailerData> allTrailerData = NetworkUtils
+                            .fetch(movieDBRequestUrl, TheMovieDBJsonUtils.TRAILERS_PARSER);
+                    return allTrailerData;
                 }
 
                 @Override
                 protected void onStartLoading()
                 {
                     // if we don't already have trailer data get the data
-                   if(mTrailerAdapter.getItemCount() == 0)
+                   if(mDetailAdapter.getTrailerCount() == 0)
                     {
                         forceLoad();
                     }
@@ -247,7 +448,7 @@ public class MovieDetailActivity extends AppCompatActivity implements MovieTrail
             Log.v(TAG, "Displaying the trailers ");
 
             if (data != null) {
-                mTrailerAdapter.setTrailerData(data);
+                mDetailAdapter.setTrailerData(data);
             }
         }
 
@@ -257,37 +458,33 @@ public class MovieDetailActivity extends AppCompatActivity implements MovieTrail
         }
     };
 
-    private LoaderManager.LoaderCallbacks<ArrayList<ReviewData>> reviewDataLoaderCallbacks = new LoaderManager.LoaderCallbacks<ArrayList<ReviewData>>() {
+    private LoaderManager.LoaderCallbacks<ResultPage<ReviewData>> reviewDataLoaderCallbacks = new LoaderManager.LoaderCallbacks<ResultPage<ReviewData>>() {
         @Override
-        public Loader<ArrayList<ReviewData>> onCreateLoader(int id, final Bundle args) {
-            return new AsyncTaskLoader<ArrayList<ReviewData>>(getBaseContext()) {
+        public Loader<ResultPage<ReviewData>> onCreateLoader(int id, final Bundle args) {
+            return new FetchTaskLoader<ResultPage<ReviewData>>(getBaseContext(), FetchScheduler.Priority.DETAIL) {
                 @Override
-                public ArrayList<ReviewData> loadInBackground() {
+                public ResultPage<ReviewData> fetchInBackground() throws Exception {
                     // get the url to retrieve movie reviews data
                     URL movieDBRequestUrl = NetworkUtils.buildReviewUrl(args.getString(movieIDKey), apiToken);
 
-                    try {
+                    Log.v(TAG, "Retrieving movie review data using the Url: " + movieDBRequestUrl);
+                    // get the first page of reviews from theMovieDB and parse the response into
+                    // ReviewData objects that contain information about each movie review
+                    ResultPage<ReviewData> firstReviewPage = NetworkUtils
+                            .fetch(movieDBRequestUrl, TheMovieDBJsonUtils.REVIEW_PAGE_PARSER);
 
-                        Log.v(TAG, "Retrieving movie review data using the Url: " + movieDBRequestUrl);
-                        // get a response from theMovieDB
-                        String MovieDataResponse = NetworkUtils.getResponseFromHttpUrl(movieDBRequestUrl);
-
-                        // parse the response into ReviewData objects that contain information about each movie review
-                        ArrayList<ReviewData> allReviewsData = TheMovieDBJsonUtils
-                                .getMovieReviewsFromJson(MovieDataResponse);
-                        return allReviewsData;
-                    } catch (Exception e) {
-                        // if there was an issue print the stack trace to help determine what the issue is
-                        e.printStackTrace();
-                        return null;
+                    // measure the text of the reviews while still off the main thread
+                    if (firstReviewPage != null) {
+                        mReviewLayouts.measure(firstReviewPage.results);
                     }
+                    return firstReviewPage;
                 }
 
                 @Override
                 protected void onStartLoading()
                 {
                     // If there isn't any review data then get data from the api
-                    if(mMovieReviewAdapter.getItemCount() == 0)
+                    if(mDetailAdapter.getReviewCount() == 0)
                     {
                         forceLoad();
                     }
@@ -297,89 +494,104 @@ public class MovieDetailActivity extends AppCompatActivity implements MovieTrail
 
 
         @Override
-        public void onLoadFinished(Loader<ArrayList<ReviewData>> loader, ArrayList<ReviewData> data) {
+        public void onLoadFinished(Loader<ResultPage<ReviewData>> loader, ResultPage<ReviewData> data) {
             Log.v(TAG, "Displaying the reviews");
             if (data != null) {
-                mMovieReviewAdapter.setReviewData(data);
+                mReviewPager.start(String.valueOf(movieData.id), data);
             }
         }
 
         @Override
-        public void onLoaderReset(Loader<ArrayList<ReviewData>> loader) {
+        public void onLoaderReset(Loader<ResultPage<ReviewData>> loader) {
 
         }
     };
 
     /** Insert a new favorite movie or remove it if  it was already a favorite movie
-     *
-     * @param view
      */
-    public void favoriteMovie(View view)
+    @Override
+    public void onFavoriteClick()
     {
         // if the movie is not a favorite movie add it to the database otherwise it is already a favorite
         // so the user wants to remove it as a favorite
         if (!isFavorite)
         {
+            // disable the button while the poster is stored, the favorite is inserted once it has been saved
+            mDetailAdapter.disableFavorite();
+            new SaveFavoriteTask().execute(movieData);
+        }
+        else
+        {
+            // Remove the favorite movie from the database by specifying the movie to delete
+            Uri uri = FavoriteMoviesContract.FavoiteMovieEntry.CONTENT_URI;
+            uri = uri.buildUpon().appendPath(String.valueOf(movieData.id)).build();
+
+            favoritesQueryHandler.startDelete(favoriteMovieHandlerID, null, uri, null, null);
+
+            // toggle the button so it matches the current state of if the movie is a favorite movie or not
+            isFavoriteMovie();
+        }
+    }
+
+    /**
+     * Store the movie's poster in the PosterFileStore and then insert the favorite movie so the
+     * database only stores the name of the poster file
+     */
+    class SaveFavoriteTask extends AsyncTask<MovieData, Void, ContentValues>
+    {
+        @Override
+        protected ContentValues doInBackground(MovieData... movies)
+        {
+            MovieData favoriteMovie = movies[0];
+
             // Insert new favorite movie data via the ContentResolver
             ContentValues contentValues = new ContentValues();
 
-            // The logic to get the movie poster data as a bitmap to store into a database as a blob was inspired
-            // by the stack overflow post: https://stackoverflow.com/a/9357943
-            Bitmap bitmap = ((BitmapDrawable) mBinding.ivMoviePoster.getDrawable()).getBitmap();
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            bitmap.compress(Bitmap.CompressFormat.PNG, 0, outputStream);
-
-            byte[] imageData = outputStream.toByteArray();
-            try {
-                outputStream.close();
-            } catch (IOException e) {
-                Log.v(TAG, "Error encountered while storing the movie poster for: " + movieData.original_title);
+            try
+            {
+                // reuse the encoded poster that was already downloaded to display the movie
+                byte[] imageData = PosterCache.getInstance(MovieDetailActivity.this).getEncodedPoster(favoriteMovie);
+                String posterFile = PosterFileStore.save(MovieDetailActivity.this, imageData);
+                contentValues.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_FILE, posterFile);
+            }
+            catch (IOException e)
+            {
+                // the poster can be retrieved from theMovieDB later so still store the favorite
+                Log.v(TAG, "Error encountered while storing the movie poster for: " + favoriteMovie.original_title);
                 e.printStackTrace();
             }
 
             // store all the movie data
-            contentValues.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_SIZE, imageData.length);
-            contentValues.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_Data, imageData);
-            contentValues.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER, movieData.poster_path);
-            contentValues.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ADULT, movieData.adult);
-            contentValues.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_OVERVIEW, movieData.overview);
-            contentValues.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_RELEASE_DATE, movieData.release_date);
-            contentValues.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_MOVIE_DB_ID, movieData.id);
-            contentValues.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ORIGINAL_TITLE, movieData.title);
-            contentValues.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_BACKDROP, movieData.backdrop_path);
-            contentValues.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POPULARITY, movieData.popularity);
-            contentValues.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VOTE_COUNT, movieData.vote_count);
-            contentValues.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VIDEO, movieData.video);
-            contentValues.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VOTE_AVERAGE, movieData.vote_average);
-
-            // Insert the movie data via the content resolver
-            favoritesQueryHandler.startInsert(favoriteMovieHandlerID,null,FavoriteMoviesContract.FavoiteMovieEntry.CONTENT_URI, contentValues);
+            contentValues.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER, favoriteMovie.poster_path);
+            contentValues.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ADULT, favoriteMovie.adult);
+            contentValues.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_OVERVIEW, favoriteMovie.overview);
+            contentValues.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_RELEASE_DATE, favoriteMovie.release_date);
+            contentValues.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_MOVIE_DB_ID, favoriteMovie.id);
+            contentValues.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ORIGINAL_TITLE, favoriteMovie.title);
+            contentValues.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_BACKDROP, favoriteMovie.backdrop_path);
+            contentValues.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POPULARITY, favoriteMovie.popularity);
+            contentValues.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VOTE_COUNT, favoriteMovie.vote_count);
+            contentValues.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VIDEO, favoriteMovie.video);
+            contentValues.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VOTE_AVERAGE, favoriteMovie.vote_average);
+            return contentValues;
         }
-        else
+
+        @Override
+        protected void onPostExecute(ContentValues contentValues)
         {
-            // Remove the favorite movie from the database by specifying the movie to delete
-            Uri uri = FavoriteMoviesContract.FavoiteMovieEntry.CONTENT_URI;
-            uri = uri.buildUpon().appendPath(movieData.id).build();
+            // Insert the movie data via the content resolver
+            favoritesQueryHandler.startInsert(favoriteMovieHandlerID, null, FavoriteMoviesContract.FavoiteMovieEntry.CONTENT_URI, contentValues);
 
-            favoritesQueryHandler.startDelete(favoriteMovieHandlerID, null, uri, null, null);
+            // toggle the button so it matches the current state of if the movie is a favorite movie or not
+            isFavoriteMovie();
         }
-        // toggle the button so it matches the current state of if the movie is a favorite movie or not
-        isFavoriteMovie();
     }
 
     /**
      *  Toggle the button so it matches the current state of if the movie is a favorite movie or not
      */
     private void setFavorite() {
-        mBinding.favoriteButton.setEnabled(true);
-        if (isFavorite)
-        {
-            mBinding.favoriteButton.setText(getString(R.string.favoritedString));
-        }
-        else
-        {
-            mBinding.favoriteButton.setText(getString(R.string.nonfavoritedString));
-        }
+        mDetailAdapter.setFavorite(isFavorite);
     }
 
     // Asynchronously makes requests to the content provider
@@ -392,6 +604,24 @@ public class MovieDetailActivity extends AppCompatActivity implements MovieTrail
 
         @Override
         protected void onQueryComplete(int token, Object cookie, Cursor cursor) {
+            if (token == favoriteDetailsHandlerID) {
+                try {
+                    onFavoriteDetailsLoaded(cursor);
+                } finally {
+                    cursor.close();
+                }
+                return;
+            }
+
+            if (token == storedMovieHandlerID) {
+                try {
+                    onStoredMovieLoaded(cursor);
+                } finally {
+                    cursor.close();
+                }
+                return;
+            }
+
             int count = cursor.getCount();
             cursor.close();
 
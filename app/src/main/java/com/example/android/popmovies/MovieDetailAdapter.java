@@ -0,0 +1,495 @@
+package com.example.android.popmovies;
+
+import android.content.Context;
+import android.databinding.DataBindingUtil;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import com.example.android.popmovies.databinding.MovieDetailHeaderBinding;
+import com.example.android.popmovies.posters.PosterCache;
+import com.example.android.popmovies.posters.PosterSize;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/**
+ * Displays everything on the detail screen as a single list: a header with the movie's details
+ * followed by a section of trailers and a section of reviews, each starting with a label.
+ *
+ * Only the rows on screen are bound, so a movie with many long reviews is displayed as quickly as
+ * a movie without any. The review text is measured ahead of time by ReviewLayouts and each review
+ * only shows a preview until it is tapped.
+ */
+
+public class MovieDetailAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
+{
+    private static final int VIEW_TYPE_HEADER = 0;
+    private static final int VIEW_TYPE_SECTION_LABEL = 1;
+    private static final int VIEW_TYPE_TRAILER = 2;
+    private static final int VIEW_TYPE_REVIEW = 3;
+
+    // The header and the trailers label come before the first trailer
+    private static final int FIRST_TRAILER_POSITION = 2;
+
+    /**
+     * Stores the current movie's trailer data and updates only the trailers that changed when it is replaced
+     */
+    private final ListDiffer<ArrayList<TrailerData>> mTrailerData = new ListDiffer<>(new ListDiffer.AdapterSectionCallback(this)
+    {
+        @Override
+        protected int getSectionStart()
+        {
+            return FIRST_TRAILER_POSITION;
+        }
+    }, new ListDiffer.ArrayListCallback<>(new ListDiffer.ItemCallback<TrailerData>()
+    {
+        @Override
+        public boolean areItemsTheSame(TrailerData oldItem, TrailerData newItem)
+        {
+            return ListDiffer.equals(oldItem.getTrailerKey(), newItem.getTrailerKey());
+        }
+
+        @Override
+        public boolean areContentsTheSame(TrailerData oldItem, TrailerData newItem)
+        {
+            // only the name is displayed
+            return ListDiffer.equals(oldItem.trailerName, newItem.trailerName);
+        }
+    }));
+
+    /**
+     * Stores the current review data and updates only the reviews that changed when it is replaced
+     */
+    private final ListDiffer<ArrayList<ReviewData>> mReviewData = new ListDiffer<>(new ListDiffer.AdapterSectionCallback(this)
+    {
+        @Override
+        protected int getSectionStart()
+        {
+            return getFirstReviewPosition();
+        }
+    }, new ListDiffer.ArrayListCallback<>(new ListDiffer.ItemCallback<ReviewData>()
+    {
+        @Override
+        public boolean areItemsTheSame(ReviewData oldItem, ReviewData newItem)
+        {
+            // reviews parsed before they had an id are told apart by their author
+            if (oldItem.reviewId == null || newItem.reviewId == null)
+            {
+                return ListDiffer.equals(oldItem.reviewerName, newItem.reviewerName);
+            }
+            return oldItem.reviewId.equals(newItem.reviewId);
+        }
+
+        @Override
+        public boolean areContentsTheSame(ReviewData oldItem, ReviewData newItem)
+        {
+            return ListDiffer.equals(oldItem.reviewerName, newItem.reviewerName)
+                    && ListDiffer.equals(oldItem.reviewContent, newItem.reviewContent);
+        }
+    }));
+
+    /**
+     * Handles when a trailer or the favorite button is clicked on
+     */
+    private final MovieDetailAdapterOnClickHandler mClickHandler;
+
+    // The movie displayed in the header, null until it has been read
+    private MovieData mMovie;
+
+    // If the movie is a favorite movie
+    private boolean mFavorite;
+
+    // If the favorite button can be clicked, it is disabled while the favorite is being checked or changed
+    private boolean mFavoriteEnabled;
+
+    // The measured text of the reviews
+    private final ReviewLayouts mReviewLayouts;
+
+    // The number of lines of a review shown until it is expanded
+    private final int mReviewPreviewLines;
+
+    // The reviews the user expanded to show in full
+    private final HashSet<ReviewData> mExpandedReviews = new HashSet<>();
+
+    /**
+     * The interface that receives onClick messages.
+     */
+    public interface MovieDetailAdapterOnClickHandler
+    {
+        void onClick(TrailerData trailerData);
+
+        void onFavoriteClick();
+    }
+
+    /**
+     * Creates a MovieDetailAdapter and instantiates the clickHandler
+     *
+     * @param clickHandler
+     * @param reviewLayouts      measures the review text, shared with whatever retrieves the reviews
+     * @param reviewPreviewLines the number of lines of a review shown until it is expanded
+     */
+    public MovieDetailAdapter(MovieDetailAdapterOnClickHandler clickHandler, ReviewLayouts reviewLayouts,
+                              int reviewPreviewLines)
+    {
+        mClickHandler = clickHandler;
+        mReviewLayouts = reviewLayouts;
+        mReviewPreviewLines = reviewPreviewLines;
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(final RecyclerView recyclerView)
+    {
+        // measure the review text for the width the list is actually laid out at
+        recyclerView.addOnLayoutChangeListener(new View.OnLayoutChangeListener()
+        {
+            @Override
+            public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                                       int oldLeft, int oldTop, int oldRight, int oldBottom)
+            {
+                int listWidth = recyclerView.getWidth() - recyclerView.getPaddingLeft() - recyclerView.getPaddingRight();
+                if (mReviewLayouts.setListWidth(listWidth))
+                {
+                    mReviewLayouts.measureInBackground(getReviewData());
+
+                    // the displayed reviews were measured for the old width, rebind them after this layout
+                    recyclerView.post(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            notifyItemRangeChanged(getFirstReviewPosition(), getReviewCount());
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    @Override
+    public int getItemViewType(int position)
+    {
+        if (position == 0)
+        {
+            return VIEW_TYPE_HEADER;
+        }
+        if (position == FIRST_TRAILER_POSITION - 1 || position == getFirstReviewPosition() - 1)
+        {
+            return VIEW_TYPE_SECTION_LABEL;
+        }
+        return position < getFirstReviewPosition() ? VIEW_TYPE_TRAILER : VIEW_TYPE_REVIEW;
+    }
+
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup viewGroup, int viewType)
+    {
+        Context context = viewGroup.getContext();
+        LayoutInflater inflater = LayoutInflater.from(context);
+        boolean shouldAttachToParentImmediately = false;
+
+        switch (viewType)
+        {
+            case VIEW_TYPE_HEADER:
+                MovieDetailHeaderBinding binding = DataBindingUtil.inflate(inflater, R.layout.movie_detail_header,
+                        viewGroup, shouldAttachToParentImmediately);
+                return new HeaderViewHolder(binding);
+            case VIEW_TYPE_SECTION_LABEL:
+                return new SectionLabelViewHolder(inflater.inflate(R.layout.movie_detail_section_label,
+                        viewGroup, shouldAttachToParentImmediately));
+            case VIEW_TYPE_TRAILER:
+                return new TrailerViewHolder(inflater.inflate(R.layout.movie_trailer_list_item,
+                        viewGroup, shouldAttachToParentImmediately));
+            default:
+                return new ReviewViewHolder(inflater.inflate(R.layout.movie_review_list_item,
+                        viewGroup, shouldAttachToParentImmediately));
+        }
+    }
+
+    /**
+     * when the view is created display the part of the movie's details at the position
+     **/
+    @Override
+    public void onBindViewHolder(RecyclerView.ViewHolder holder, int position)
+    {
+        switch (holder.getItemViewType())
+        {
+            case VIEW_TYPE_HEADER:
+                ((HeaderViewHolder) holder).bind();
+                break;
+            case VIEW_TYPE_SECTION_LABEL:
+                ((SectionLabelViewHolder) holder).mLabelTextView.setText(position == FIRST_TRAILER_POSITION - 1
+                        ? R.string.trailers_label : R.string.reviews_label);
+                break;
+            case VIEW_TYPE_TRAILER:
+                TrailerData trailerData = mTrailerData.getList().get(position - FIRST_TRAILER_POSITION);
+                ((TrailerViewHolder) holder).mTrailerNameTextView.setText(trailerData.trailerName);
+                break;
+            default:
+                ((ReviewViewHolder) holder).bind(getReview(position));
+                break;
+        }
+    }
+
+    /**
+     * Displays the movie's title, poster, details and the favorite button
+     */
+    class HeaderViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener
+    {
+        final MovieDetailHeaderBinding mBinding;
+
+        HeaderViewHolder(MovieDetailHeaderBinding binding)
+        {
+            super(binding.getRoot());
+            mBinding = binding;
+            mBinding.favoriteButton.setOnClickListener(this);
+        }
+
+        void bind()
+        {
+            if (mMovie != null)
+            {
+                // load the movie poster at the size stored with favorites, the poster cache reuses a
+                // poster already decoded at that size or uses the stored poster of a favorite movie
+                Context context = itemView.getContext();
+                PosterCache.getInstance(context).loadPoster(mMovie, PosterSize.DEFAULT, mBinding.ivMoviePoster);
+                mBinding.tvOriginalTitle.setText(mMovie.title);
+
+                // a summary only has the title and poster until the rest of the movie is read
+                if (!mMovie.is_summary)
+                {
+                    mBinding.tvReleaseDate.setText(mMovie.getReleaseYear());
+                    mBinding.tvPlotSynopsis.setText(mMovie.overview);
+                    mBinding.tvUserRating.setText(context.getString(R.string.user_rating, mMovie.vote_average));
+                }
+            }
+
+            mBinding.favoriteButton.setEnabled(mFavoriteEnabled);
+            mBinding.favoriteButton.setText(mFavorite ? R.string.favoritedString : R.string.nonfavoritedString);
+        }
+
+        @Override
+        public void onClick(View v)
+        {
+            mClickHandler.onFavoriteClick();
+        }
+    }
+
+    /**
+     * Displays the label at the start of the trailers or the reviews
+     */
+    class SectionLabelViewHolder extends RecyclerView.ViewHolder
+    {
+        final TextView mLabelTextView;
+
+        SectionLabelViewHolder(View view)
+        {
+            super(view);
+            mLabelTextView = (TextView) view;
+        }
+    }
+
+    /**
+     * Displays the movie trailer name
+     */
+    class TrailerViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener
+    {
+        final TextView mTrailerNameTextView;
+
+        TrailerViewHolder(View view)
+        {
+            super(view);
+            // Get the text view and set the on click listener so we can determine when
+            // the user has clicked on the movie trailer so we can display the trailer
+            mTrailerNameTextView = (TextView) view.findViewById(R.id.trailerName);
+            view.setOnClickListener(this);
+        }
+
+        /**
+         * This gets called by the child views during a click.
+         *
+         * @param v The View that was clicked
+         */
+        @Override
+        public void onClick(View v)
+        {
+            // pass the trailer information to the on click
+            int adapterPosition = getAdapterPosition();
+            if (adapterPosition != RecyclerView.NO_POSITION)
+            {
+                mClickHandler.onClick(mTrailerData.getList().get(adapterPosition - FIRST_TRAILER_POSITION));
+            }
+        }
+    }
+
+    /**
+     * Displays the reviewer and the review, tapping a long review expands or collapses it
+     */
+    class ReviewViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener
+    {
+        final TextView mAuthorTextView;
+        final ReviewTextView mReviewTextView;
+        final TextView mExpandTextView;
+
+        ReviewViewHolder(View view)
+        {
+            super(view);
+            mAuthorTextView = (TextView) view.findViewById(R.id.reviewAuthor);
+            mReviewTextView = (ReviewTextView) view.findViewById(R.id.reviewContent);
+            mExpandTextView = (TextView) view.findViewById(R.id.reviewExpand);
+            view.setOnClickListener(this);
+        }
+
+        void bind(ReviewData reviewData)
+        {
+            mAuthorTextView.setText(reviewData.reviewerName);
+
+            // the text was usually measured while the page of reviews loaded
+            boolean expanded = mExpandedReviews.contains(reviewData);
+            mReviewTextView.setLayout(mReviewLayouts.getOrBuildLayout(reviewData),
+                    expanded ? Integer.MAX_VALUE : mReviewPreviewLines);
+
+            if (expanded || mReviewTextView.isTruncated())
+            {
+                mExpandTextView.setVisibility(View.VISIBLE);
+                mExpandTextView.setText(expanded ? R.string.review_show_less : R.string.review_read_more);
+            }
+            else
+            {
+                mExpandTextView.setVisibility(View.GONE);
+            }
+        }
+
+        @Override
+        public void onClick(View v)
+        {
+            int adapterPosition = getAdapterPosition();
+            if (adapterPosition == RecyclerView.NO_POSITION || mExpandTextView.getVisibility() != View.VISIBLE)
+            {
+                return;
+            }
+
+            ReviewData reviewData = getReview(adapterPosition);
+            if (!mExpandedReviews.remove(reviewData))
+            {
+                mExpandedReviews.add(reviewData);
+            }
+            notifyItemChanged(adapterPosition);
+        }
+    }
+
+    /**
+     * @return The number of rows, the header and both labels are always displayed
+     */
+    @Override
+    public int getItemCount()
+    {
+        return getFirstReviewPosition() + getReviewCount();
+    }
+
+    /**
+     * @return the adapter position of the first review, which follows the trailers and the reviews label
+     */
+    public int getFirstReviewPosition()
+    {
+        return FIRST_TRAILER_POSITION + getTrailerCount() + 1;
+    }
+
+    /**
+     * @return the number of trailers displayed
+     */
+    public int getTrailerCount()
+    {
+        return mTrailerData.getList().size();
+    }
+
+    /**
+     * @return the number of reviews displayed
+     */
+    public int getReviewCount()
+    {
+        return mReviewData.getList().size();
+    }
+
+    /**
+     * @return the review displayed at the adapter position
+     */
+    public ReviewData getReview(int position)
+    {
+        return mReviewData.getList().get(position - getFirstReviewPosition());
+    }
+
+    /**
+     * Display the movie in the header, call again after the movie's fields are filled in
+     */
+    public void setMovie(MovieData movie)
+    {
+        mMovie = movie;
+        notifyItemChanged(0);
+    }
+
+    /**
+     * Enable the favorite button and show if the movie is a favorite movie
+     */
+    public void setFavorite(boolean favorite)
+    {
+        mFavorite = favorite;
+        mFavoriteEnabled = true;
+        notifyItemChanged(0);
+    }
+
+    /**
+     * Disable the favorite button while the favorite is being checked or changed
+     */
+    public void disableFavorite()
+    {
+        mFavoriteEnabled = false;
+        notifyItemChanged(0);
+    }
+
+    /**
+     * @return the trailers most recently given to the adapter, the list must not be modified
+     */
+    public ArrayList<TrailerData> getTrailerData()
+    {
+        return mTrailerData.getLatestList();
+    }
+
+    /**
+     * Change the trailers that are displayed, only the trailers that changed are updated
+     *
+     * @param trailerData The trailer data to save in the adapter
+     */
+    public void setTrailerData(ArrayList<TrailerData> trailerData)
+    {
+        mTrailerData.submitList(trailerData);
+    }
+
+    /**
+     * @return the reviews most recently given to the adapter, the list must not be modified
+     */
+    public ArrayList<ReviewData> getReviewData()
+    {
+        return mReviewData.getLatestList();
+    }
+
+    /**
+     * Change the reviews that are displayed, only the reviews that changed are updated
+     *
+     * @param reviewData The review data to save in the adapter
+     */
+    public void setReviewData(ArrayList<ReviewData> reviewData)
+    {
+        // forget the reviews that were dropped
+        if (reviewData == null)
+        {
+            mExpandedReviews.clear();
+        }
+        else
+        {
+            mExpandedReviews.retainAll(reviewData);
+        }
+        mReviewData.submitList(reviewData);
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.android.popmovies;
+
+import java.util.ArrayList;
+
+/**
+ * Everything displayed on the detail screen that is retrieved from theMovieDB in a single request:
+ * the movie's details, its trailers and the first page of its reviews
+ */
+
+public class MovieDetails
+{
+    public MovieData movie = new MovieData();
+    public ArrayList<TrailerData> trailers = new ArrayList<>();
+    public ResultPage<ReviewData> reviews = new ResultPage<>();
+
+    // the pages of reviews the detail screen had in memory, kept so it can be recreated without
+    // requesting them again
+    public ArrayList<ResultPage<ReviewData>> reviewPages = new ArrayList<>();
+
+    public MovieDetails(){}
+}
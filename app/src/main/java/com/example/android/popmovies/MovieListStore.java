@@ -0,0 +1,410 @@
+package com.example.android.popmovies;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Stores a list of movies column by column rather than as a MovieData object per movie.
+ *
+ * The numbers and flags of every movie are kept in primitive arrays, and the titles, languages and
+ * image paths are kept once in a string pool that the movies refer to by index. A deep grid of
+ * movies is then a handful of arrays instead of thousands of small objects. MovieData objects are
+ * only created for a single movie when it is needed, for example when it is bound or opened.
+ *
+ * Stores that are copied from each other share the same string pool, so two movies from them have
+ * the same poster if they refer to the same index. A store created with the constructor starts a
+ * new pool, so the strings of movies that are no longer displayed can be released along with the
+ * stores that refer to them. Must only be modified on the main thread, but can be read from
+ * another thread, such as the one comparing two lists, while it is modified.
+ */
+
+public class MovieListStore implements Parcelable
+{
+    // used as the index of a null string
+    private static final int NO_STRING = -1;
+
+    private static final int INITIAL_CAPACITY = 20;
+
+    // the bits used to store the adult, video and summary flags
+    private static final byte FLAG_ADULT = 1;
+    private static final byte FLAG_VIDEO = 1 << 1;
+    private static final byte FLAG_SUMMARY = 1 << 2;
+
+    /**
+     * Stores each distinct string once so movies can refer to it by index. Strings are only ever
+     * added, and the array is replaced rather than grown in place, so a thread that was given an
+     * index can read its string while the main thread keeps adding to the pool.
+     */
+    private static class StringPool
+    {
+        // replaced with a larger copy when full, volatile so the copy's strings are visible
+        private volatile String[] mStrings = new String[INITIAL_CAPACITY];
+        private int mSize;
+        private final HashMap<String, Integer> mIndices = new HashMap<>();
+
+        int intern(String string)
+        {
+            if (string == null)
+            {
+                return NO_STRING;
+            }
+
+            Integer index = mIndices.get(string);
+            if (index == null)
+            {
+                index = mSize;
+                String[] strings = mStrings;
+                if (mSize == strings.length)
+                {
+                    strings = Arrays.copyOf(strings, mSize * 2);
+                }
+                strings[mSize++] = string;
+                mStrings = strings;
+                mIndices.put(string, index);
+            }
+            return index;
+        }
+
+        String get(int index)
+        {
+            return index == NO_STRING ? null : mStrings[index];
+        }
+
+        int size()
+        {
+            return mSize;
+        }
+    }
+
+    private final StringPool mPool;
+    private int mSize;
+
+    private int[] mIds;
+    private int[] mReleaseDates;
+    private int[] mVoteCounts;
+    private double[] mPopularities;
+    private double[] mVoteAverages;
+    private byte[] mFlags;
+
+    // indices into the string pool
+    private int[] mTitles;
+    private int[] mOriginalTitles;
+    private int[] mOriginalLanguages;
+    private int[] mPosterPaths;
+    private int[] mPosterFiles;
+    private int[] mBackdropPaths;
+
+    // every overview is different so they aren't pooled
+    private String[] mOverviews;
+
+    public MovieListStore()
+    {
+        this(new StringPool(), INITIAL_CAPACITY);
+    }
+
+    private MovieListStore(StringPool pool, int capacity)
+    {
+        mPool = pool;
+        allocate(Math.max(capacity, 1));
+    }
+
+    private void allocate(int capacity)
+    {
+        mIds = new int[capacity];
+        mReleaseDates = new int[capacity];
+        mVoteCounts = new int[capacity];
+        mPopularities = new double[capacity];
+        mVoteAverages = new double[capacity];
+        mFlags = new byte[capacity];
+        mTitles = new int[capacity];
+        mOriginalTitles = new int[capacity];
+        mOriginalLanguages = new int[capacity];
+        mPosterPaths = new int[capacity];
+        mPosterFiles = new int[capacity];
+        mBackdropPaths = new int[capacity];
+        mOverviews = new String[capacity];
+    }
+
+    /**
+     * @return an empty store that shares this store's string pool
+     */
+    public MovieListStore newEmptyStore()
+    {
+        return new MovieListStore(mPool, INITIAL_CAPACITY);
+    }
+
+    /**
+     * @return a store with the same movies that shares this store's string pool, changes to one
+     * store don't affect the other
+     */
+    public MovieListStore copy()
+    {
+        MovieListStore copy = new MovieListStore(mPool, mSize + INITIAL_CAPACITY);
+        copy.addAll(this);
+        return copy;
+    }
+
+    public int size()
+    {
+        return mSize;
+    }
+
+    public boolean isEmpty()
+    {
+        return mSize == 0;
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity <= mIds.length)
+        {
+            return;
+        }
+
+        int newCapacity = Math.max(capacity, mIds.length * 2);
+        mIds = Arrays.copyOf(mIds, newCapacity);
+        mReleaseDates = Arrays.copyOf(mReleaseDates, newCapacity);
+        mVoteCounts = Arrays.copyOf(mVoteCounts, newCapacity);
+        mPopularities = Arrays.copyOf(mPopularities, newCapacity);
+        mVoteAverages = Arrays.copyOf(mVoteAverages, newCapacity);
+        mFlags = Arrays.copyOf(mFlags, newCapacity);
+        mTitles = Arrays.copyOf(mTitles, newCapacity);
+        mOriginalTitles = Arrays.copyOf(mOriginalTitles, newCapacity);
+        mOriginalLanguages = Arrays.copyOf(mOriginalLanguages, newCapacity);
+        mPosterPaths = Arrays.copyOf(mPosterPaths, newCapacity);
+        mPosterFiles = Arrays.copyOf(mPosterFiles, newCapacity);
+        mBackdropPaths = Arrays.copyOf(mBackdropPaths, newCapacity);
+        mOverviews = Arrays.copyOf(mOverviews, newCapacity);
+    }
+
+    /**
+     * Add a movie to the end of the store
+     */
+    public void add(MovieData movie)
+    {
+        ensureCapacity(mSize + 1);
+        int i = mSize++;
+        mIds[i] = movie.id;
+        mReleaseDates[i] = movie.release_date;
+        mVoteCounts[i] = movie.vote_count;
+        mPopularities[i] = movie.popularity;
+        mVoteAverages[i] = movie.vote_average;
+        mFlags[i] = (byte) ((movie.adult ? FLAG_ADULT : 0) | (movie.video ? FLAG_VIDEO : 0)
+                | (movie.is_summary ? FLAG_SUMMARY : 0));
+        mTitles[i] = mPool.intern(movie.title);
+        mOriginalTitles[i] = mPool.intern(movie.original_title);
+        mOriginalLanguages[i] = mPool.intern(movie.original_language);
+        mPosterPaths[i] = mPool.intern(movie.poster_path);
+        mPosterFiles[i] = mPool.intern(movie.poster_file);
+        mBackdropPaths[i] = mPool.intern(movie.backdrop_path);
+        mOverviews[i] = movie.overview;
+    }
+
+    /**
+     * Add movies to the end of the store
+     */
+    public void addAll(List<MovieData> movies)
+    {
+        ensureCapacity(mSize + movies.size());
+        for (MovieData movie : movies)
+        {
+            add(movie);
+        }
+    }
+
+    /**
+     * Add the movies of a store that shares this store's string pool to the end of this store
+     */
+    public void addAll(MovieListStore other)
+    {
+        if (other.mPool != mPool)
+        {
+            throw new IllegalArgumentException("The stores must share a string pool");
+        }
+
+        int start = mSize;
+        int count = other.mSize;
+        ensureCapacity(start + count);
+        System.arraycopy(other.mIds, 0, mIds, start, count);
+        System.arraycopy(other.mReleaseDates, 0, mReleaseDates, start, count);
+        System.arraycopy(other.mVoteCounts, 0, mVoteCounts, start, count);
+        System.arraycopy(other.mPopularities, 0, mPopularities, start, count);
+        System.arraycopy(other.mVoteAverages, 0, mVoteAverages, start, count);
+        System.arraycopy(other.mFlags, 0, mFlags, start, count);
+        System.arraycopy(other.mTitles, 0, mTitles, start, count);
+        System.arraycopy(other.mOriginalTitles, 0, mOriginalTitles, start, count);
+        System.arraycopy(other.mOriginalLanguages, 0, mOriginalLanguages, start, count);
+        System.arraycopy(other.mPosterPaths, 0, mPosterPaths, start, count);
+        System.arraycopy(other.mPosterFiles, 0, mPosterFiles, start, count);
+        System.arraycopy(other.mBackdropPaths, 0, mBackdropPaths, start, count);
+        System.arraycopy(other.mOverviews, 0, mOverviews, start, count);
+        mSize += count;
+    }
+
+    /**
+     * Add a single movie of a store that shares this store's string pool to the end of this store
+     */
+    public void add(MovieListStore other, int position)
+    {
+        if (other.mPool != mPool)
+        {
+            throw new IllegalArgumentException("The stores must share a string pool");
+        }
+
+        ensureCapacity(mSize + 1);
+        int i = mSize++;
+        mIds[i] = other.mIds[position];
+        mReleaseDates[i] = other.mReleaseDates[position];
+        mVoteCounts[i] = other.mVoteCounts[position];
+        mPopularities[i] = other.mPopularities[position];
+        mVoteAverages[i] = other.mVoteAverages[position];
+        mFlags[i] = other.mFlags[position];
+        mTitles[i] = other.mTitles[position];
+        mOriginalTitles[i] = other.mOriginalTitles[position];
+        mOriginalLanguages[i] = other.mOriginalLanguages[position];
+        mPosterPaths[i] = other.mPosterPaths[position];
+        mPosterFiles[i] = other.mPosterFiles[position];
+        mBackdropPaths[i] = other.mBackdropPaths[position];
+        mOverviews[i] = other.mOverviews[position];
+    }
+
+    public int getId(int position)
+    {
+        return mIds[position];
+    }
+
+    public String getTitle(int position)
+    {
+        return mPool.get(mTitles[position]);
+    }
+
+    /**
+     * @return true if both movies have the same poster, this is only a comparison of indices if
+     * the stores share a string pool. Safe to call from another thread while movies are added to
+     * either store, as long as the positions were added before it was called.
+     */
+    public boolean hasSamePoster(int position, MovieListStore other, int otherPosition)
+    {
+        if (other.mPool != mPool)
+        {
+            return ListDiffer.equals(mPool.get(mPosterPaths[position]), other.mPool.get(other.mPosterPaths[otherPosition]))
+                    && ListDiffer.equals(mPool.get(mPosterFiles[position]), other.mPool.get(other.mPosterFiles[otherPosition]));
+        }
+        return mPosterPaths[position] == other.mPosterPaths[otherPosition]
+                && mPosterFiles[position] == other.mPosterFiles[otherPosition];
+    }
+
+    /**
+     * @return a MovieData with only the fields needed to display the movie's poster
+     */
+    public MovieData getPosterMovie(int position)
+    {
+        MovieData movie = new MovieData();
+        movie.id = mIds[position];
+        movie.title = mPool.get(mTitles[position]);
+        movie.original_title = mPool.get(mOriginalTitles[position]);
+        movie.poster_path = mPool.get(mPosterPaths[position]);
+        movie.poster_file = mPool.get(mPosterFiles[position]);
+        return movie;
+    }
+
+    /**
+     * @return a MovieData with every field of the movie
+     */
+    public MovieData getMovie(int position)
+    {
+        MovieData movie = getPosterMovie(position);
+        movie.release_date = mReleaseDates[position];
+        movie.vote_count = mVoteCounts[position];
+        movie.popularity = mPopularities[position];
+        movie.vote_average = mVoteAverages[position];
+        movie.adult = (mFlags[position] & FLAG_ADULT) != 0;
+        movie.video = (mFlags[position] & FLAG_VIDEO) != 0;
+        movie.is_summary = (mFlags[position] & FLAG_SUMMARY) != 0;
+        movie.original_language = mPool.get(mOriginalLanguages[position]);
+        movie.backdrop_path = mPool.get(mBackdropPaths[position]);
+        movie.overview = mOverviews[position];
+        return movie;
+    }
+
+    //required creator for implementing parcelable
+    public static final Creator<MovieListStore> CREATOR = new Creator<MovieListStore>()
+    {
+        @Override
+        public MovieListStore createFromParcel(Parcel in)
+        {
+            return new MovieListStore(in);
+        }
+
+        @Override
+        public MovieListStore[] newArray(int size)
+        {
+            return new MovieListStore[size];
+        }
+    };
+
+    // convert a parcel into a store with its own string pool
+    protected MovieListStore(Parcel in)
+    {
+        mPool = new StringPool();
+        int poolSize = in.readInt();
+        for (int i = 0; i < poolSize; i++)
+        {
+            mPool.intern(in.readString());
+        }
+
+        mSize = in.readInt();
+        allocate(Math.max(mSize, 1));
+        in.readIntArray(mIds);
+        in.readIntArray(mReleaseDates);
+        in.readIntArray(mVoteCounts);
+        in.readDoubleArray(mPopularities);
+        in.readDoubleArray(mVoteAverages);
+        in.readByteArray(mFlags);
+        in.readIntArray(mTitles);
+        in.readIntArray(mOriginalTitles);
+        in.readIntArray(mOriginalLanguages);
+        in.readIntArray(mPosterPaths);
+        in.readIntArray(mPosterFiles);
+        in.readIntArray(mBackdropPaths);
+        in.readStringArray(mOverviews);
+    }
+
+    @Override
+    public int describeContents()
+    {
+        return 0;
+    }
+
+    // write the store to a parcel, the arrays are trimmed to the number of movies
+    @Override
+    public void writeToParcel(Parcel dest, int flags)
+    {
+        int poolSize = mPool.size();
+        dest.writeInt(poolSize);
+        for (int i = 0; i < poolSize; i++)
+        {
+            dest.writeString(mPool.get(i));
+        }
+
+        int capacity = Math.max(mSize, 1);
+        dest.writeInt(mSize);
+        dest.writeIntArray(Arrays.copyOf(mIds, capacity));
+        dest.writeIntArray(Arrays.copyOf(mReleaseDates, capacity));
+        dest.writeIntArray(Arrays.copyOf(mVoteCounts, capacity));
+        dest.writeDoubleArray(Arrays.copyOf(mPopularities, capacity));
+        dest.writeDoubleArray(Arrays.copyOf(mVoteAverages, capacity));
+        dest.writeByteArray(Arrays.copyOf(mFlags, capacity));
+        dest.writeIntArray(Arrays.copyOf(mTitles, capacity));
+        dest.writeIntArray(Arrays.copyOf(mOriginalTitles, capacity));
+        dest.writeIntArray(Arrays.copyOf(mOriginalLanguages, capacity));
+        dest.writeIntArray(Arrays.copyOf(mPosterPaths, capacity));
+        dest.writeIntArray(Arrays.copyOf(mPosterFiles, capacity));
+        dest.writeIntArray(Arrays.copyOf(mBackdropPaths, capacity));
+        dest.writeStringArray(Arrays.copyOf(mOverviews, capacity));
+    }
+}
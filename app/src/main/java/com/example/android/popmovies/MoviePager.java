@@ -0,0 +1,492 @@
+package com.example.android.popmovies;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.SparseArray;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import com.example.android.popmovies.data.MovieRepository;
+
+import utilities.FetchScheduler;
+import utilities.NetworkUtils;
+import utilities.TheMovieDBJsonUtils;
+
+/**
+ * Loads the pages of a movie list from theMovieDB as the user scrolls through the grid.
+ *
+ * The next page is requested while the user is still a configurable number of movies away from the
+ * end of the loaded movies, and no more than a configurable number of pages are requested at once.
+ * Pages are always handed to the listener in order even if they finish loading out of order.
+ *
+ * Every page that is retrieved is stored in the MovieRepository. Starting a list hands the stored
+ * pages to the listener straight away and, if they are out of date, retrieves the first page again
+ * in the background. The refreshed first page only replaces the first page of the displayed and
+ * stored movies so the user keeps their place further down the grid. The later pages stay stored,
+ * so their movies can still be opened after the process is restarted, and are stored again as
+ * they are retrieved. The next time the list is started only the pages retrieved since the first
+ * page are handed over.
+ */
+public class MoviePager
+{
+    // Store the class name for logging
+    private static final String TAG = MoviePager.class.getSimpleName();
+
+    // The keys used to store the state of the pager
+    private static final String FILTER_KEY = "pagerFilter";
+    private static final String LOADED_PAGES_KEY = "pagerLoadedPages";
+    private static final String TOTAL_PAGES_KEY = "pagerTotalPages";
+    private static final String PAGE_SIZE_KEY = "pagerPageSize";
+
+    /**
+     * Receives the pages of movies in order
+     */
+    public interface MoviePagerListener
+    {
+        void onMoviePageLoaded(ArrayList<MovieData> movieData, int page);
+
+        void onMoviePageFailed(int page);
+
+        /**
+         * The first page of stored movies was out of date and has been retrieved again. The
+         * refreshed movies replace the first movies displayed, the movies of the later pages stay.
+         *
+         * @param replacedCount the number of displayed movies the refreshed first page replaces
+         */
+        void onFirstPageRefreshed(ArrayList<MovieData> movieData, int replacedCount);
+    }
+
+    private final String mApiToken;
+    private final MoviePagerListener mListener;
+    private final MovieRepository mRepository;
+
+    // used to hand the pages back on the main thread
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // how many movies from the end of the loaded movies the next page should be requested
+    private final int mPrefetchDistance;
+
+    // the maximum number of pages that may be requested at the same time
+    private final int mMaxPagesInFlight;
+
+    // the filter of the movie list currently being paged through
+    private String mFilter;
+
+    // the last page that was handed to the listener
+    private int mLoadedPages;
+
+    // the number of pages theMovieDB has for the current filter, 0 until the first page is loaded
+    private int mTotalPages;
+
+    // the number of movies on a page, used to estimate how many movies the pages in flight will add
+    private int mPageSize;
+
+    // the number of movies on the stored first page, which a refreshed first page replaces
+    private int mFirstPageSize;
+
+    // the next page that has not been requested yet
+    private int mNextPage;
+
+    // pages that failed and should be requested again before any new page
+    private final TreeSet<Integer> mRetryPages = new TreeSet<>();
+
+    // pages that have been requested and have not been handed to the listener yet
+    private final SparseArray<FetchPageTask> mPagesInFlight = new SparseArray<>();
+
+    // pages that finished loading before an earlier page
+    private final SparseArray<ArrayList<MovieData>> mCompletedPages = new SparseArray<>();
+
+    // reads the stored pages of the list when it is started, null once they have been handed over
+    private LoadCachedListTask mCachedListTask;
+
+    public MoviePager(String apiToken, int prefetchDistance, int maxPagesInFlight,
+                      MovieRepository repository, MoviePagerListener listener)
+    {
+        mApiToken = apiToken;
+        mPrefetchDistance = prefetchDistance;
+        mMaxPagesInFlight = Math.max(1, maxPagesInFlight);
+        mRepository = repository;
+        mListener = listener;
+    }
+
+    /**
+     * Stop paging the current list and start loading the first page of the list for the filter
+     *
+     * @param filter the type of movie to retrieve data for. For example popular or top_rated
+     */
+    public void start(String filter)
+    {
+        cancel();
+        mFilter = filter;
+        mNextPage = 1;
+
+        // show the stored pages of the list before going to theMovieDB
+        mCachedListTask = new LoadCachedListTask(filter);
+        mCachedListTask.execute();
+    }
+
+    /**
+     * Stop paging and cancel any pages that are in flight
+     */
+    public void cancel()
+    {
+        for (int i = 0; i < mPagesInFlight.size(); i++)
+        {
+            mPagesInFlight.valueAt(i).cancel();
+        }
+        if (mCachedListTask != null)
+        {
+            mCachedListTask.cancel();
+            mCachedListTask = null;
+        }
+        mPagesInFlight.clear();
+        mCompletedPages.clear();
+        mRetryPages.clear();
+        mFilter = null;
+        mLoadedPages = 0;
+        mTotalPages = 0;
+        mPageSize = 0;
+        mFirstPageSize = 0;
+        mNextPage = 1;
+    }
+
+    /**
+     * @return true if the first page of the filter has been requested and hasn't finished loading
+     */
+    public boolean isLoadingFirstPage(String filter)
+    {
+        return filter.equals(mFilter) && (mCachedListTask != null || mPagesInFlight.get(1) != null);
+    }
+
+    /**
+     * @return true if the pager is currently paging through a movie list
+     */
+    public boolean isActive()
+    {
+        return mFilter != null;
+    }
+
+    /**
+     * Request more pages if the user has scrolled within the prefetch distance of the end of the
+     * loaded movies, or will be once the pages in flight have loaded.
+     *
+     * @param lastVisiblePosition the adapter position of the last visible movie
+     * @param itemCount           the number of movies that have been loaded
+     */
+    public void onScrolled(int lastVisiblePosition, int itemCount)
+    {
+        if (!isActive() || mLoadedPages == 0)
+        {
+            return;
+        }
+
+        int remainingMovies = itemCount - 1 - lastVisiblePosition;
+        while (remainingMovies + mPagesInFlight.size() * mPageSize < mPrefetchDistance
+                && requestNextPage())
+        {
+            Log.v(TAG, "Prefetching page with " + remainingMovies + " movies left to scroll through");
+        }
+    }
+
+    /**
+     * Request the next page if there is one and the limit on pages in flight hasn't been reached
+     *
+     * @return true if a page was requested
+     */
+    private boolean requestNextPage()
+    {
+        if (mPagesInFlight.size() >= mMaxPagesInFlight)
+        {
+            return false;
+        }
+
+        int page;
+        if (!mRetryPages.isEmpty())
+        {
+            page = mRetryPages.pollFirst();
+        }
+        else if (mTotalPages == 0 && mNextPage > 1)
+        {
+            // wait for the first page to learn how many pages there are
+            return false;
+        }
+        else if (mTotalPages != 0 && mNextPage > mTotalPages)
+        {
+            return false;
+        }
+        else
+        {
+            page = mNextPage++;
+        }
+
+        Log.v(TAG, "Requesting page " + page + " of " + mFilter);
+        FetchPageTask task = new FetchPageTask(mFilter, page, FetchScheduler.Priority.GRID_PAGE);
+        mPagesInFlight.put(page, task);
+        task.execute();
+        return true;
+    }
+
+    /**
+     * Hand the stored pages of the list to the listener, then retrieve the first page again if
+     * they are out of date. Without any stored pages the first page is requested as usual.
+     */
+    private void onCachedListLoaded(MovieRepository.CachedList cachedList)
+    {
+        mCachedListTask = null;
+
+        if (cachedList.isEmpty())
+        {
+            requestNextPage();
+            return;
+        }
+
+        mTotalPages = cachedList.totalPages;
+        mFirstPageSize = cachedList.pages.get(0).size();
+        for (ArrayList<MovieData> page : cachedList.pages)
+        {
+            mPageSize = Math.max(mPageSize, page.size());
+            mLoadedPages++;
+            mListener.onMoviePageLoaded(page, mLoadedPages);
+        }
+        mNextPage = mLoadedPages + 1;
+
+        if (cachedList.isStale(System.currentTimeMillis()))
+        {
+            Log.v(TAG, "Refreshing the stored pages of " + mFilter);
+            FetchPageTask task = new FetchPageTask(mFilter, 1, FetchScheduler.Priority.BACKGROUND_REFRESH);
+            mPagesInFlight.put(1, task);
+            task.execute();
+        }
+    }
+
+    /**
+     * Hand the page and any pages after it that already finished loading to the listener in order
+     */
+    private void onPageFinished(int page, ResultPage<MovieData> moviePage)
+    {
+        mPagesInFlight.remove(page);
+
+        // the first page is only requested again once the stored pages are displayed
+        boolean isRefresh = page == 1 && mLoadedPages > 0;
+
+        if (moviePage == null && isRefresh)
+        {
+            // keep displaying the stored pages
+            Log.v(TAG, "There was an issue while refreshing " + mFilter);
+            return;
+        }
+
+        if (moviePage == null)
+        {
+            Log.v(TAG, "There was an issue while retrieving page " + page + " of " + mFilter);
+            mRetryPages.add(page);
+            mListener.onMoviePageFailed(page);
+            return;
+        }
+
+        if (isRefresh)
+        {
+            // only the first page is replaced, resetting the later pages would collapse the grid
+            // under the user. Paging continues after the displayed pages, which stay stored until
+            // they are retrieved again.
+            mTotalPages = moviePage.totalPages;
+            mPageSize = Math.max(mPageSize, moviePage.results.size());
+            mListener.onFirstPageRefreshed(moviePage.results, mFirstPageSize);
+            mFirstPageSize = moviePage.results.size();
+            return;
+        }
+
+        if (page == 1)
+        {
+            mFirstPageSize = moviePage.results.size();
+        }
+        mTotalPages = moviePage.totalPages;
+        mPageSize = Math.max(mPageSize, moviePage.results.size());
+        mCompletedPages.put(page, moviePage.results);
+
+        ArrayList<MovieData> nextPage;
+        while ((nextPage = mCompletedPages.get(mLoadedPages + 1)) != null)
+        {
+            mCompletedPages.remove(mLoadedPages + 1);
+            mLoadedPages++;
+            mListener.onMoviePageLoaded(nextPage, mLoadedPages);
+        }
+    }
+
+    /**
+     * Store which pages have been loaded so paging can continue after the activity is recreated
+     */
+    public void saveState(Bundle outState)
+    {
+        outState.putString(FILTER_KEY, mFilter);
+        outState.putInt(LOADED_PAGES_KEY, mLoadedPages);
+        outState.putInt(TOTAL_PAGES_KEY, mTotalPages);
+        outState.putInt(PAGE_SIZE_KEY, mPageSize);
+    }
+
+    /**
+     * Continue paging from where a previous pager stopped. The movies of the loaded pages are
+     * expected to already be displayed, so they are not requested again.
+     */
+    public void restoreState(Bundle savedState)
+    {
+        cancel();
+        mFilter = savedState.getString(FILTER_KEY);
+        mLoadedPages = savedState.getInt(LOADED_PAGES_KEY);
+        mTotalPages = savedState.getInt(TOTAL_PAGES_KEY);
+        mPageSize = savedState.getInt(PAGE_SIZE_KEY);
+        mNextPage = mLoadedPages + 1;
+    }
+
+    /**
+     * Read the stored pages of a list from the MovieRepository and hand them back on the main thread
+     */
+    private class LoadCachedListTask implements Callable<Void>
+    {
+        private final String mListFilter;
+
+        // used to cancel the read, removing it from the queue if it hasn't started
+        private Future<Void> mRequest;
+
+        LoadCachedListTask(String filter)
+        {
+            mListFilter = filter;
+        }
+
+        void execute()
+        {
+            mRequest = FetchScheduler.getInstance().submit(FetchScheduler.Priority.GRID_PAGE, this);
+        }
+
+        void cancel()
+        {
+            mRequest.cancel(true);
+        }
+
+        @Override
+        public Void call()
+        {
+            MovieRepository.CachedList cachedList;
+            try
+            {
+                cachedList = mRepository.getCachedList(mListFilter);
+            }
+            catch (RuntimeException e)
+            {
+                // fall back to theMovieDB if the stored pages can't be read
+                e.printStackTrace();
+                cachedList = new MovieRepository.CachedList();
+            }
+
+            final MovieRepository.CachedList result = cachedList;
+            mMainHandler.post(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    // ignore the stored pages if the user has since moved to another list
+                    if (mCachedListTask == LoadCachedListTask.this)
+                    {
+                        onCachedListLoaded(result);
+                    }
+                }
+            });
+            return null;
+        }
+    }
+
+    /**
+     * Retrieve a single page of movie data from theMovieDB in a lane of the FetchScheduler, store
+     * it in the MovieRepository and hand the result back on the main thread
+     */
+    private class FetchPageTask implements Callable<Void>
+    {
+        private final String mPageFilter;
+        private final int mPage;
+        private final FetchScheduler.Priority mPriority;
+
+        // used to cancel the request, removing it from the queue if it hasn't started
+        private Future<Void> mRequest;
+
+        FetchPageTask(String filter, int page, FetchScheduler.Priority priority)
+        {
+            mPageFilter = filter;
+            mPage = page;
+            mPriority = priority;
+        }
+
+        void execute()
+        {
+            mRequest = FetchScheduler.getInstance().submit(mPriority, this);
+        }
+
+        void cancel()
+        {
+            mRequest.cancel(true);
+        }
+
+        @Override
+        public Void call()
+        {
+            final ResultPage<MovieData> moviePage = fetchPage();
+            // a cancelled page may be from an older order of the list so it isn't stored
+            if (moviePage != null && !Thread.currentThread().isInterrupted())
+            {
+                storePage(moviePage);
+            }
+            mMainHandler.post(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    // ignore pages from a list the user has since moved away from
+                    if (mPagesInFlight.get(mPage) == FetchPageTask.this)
+                    {
+                        onPageFinished(mPage, moviePage);
+                    }
+                }
+            });
+            return null;
+        }
+
+        private void storePage(ResultPage<MovieData> moviePage)
+        {
+            try
+            {
+                mRepository.saveMoviePage(mPageFilter, moviePage);
+            }
+            catch (RuntimeException e)
+            {
+                // the page can still be displayed, it just won't be available the next time the list is opened
+                Log.v(TAG, "Error encountered while storing page " + mPage + " of " + mPageFilter);
+                e.printStackTrace();
+            }
+        }
+
+        private ResultPage<MovieData> fetchPage()
+        {
+            // get the url to retrieve the page of movie data based on the selected filter
+            URL movieDBRequestUrl = NetworkUtils.buildUrl(mPageFilter, mApiToken, mPage);
+
+            try
+            {
+                Log.v(TAG, "Retrieving movie data using the Url: " + movieDBRequestUrl);
+                // get the page from theMovieDB, sharing the request if the same page is already being
+                // requested, and parse the response into MovieData objects as it is read
+                return NetworkUtils.fetch(movieDBRequestUrl, TheMovieDBJsonUtils.MOVIE_PAGE_PARSER);
+            }
+            catch (Exception e)
+            {
+                // if there was an issue print the stack trace to help determine what the issue is
+                e.printStackTrace();
+                return null;
+            }
+        }
+    }
+}
@@ -1,15 +1,15 @@
 package com.example.android.popmovies;
 
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
-import com.squareup.picasso.Picasso;
+import com.example.android.popmovies.posters.PosterCache;
+import com.example.android.popmovies.posters.PosterSize;
 import java.util.ArrayList;
+import java.util.HashSet;
 
 /**
  * Created by Daniel on 5/2/2017. This is a modified version of ForecastAdapter from the sunshine app.
@@ -20,48 +20,90 @@ public class MoviePosterAdapter extends RecyclerView.Adapter<MoviePosterAdapter.
 {
 
     /**
-     * Stores the current movie data
+     * The new movies are added to stores that share this store's string pool so the titles and
+     * paths of the displayed movies are only stored once. Replaced whenever the list is replaced,
+     * so the pool only holds the strings of the pages appended to the displayed list.
      */
-    ArrayList<MovieData> mMovieData = new ArrayList<>();
+    private MovieListStore mPoolOwner = new MovieListStore();
+
+    /**
+     * Stores the current movie data and updates only the posters that changed when it is replaced
+     */
+    private final ListDiffer<MovieListStore> mMovieData = new ListDiffer<>(this, new ListDiffer.ListCallback<MovieListStore>()
+    {
+        @Override
+        public MovieListStore newList()
+        {
+            return mPoolOwner.newEmptyStore();
+        }
+
+        @Override
+        public MovieListStore copy(MovieListStore list)
+        {
+            return list.copy();
+        }
+
+        @Override
+        public int size(MovieListStore list)
+        {
+            return list.size();
+        }
+
+        @Override
+        public void addAll(MovieListStore list, MovieListStore items)
+        {
+            list.addAll(items);
+        }
+
+        @Override
+        public boolean areItemsTheSame(MovieListStore oldList, int oldPosition, MovieListStore newList, int newPosition)
+        {
+            return oldList.getId(oldPosition) == newList.getId(newPosition);
+        }
+
+        @Override
+        public boolean areContentsTheSame(MovieListStore oldList, int oldPosition, MovieListStore newList, int newPosition)
+        {
+            // only the poster is displayed in the grid
+            return oldList.hasSamePoster(oldPosition, newList, newPosition);
+        }
+    });
 
     /**
      * Handles when the movie poster is clicked on
      */
     private final MoviePosterAdapterOnClickHandler mClickHandler;
 
+    /**
+     * The size the posters are displayed at in a cell of the grid
+     */
+    private final PosterSize mPosterSize;
+
     /**
      * when the view is created display the movies poster
      **/
     @Override
     public void onBindViewHolder(MoviePosterAdapterViewHolder holder, int position)
     {
-        MovieData movieData = mMovieData.get(position);
+        // only the fields needed to display the poster are read from the store
+        MovieData movieData = mMovieData.getList().getPosterMovie(position);
         Context context = holder.itemView.getContext();
 
-        // populate the image view with the movie poster
-
-        // if a poster bitmap was passed in use that, otherwise retrieve the poster from theMovieDB
-        if(movieData.poster_data == null || movieData.poster_data.equals(""))
-        {
-            Picasso.with(context).load(movieData.getMoviePostURL()).into(holder.mMovieImageView);
-        }
-        else
-        {
-            // This bitmap logic was inspired by the stack overflow post:
-            // https://stackoverflow.com/questions/8306623/get-bitmap-attached-to-imageview
-            Bitmap mapData = BitmapFactory.decodeByteArray(movieData.poster_data, 0, movieData.poster_data.length);
-            holder.mMovieImageView.setImageBitmap(mapData);
-        }
+        // populate the image view with the movie poster, the poster cache will use the stored poster
+        // of a favorite movie or retrieve the poster from theMovieDB and only decode it once
+        PosterCache.getInstance(context).loadPoster(movieData, mPosterSize, holder.mMovieImageView);
     }
 
     /**
      * Creates a MoviePosterAdapter and instantiates the clickHandler
      *
      * @param clickHandler
+     * @param posterSize the size the posters are displayed at in a cell of the grid
      */
-    public MoviePosterAdapter(MoviePosterAdapterOnClickHandler clickHandler)
+    public MoviePosterAdapter(MoviePosterAdapterOnClickHandler clickHandler, PosterSize posterSize)
     {
         mClickHandler = clickHandler;
+        mPosterSize = posterSize;
     }
 
     /**
@@ -110,7 +152,7 @@ public class MoviePosterAdapter extends RecyclerView.Adapter<MoviePosterAdapter.
         {
             // pass the movie data that corresponds to the clicked movie
             int adapterPosition = getAdapterPosition();
-            MovieData singleMovie = mMovieData.get(adapterPosition);
+            MovieData singleMovie = mMovieData.getList().getMovie(adapterPosition);
             mClickHandler.onClick(singleMovie);
         }
     }
@@ -121,22 +163,98 @@ public class MoviePosterAdapter extends RecyclerView.Adapter<MoviePosterAdapter.
     @Override
     public int getItemCount()
     {
-        if(mMovieData != null)
-        {
-            return mMovieData.size();
-        }
-        return  0;
+        return mMovieData.getList().size();
     }
 
+    /**
+     * @return the fields needed to display the poster of the movie at the position in the grid
+     */
+    public MovieData getPosterMovie(int position)
+    {
+        return mMovieData.getList().getPosterMovie(position);
+    }
+
+    /**
+     * @return the movies most recently given to the adapter, the store must not be modified
+     */
+    public MovieListStore getMovieStore()
+    {
+        return mMovieData.getLatestList();
+    }
 
     /**
-     * Change the data that is saved in the adapter
+     * Display a store of movies, for example one that was saved before the activity was recreated
+     */
+    public void setMovieStore(MovieListStore movieStore)
+    {
+        mPoolOwner = movieStore;
+        mMovieData.submitList(movieStore);
+    }
+
+
+    /**
+     * Change the data that is saved in the adapter, only the movies that were added, removed,
+     * moved or given a different poster are updated
      *
      * @param movieData The movie data to save in the adapter
      */
     public void setMovieData(ArrayList<MovieData> movieData)
     {
-        mMovieData = movieData;
-        notifyDataSetChanged();
+        // start a new string pool so the strings of the old movies are released along with them,
+        // the old and new lists are then compared by their posters' paths rather than indices
+        mPoolOwner = new MovieListStore();
+        if (movieData == null || movieData.isEmpty())
+        {
+            mMovieData.submitList(null);
+            return;
+        }
+
+        MovieListStore movieStore = mPoolOwner.newEmptyStore();
+        movieStore.addAll(movieData);
+        mMovieData.submitList(movieStore);
+    }
+
+    /**
+     * Replace the first movies of the displayed list, keeping the movies after them so the grid
+     * doesn't lose the pages the user has scrolled through. Movies after the replaced ones that
+     * are also among the new movies are removed so no movie is displayed twice. Only the movies
+     * that were added, removed, moved or given a different poster are updated.
+     *
+     * @param movieData     The movies to display first
+     * @param replacedCount The number of displayed movies they replace
+     */
+    public void replaceFirstMovies(ArrayList<MovieData> movieData, int replacedCount)
+    {
+        // the kept movies refer to the current pool so the new movies are added to it as well
+        MovieListStore movieStore = mPoolOwner.newEmptyStore();
+        movieStore.addAll(movieData);
+
+        HashSet<Integer> newIds = new HashSet<>();
+        for (MovieData movie : movieData)
+        {
+            newIds.add(movie.id);
+        }
+
+        MovieListStore displayed = mMovieData.getLatestList();
+        for (int i = replacedCount; i < displayed.size(); i++)
+        {
+            if (!newIds.contains(displayed.getId(i)))
+            {
+                movieStore.add(displayed, i);
+            }
+        }
+        mMovieData.submitList(movieStore);
+    }
+
+    /**
+     * Add movies after the movies that are already displayed, only the new movies are bound
+     *
+     * @param movieData The movie data to add to the end of the adapter
+     */
+    public void appendMovieData(ArrayList<MovieData> movieData)
+    {
+        MovieListStore movieStore = mPoolOwner.newEmptyStore();
+        movieStore.addAll(movieData);
+        mMovieData.append(movieStore);
     }
 }
\ No newline at end of file
@@ -0,0 +1,115 @@
+package com.example.android.popmovies;
+
+import android.os.Process;
+import android.util.LruCache;
+
+import java.util.HashMap;
+
+/**
+ * Holds the movies and movie lists that are handed between activities, or from an activity to
+ * the activity that replaces it after rotating, so intents and saved states only need to carry an
+ * id or a handle instead of a parcel of the movies.
+ *
+ * The registry only lives as long as the process. If it is missing a movie or list the caller
+ * must read it from the database or theMovieDB again.
+ *
+ * Must only be used from the main thread.
+ */
+
+public final class MovieRegistry
+{
+    // The number of opened movies that are kept so going back and forth between screens finds them
+    private static final int MAX_MOVIES = 32;
+
+    // The number of movies whose trailers and reviews are kept for their detail screen
+    private static final int MAX_MOVIE_DETAILS = 4;
+
+    private static final MovieRegistry sInstance = new MovieRegistry();
+
+    /**
+     * @return the registry shared by the whole app
+     */
+    public static MovieRegistry getInstance()
+    {
+        return sInstance;
+    }
+
+    // The most recently registered movies by their theMovieDB id
+    private final LruCache<Integer, MovieData> mMovies = new LruCache<>(MAX_MOVIES);
+
+    // The trailers and reviews displayed for the most recently opened movies by their theMovieDB id
+    private final LruCache<Integer, MovieDetails> mMovieDetails = new LruCache<>(MAX_MOVIE_DETAILS);
+
+    // The movie lists that are saved for a screen by the screen's handle
+    private final HashMap<String, MovieListStore> mMovieLists = new HashMap<>();
+
+    // used to give each screen a handle no other screen in the process has
+    private int mNextHandle;
+
+    private MovieRegistry() {}
+
+    /**
+     * Keep a movie so it can be found by its id, replacing the movie previously stored with the id
+     */
+    public void putMovie(MovieData movie)
+    {
+        mMovies.put(movie.id, movie);
+    }
+
+    /**
+     * @return the movie with the id or null if it isn't registered
+     */
+    public MovieData getMovie(int id)
+    {
+        return mMovies.get(id);
+    }
+
+    /**
+     * Keep the trailers and reviews displayed for a movie, replacing the ones previously stored for it
+     */
+    public void putMovieDetails(MovieDetails details)
+    {
+        mMovieDetails.put(details.movie.id, details);
+    }
+
+    /**
+     * @return the trailers and reviews of the movie with the id or null if they aren't registered
+     */
+    public MovieDetails getMovieDetails(int id)
+    {
+        return mMovieDetails.get(id);
+    }
+
+    /**
+     * @return a handle that a screen uses to save its movie list
+     */
+    public String newHandle()
+    {
+        // a handle saved before the process was restarted must not match a new one
+        return "movies-" + Process.myPid() + "-" + mNextHandle++;
+    }
+
+    /**
+     * Keep a screen's movie list, replacing the list previously saved with the handle
+     */
+    public void putMovieList(String handle, MovieListStore movies)
+    {
+        mMovieLists.put(handle, movies);
+    }
+
+    /**
+     * @return the movie list saved with the handle or null if there isn't one
+     */
+    public MovieListStore getMovieList(String handle)
+    {
+        return mMovieLists.get(handle);
+    }
+
+    /**
+     * Forget the movie list saved with the handle once its screen is finished
+     */
+    public void removeMovieList(String handle)
+    {
+        mMovieLists.remove(handle);
+    }
+}
@@ -0,0 +1,405 @@
+package com.example.android.popmovies;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.example.android.popmovies.data.MovieRepository;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import utilities.FetchScheduler;
+import utilities.NetworkUtils;
+import utilities.TheMovieDBJsonUtils;
+
+/**
+ * Searches theMovieDB for movies by their title as the user types.
+ *
+ * A query is only requested once the user pauses typing for the debounce delay, and changing the
+ * query cancels the page of the previous query that is still loading, so typing quickly makes at
+ * most one request per pause. Pages of a query the user has since changed are never handed to the
+ * listener. Further pages are requested one at a time as the user scrolls, the same way as
+ * MoviePager, and the pages of recent queries are kept in memory so going back to a query
+ * displays it without a request.
+ *
+ * While the user is typing the favorite and cached movies matching the query are found in the
+ * database's search index and displayed as the first page until theMovieDB's results arrive, and
+ * they stay displayed if theMovieDB can't be reached.
+ */
+public class MovieSearcher
+{
+    // Store the class name for logging
+    private static final String TAG = MovieSearcher.class.getSimpleName();
+
+    // The keys used to store the state of the searcher
+    private static final String QUERY_KEY = "searchQuery";
+    private static final String LOADED_PAGES_KEY = "searchLoadedPages";
+    private static final String TOTAL_PAGES_KEY = "searchTotalPages";
+
+    // The number of pages of recent queries kept in memory
+    private static final int MAX_CACHED_PAGES = 32;
+
+    // the stored movies are searched on their own thread so they never wait behind a request
+    private static final Executor LOCAL_SEARCH_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final String mApiToken;
+    private final MoviePager.MoviePagerListener mListener;
+
+    // used to search the favorite and cached movies
+    private final MovieRepository mMovieRepository;
+
+    // used to wait for the user to pause typing and to hand the pages back on the main thread
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // how long the user has to pause typing before the query is requested
+    private final long mDebounceMillis;
+
+    // how many movies from the end of the loaded movies the next page should be requested
+    private final int mPrefetchDistance;
+
+    // the pages of recent queries by the page number and lower case query
+    private final LruCache<String, ResultPage<MovieData>> mRecentPages = new LruCache<>(MAX_CACHED_PAGES);
+
+    // the query being displayed, null if the user isn't searching
+    private String mQuery;
+
+    // the last page of the query that was handed to the listener
+    private int mLoadedPages;
+
+    // the number of pages theMovieDB has for the query, 0 until the first page is loaded
+    private int mTotalPages;
+
+    // the page that has been requested and not handed back yet, null if there isn't one
+    private FetchSearchPageTask mPageInFlight;
+
+    // the search of the stored movies that hasn't been handed back yet, null if there isn't one
+    private SearchStoredMoviesTask mLocalSearchInFlight;
+
+    // true while the stored movies are displayed in place of the first page from theMovieDB
+    private boolean mShowingStoredMovies;
+
+    // requests the first page of the query once the user pauses typing
+    private final Runnable mDebouncedSearch = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            request(1);
+        }
+    };
+
+    public MovieSearcher(String apiToken, long debounceMillis, int prefetchDistance,
+                         MovieRepository movieRepository, MoviePager.MoviePagerListener listener)
+    {
+        mApiToken = apiToken;
+        mDebounceMillis = debounceMillis;
+        mPrefetchDistance = prefetchDistance;
+        mMovieRepository = movieRepository;
+        mListener = listener;
+    }
+
+    /**
+     * Search for the query once the user pauses typing, or straight away if it was searched for
+     * recently. Surrounding spaces are ignored and recent queries are matched ignoring case.
+     *
+     * @param query the text the user typed, an empty query stops searching
+     */
+    public void setQuery(String query)
+    {
+        String normalizedQuery = normalize(query);
+        if (normalizedQuery.equals(mQuery))
+        {
+            return;
+        }
+
+        cancel();
+        if (normalizedQuery.isEmpty())
+        {
+            return;
+        }
+        mQuery = normalizedQuery;
+
+        ResultPage<MovieData> firstPage = mRecentPages.get(getCacheKey(mQuery, 1));
+        if (firstPage != null)
+        {
+            Log.v(TAG, "Displaying the recent results of " + mQuery);
+            onPageFinished(1, firstPage);
+            return;
+        }
+
+        // the index answers within a frame, so the stored movies are searched as the user types
+        mLocalSearchInFlight = new SearchStoredMoviesTask(mQuery);
+        LOCAL_SEARCH_EXECUTOR.execute(mLocalSearchInFlight);
+        mMainHandler.postDelayed(mDebouncedSearch, mDebounceMillis);
+    }
+
+    /**
+     * Search for the query without waiting for the user to pause typing, for example when the
+     * user submits it
+     */
+    public void searchNow(String query)
+    {
+        setQuery(query);
+        if (mQuery != null && mLoadedPages == 0 && mPageInFlight == null)
+        {
+            mMainHandler.removeCallbacks(mDebouncedSearch);
+            request(1);
+        }
+    }
+
+    /**
+     * @return the query being displayed, null if the user isn't searching
+     */
+    public String getQuery()
+    {
+        return mQuery;
+    }
+
+    /**
+     * @return true if the user is searching
+     */
+    public boolean isActive()
+    {
+        return mQuery != null;
+    }
+
+    /**
+     * Stop searching and cancel the page that is waiting or in flight
+     */
+    public void cancel()
+    {
+        mMainHandler.removeCallbacks(mDebouncedSearch);
+        if (mPageInFlight != null)
+        {
+            mPageInFlight.cancel();
+            mPageInFlight = null;
+        }
+        mLocalSearchInFlight = null;
+        mShowingStoredMovies = false;
+        mQuery = null;
+        mLoadedPages = 0;
+        mTotalPages = 0;
+    }
+
+    /**
+     * Request the next page if the user has scrolled within the prefetch distance of the end of
+     * the loaded movies
+     *
+     * @param lastVisiblePosition the adapter position of the last visible movie
+     * @param itemCount           the number of movies that have been loaded
+     */
+    public void onScrolled(int lastVisiblePosition, int itemCount)
+    {
+        if (!isActive() || mLoadedPages == 0 || mPageInFlight != null || mLoadedPages >= mTotalPages)
+        {
+            return;
+        }
+
+        if (itemCount - 1 - lastVisiblePosition < mPrefetchDistance)
+        {
+            ResultPage<MovieData> nextPage = mRecentPages.get(getCacheKey(mQuery, mLoadedPages + 1));
+            if (nextPage != null)
+            {
+                onPageFinished(mLoadedPages + 1, nextPage);
+            }
+            else
+            {
+                request(mLoadedPages + 1);
+            }
+        }
+    }
+
+    /**
+     * Store the query and the pages that have been loaded so searching can continue after the
+     * activity is recreated
+     */
+    public void saveState(Bundle outState)
+    {
+        outState.putString(QUERY_KEY, mQuery);
+        outState.putInt(LOADED_PAGES_KEY, mLoadedPages);
+        outState.putInt(TOTAL_PAGES_KEY, mTotalPages);
+    }
+
+    /**
+     * Continue searching from where a previous searcher stopped. The movies of the loaded pages
+     * are expected to already be displayed, so they are not requested again.
+     */
+    public void restoreState(Bundle savedState)
+    {
+        cancel();
+        mQuery = savedState.getString(QUERY_KEY);
+        mLoadedPages = savedState.getInt(LOADED_PAGES_KEY);
+        mTotalPages = savedState.getInt(TOTAL_PAGES_KEY);
+
+        // the first page was still loading when the previous searcher stopped
+        if (mQuery != null && mLoadedPages == 0)
+        {
+            request(1);
+        }
+    }
+
+    /**
+     * @return the query of a saved state or null if the user wasn't searching
+     */
+    public static String getSavedQuery(Bundle savedState)
+    {
+        return savedState.getString(QUERY_KEY);
+    }
+
+    private void request(int page)
+    {
+        Log.v(TAG, "Requesting page " + page + " of the search for " + mQuery);
+        mPageInFlight = new FetchSearchPageTask(mQuery, page);
+        mPageInFlight.execute();
+    }
+
+    /**
+     * Hand the page of the query being displayed to the listener
+     *
+     * @param moviePage the page or null if it could not be retrieved
+     */
+    private void onPageFinished(int page, ResultPage<MovieData> moviePage)
+    {
+        mPageInFlight = null;
+        if (moviePage == null)
+        {
+            Log.v(TAG, "There was an issue while retrieving page " + page + " of the search for " + mQuery);
+            // keep displaying the stored movies rather than the error
+            if (!(page == 1 && mShowingStoredMovies))
+            {
+                mListener.onMoviePageFailed(page);
+            }
+            return;
+        }
+
+        mShowingStoredMovies = false;
+
+        mRecentPages.put(getCacheKey(mQuery, page), moviePage);
+        mTotalPages = moviePage.totalPages;
+        mLoadedPages = page;
+        mListener.onMoviePageLoaded(moviePage.results, page);
+    }
+
+    private static String normalize(String query)
+    {
+        return query == null ? "" : query.trim();
+    }
+
+    private static String getCacheKey(String query, int page)
+    {
+        return page + " " + query.toLowerCase(Locale.getDefault());
+    }
+
+    /**
+     * Search the favorite and cached movies and hand them back on the main thread
+     */
+    private class SearchStoredMoviesTask implements Runnable
+    {
+        private final String mTaskQuery;
+
+        SearchStoredMoviesTask(String query)
+        {
+            mTaskQuery = query;
+        }
+
+        @Override
+        public void run()
+        {
+            final ArrayList<MovieData> movies = mMovieRepository.searchMovies(mTaskQuery);
+            mMainHandler.post(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    // ignore movies of a query the user has since changed
+                    if (mLocalSearchInFlight != SearchStoredMoviesTask.this)
+                    {
+                        return;
+                    }
+                    mLocalSearchInFlight = null;
+
+                    // the first page from theMovieDB replaces the stored movies once it arrives
+                    if (mLoadedPages == 0 && !movies.isEmpty())
+                    {
+                        Log.v(TAG, "Displaying " + movies.size() + " stored movies matching " + mQuery);
+                        mShowingStoredMovies = true;
+                        mListener.onMoviePageLoaded(movies, 1);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Retrieve a single page of search results from theMovieDB and hand it back on the main thread
+     */
+    private class FetchSearchPageTask implements Callable<Void>
+    {
+        private final String mTaskQuery;
+        private final int mPage;
+
+        // used to cancel the request, removing it from the queue if it hasn't started
+        private Future<Void> mRequest;
+
+        FetchSearchPageTask(String query, int page)
+        {
+            mTaskQuery = query;
+            mPage = page;
+        }
+
+        void execute()
+        {
+            // the user is waiting to see the results so they run in the lane of the grid's pages
+            mRequest = FetchScheduler.getInstance().submit(FetchScheduler.Priority.GRID_PAGE, this);
+        }
+
+        void cancel()
+        {
+            mRequest.cancel(true);
+        }
+
+        @Override
+        public Void call()
+        {
+            final ResultPage<MovieData> moviePage = fetchPage();
+            mMainHandler.post(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    // ignore pages of a query the user has since changed
+                    if (mPageInFlight == FetchSearchPageTask.this)
+                    {
+                        onPageFinished(mPage, moviePage);
+                    }
+                }
+            });
+            return null;
+        }
+
+        private ResultPage<MovieData> fetchPage()
+        {
+            URL searchRequestUrl = NetworkUtils.buildSearchUrl(mTaskQuery, mApiToken, mPage);
+
+            try
+            {
+                Log.v(TAG, "Searching for movies using the Url: " + searchRequestUrl);
+                // search results have the same shape as a page of a movie list
+                return NetworkUtils.fetch(searchRequestUrl, TheMovieDBJsonUtils.MOVIE_PAGE_PARSER);
+            }
+            catch (Exception e)
+            {
+                e.printStackTrace();
+                return null;
+            }
+        }
+    }
+}
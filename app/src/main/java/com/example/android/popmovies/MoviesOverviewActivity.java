@@ -3,15 +3,15 @@ package com.example.android.popmovies;
 import android.content.Intent;
 import android.database.Cursor;
 import android.net.Uri;
-import android.os.AsyncTask;
-import android.os.Parcelable;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.AsyncTaskLoader;
 import android.support.v4.content.Loader;
+import android.support.v4.view.MenuItemCompat;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -20,21 +20,40 @@ import android.view.View;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 import com.example.android.popmovies.data.FavoriteMoviesContract;
-import java.net.URL;
+import com.example.android.popmovies.data.MovieRepository;
+import com.example.android.popmovies.posters.PosterPrefetcher;
+import com.example.android.popmovies.posters.PosterSize;
 import java.util.ArrayList;
 import utilities.NetworkUtils;
-import utilities.TheMovieDBJsonUtils;
 
 /**
- * Display a grid of movie posters. Either popular movies, top rated movie, or favorite movie posters can be displayed.
- * Touch a movie poster to learn more about it.
+ * Display a grid of movie posters. Either popular movies, top rated movie, or favorite movie posters can be displayed,
+ * or the movies whose title matches what the user searches for. Touch a movie poster to learn more about it.
  */
-public class MoviesOverviewActivity extends AppCompatActivity implements MoviePosterAdapter.MoviePosterAdapterOnClickHandler, LoaderManager.LoaderCallbacks<Cursor> {
+public class MoviesOverviewActivity extends AppCompatActivity implements MoviePosterAdapter.MoviePosterAdapterOnClickHandler, LoaderManager.LoaderCallbacks<Cursor>, MoviePager.MoviePagerListener {
     // Store the class name for logging
     private static final String TAG = NetworkUtils.class.getSimpleName();
 
     int FAVORITES_LOADER_ID = 400;
 
+    // The value of currentFilter while the grid displays search results
+    private static final String SEARCH_FILTER = "search";
+
+    // The grid only displays the posters so only the columns needed to display and open a favorite
+    // are read, the rest of the favorite is loaded when it is opened
+    private static final String[] FAVORITES_GRID_PROJECTION = {
+            FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_MOVIE_DB_ID,
+            FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ORIGINAL_TITLE,
+            FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER,
+            FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_FILE
+    };
+
+    // The indices of the columns in FAVORITES_GRID_PROJECTION
+    private static final int INDEX_MOVIE_DB_ID = 0;
+    private static final int INDEX_TITLE = 1;
+    private static final int INDEX_POSTER = 2;
+    private static final int INDEX_POSTER_FILE = 3;
+
     // stores the current type of movie that is being displayed such as popular or top rated movies
     String currentFilter = null;
 
@@ -44,6 +63,7 @@ public class MoviesOverviewActivity extends AppCompatActivity implements MoviePo
     String apiToken;
 
     MoviePosterAdapter mMovieDataAdapter;
+    GridLayoutManager mLayoutManager;
     RecyclerView mRecyclerView;
     ProgressBar mDataLoadingProgressBar;
     TextView mErrorTextView;
@@ -58,10 +78,43 @@ public class MoviesOverviewActivity extends AppCompatActivity implements MoviePo
      */
     String TOP_RATED_FILTER;
 
+    /**
+     * Loads further pages of popular or top rated movies as the user scrolls
+     */
+    MoviePager mMoviePager;
+
+    /**
+     * Searches theMovieDB for movies as the user types
+     */
+    MovieSearcher mMovieSearcher;
+
+    /**
+     * The filter displayed before the user started searching, it is displayed again once they stop
+     */
+    String mFilterBeforeSearch;
+
+    /**
+     * Loads the posters of the rows the grid is about to scroll to
+     */
+    PosterPrefetcher mPosterPrefetcher;
+
+    /**
+     * Identifies the movies of this screen in the MovieRegistry
+     */
+    String mMovieStoreHandle;
+
     @Override
     protected void onSaveInstanceState(Bundle outState) {
-        // store the movieData so it can be retrieved if the screen is rotated
-        outState.putParcelableArrayList("movieData", mMovieDataAdapter.mMovieData);
+        // keep the movies in the registry so they can be retrieved if the screen is rotated, only
+        // the handle to find them is saved in the state
+        MovieRegistry.getInstance().putMovieList(mMovieStoreHandle, mMovieDataAdapter.getMovieStore());
+        outState.putString("movieStoreHandle", mMovieStoreHandle);
+
+        // store the filter and the pages that have been loaded so paging can continue after rotating
+        outState.putString("currentFilter", currentFilter);
+        outState.putString("filterBeforeSearch", mFilterBeforeSearch);
+        mMoviePager.saveState(outState);
+        mMovieSearcher.saveState(outState);
         super.onSaveInstanceState(outState);
     }
 
@@ -83,23 +136,80 @@ public class MoviesOverviewActivity extends AppCompatActivity implements MoviePo
         /* This TextView is used to display errors and will be hidden if there are no errors */
         mErrorTextView = (TextView) findViewById(R.id.tv_error_message);
 
-        GridLayoutManager layoutManager = new GridLayoutManager(this, this.getResources().getInteger(R.integer.gridColumns));
-        mRecyclerView.setLayoutManager(layoutManager);
+        mLayoutManager = new GridLayoutManager(this, this.getResources().getInteger(R.integer.gridColumns));
+        mRecyclerView.setLayoutManager(mLayoutManager);
 
         // the child layouts size will not change in the RecyclerView
         mRecyclerView.setHasFixedSize(true);
 
-        mMovieDataAdapter = new MoviePosterAdapter(this);
+        // download and decode the posters at the size of a cell for this screen and orientation
+        PosterSize gridPosterSize = PosterSize.forGridCell(this);
+        mMovieDataAdapter = new MoviePosterAdapter(this, gridPosterSize);
 
         /* Setting the adapter attaches it to the RecyclerView in our layout. */
         mRecyclerView.setAdapter(mMovieDataAdapter);
 
-        // if there is a saved instance state that contains previously loaded movieData
-        // use that data  rather then re-obtaining the data.
-        if (savedInstanceState != null && savedInstanceState.getParcelableArrayList("movieData") != null) {
+        MovieRepository movieRepository = new MovieRepository(this);
+        mMoviePager = new MoviePager(apiToken,
+                getResources().getInteger(R.integer.pagingPrefetchDistance),
+                getResources().getInteger(R.integer.maxPagesInFlight),
+                movieRepository,
+                this);
+
+        // search results are handed over the same way as the pages of a movie list
+        mMovieSearcher = new MovieSearcher(apiToken,
+                getResources().getInteger(R.integer.searchDebounceMillis),
+                getResources().getInteger(R.integer.pagingPrefetchDistance),
+                movieRepository,
+                this);
+
+        // request further pages as the user scrolls towards the end of the loaded movies
+        mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                prefetchMoviePages();
+            }
+        });
+
+        // load the posters ahead of the scroll, further ahead the faster the grid is scrolled
+        mPosterPrefetcher = new PosterPrefetcher(this, mLayoutManager, mMovieDataAdapter, gridPosterSize,
+                getResources().getInteger(R.integer.posterPrefetchMinRows),
+                getResources().getInteger(R.integer.posterPrefetchMaxRows));
+        mRecyclerView.addOnScrollListener(mPosterPrefetcher);
+
+        // if there is a saved instance state whose previously loaded movies are still in the
+        // registry use them rather then re-obtaining the data.
+        MovieListStore savedData = null;
+        if (savedInstanceState != null) {
+            mMovieStoreHandle = savedInstanceState.getString("movieStoreHandle");
+            savedData = MovieRegistry.getInstance().getMovieList(mMovieStoreHandle);
+        } else {
+            mMovieStoreHandle = MovieRegistry.getInstance().newHandle();
+        }
+
+        if (savedData != null) {
             Log.v(TAG, "Using previously loaded movie data");
-            ArrayList<MovieData> savedData = savedInstanceState.getParcelableArrayList("movieData");
-            mMovieDataAdapter.setMovieData(savedData);
+            mMovieDataAdapter.setMovieStore(savedData);
+
+            // continue paging from the last loaded page, the RecyclerView restores the scroll position itself
+            currentFilter = savedInstanceState.getString("currentFilter");
+            mFilterBeforeSearch = savedInstanceState.getString("filterBeforeSearch");
+            if (SEARCH_FILTER.equals(currentFilter)) {
+                mMovieSearcher.restoreState(savedInstanceState);
+            } else {
+                mMoviePager.restoreState(savedInstanceState);
+            }
+        } else if (savedInstanceState != null && SEARCH_FILTER.equals(savedInstanceState.getString("currentFilter"))) {
+            // the process was restarted while the user was searching, search for the query again
+            Log.v(TAG, "Previously loaded search results are gone, searching again");
+            startSearching();
+            mFilterBeforeSearch = savedInstanceState.getString("filterBeforeSearch");
+            mMovieSearcher.searchNow(MovieSearcher.getSavedQuery(savedInstanceState));
+        } else if (savedInstanceState != null && savedInstanceState.getString("currentFilter") != null) {
+            // the process was restarted so the registry is empty, reload the filter that was
+            // displayed, the stored pages of a list are read from the database before theMovieDB
+            Log.v(TAG, "Previously loaded movie data is gone, loading it again");
+            loadMovieData(savedInstanceState.getString("currentFilter"));
         } else {
             Log.v(TAG, "No previously saved movie data, loading data from theMovieDB api");
             // if no previous data exists then retrieve data on popular movies to populate the grid
@@ -107,14 +217,120 @@ public class MoviesOverviewActivity extends AppCompatActivity implements MoviePo
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        mPosterPrefetcher.cancelAll();
+        // pages still in flight would otherwise be handed to this destroyed activity, the recreated
+        // activity requests them again as the user scrolls
+        mMoviePager.cancel();
+        mMovieSearcher.cancel();
+
+        // the saved movies are only needed if the screen is being recreated
+        if (isFinishing()) {
+            MovieRegistry.getInstance().removeMovieList(mMovieStoreHandle);
+        }
+        super.onDestroy();
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         // show the different filter options in the menu
         MenuInflater inflater = getMenuInflater();
         inflater.inflate(R.menu.filters, menu);
+
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        final SearchView searchView = (SearchView) MenuItemCompat.getActionView(searchItem);
+        searchView.setQueryHint(getString(R.string.search_hint));
+
+        // show the query that was being searched for before the screen was recreated, this is done
+        // before the listeners are set so it doesn't start a new search
+        if (SEARCH_FILTER.equals(currentFilter)) {
+            MenuItemCompat.expandActionView(searchItem);
+            searchView.setQuery(mMovieSearcher.getQuery(), false);
+            searchView.clearFocus();
+        }
+
+        MenuItemCompat.setOnActionExpandListener(searchItem, new MenuItemCompat.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                startSearching();
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                stopSearching();
+                return true;
+            }
+        });
+
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                // the user is done typing so there is no need to wait for a pause
+                searchMovies(query);
+                mMovieSearcher.searchNow(query);
+
+                // hide the keyboard so the results can be seen
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                searchMovies(newText);
+                return true;
+            }
+        });
         return true;
     }
 
+    /**
+     * Display search results in the grid instead of the current list of movies
+     */
+    private void startSearching() {
+        if (SEARCH_FILTER.equals(currentFilter)) {
+            return;
+        }
+        mFilterBeforeSearch = currentFilter;
+        currentFilter = SEARCH_FILTER;
+
+        // stop loading the list being replaced so it can't overwrite the search results
+        mMoviePager.cancel();
+        getSupportLoaderManager().destroyLoader(FAVORITES_LOADER_ID);
+
+        displayLoadingIndicator(false);
+        mErrorTextView.setVisibility(View.INVISIBLE);
+        mMovieDataAdapter.setMovieData(null);
+        mPosterPrefetcher.cancelAll();
+    }
+
+    /**
+     * Search for the query once the user pauses typing. The results of the previous query stay
+     * displayed until the new results arrive, unless the query was cleared.
+     */
+    private void searchMovies(String query) {
+        startSearching();
+        mErrorTextView.setVisibility(View.INVISIBLE);
+        mMovieSearcher.setQuery(query);
+        if (!mMovieSearcher.isActive()) {
+            mMovieDataAdapter.setMovieData(null);
+            mPosterPrefetcher.cancelAll();
+        }
+    }
+
+    /**
+     * Display the list of movies that was displayed before the user started searching
+     */
+    private void stopSearching() {
+        if (!SEARCH_FILTER.equals(currentFilter)) {
+            return;
+        }
+        mMovieSearcher.cancel();
+        loadMovieData(mFilterBeforeSearch != null ? mFilterBeforeSearch : POPULAR_FILTER);
+        mFilterBeforeSearch = null;
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         int id = item.getItemId();
@@ -149,8 +365,15 @@ public class MoviesOverviewActivity extends AppCompatActivity implements MoviePo
      * @param filter the type of movie to retrieve data for. For example popular or top_rated. Pass an empty string to get the favorite movies
      */
     private void loadMovieData(String filter) {
-        // save the filter for the type of movies to be displayed
+        // repeated taps on a filter whose first page is still loading should not request it again
+        if (mMoviePager.isLoadingFirstPage(filter)) {
+            Log.v(TAG, "Already retrieving the first page of " + filter);
+            return;
+        }
+
+        // save the filter for the type of movies to be displayed and stop searching
         currentFilter = filter;
+        mMovieSearcher.cancel();
 
         // hide the error message text view while attempting to get new data
         mErrorTextView.setVisibility(View.INVISIBLE);
@@ -158,19 +381,97 @@ public class MoviesOverviewActivity extends AppCompatActivity implements MoviePo
         // display the loading indicator while attempting to get movie data
         displayLoadingIndicator(true);
 
-        // clear out the existing movie data
+        // clear out the existing movie data and the posters being loaded for it
         mMovieDataAdapter.setMovieData(null);
+        mPosterPrefetcher.cancelAll();
 
         // perform an api call if a filter was passed in otherwise retrieve the data from the favorites content provider
         if (filter.equals(TOP_RATED_FILTER) || filter.equals(POPULAR_FILTER)) {
-            Log.v(TAG, "Create an async task to get the movie data from the api");
-            // get movie data from theMovieDB using the chosen filter
-            new FetchMovieData().execute(filter);
+            Log.v(TAG, "Start paging through the stored movie data, then the movie data from the api");
+            // stop loading favorites so they can't replace the movies from the api
+            getSupportLoaderManager().destroyLoader(FAVORITES_LOADER_ID);
+
+            // display the stored pages of the chosen filter, or get the first page of movie data
+            // from theMovieDB if there are none, this cancels the pages of the previous filter
+            // that are still loading
+            mMoviePager.start(filter);
         } else {
+            // favorites are not paged so stop loading pages of the previous list
+            mMoviePager.cancel();
             getSupportLoaderManager().restartLoader(FAVORITES_LOADER_ID, null, MoviesOverviewActivity.this);
         }
     }
 
+    /**
+     * Let the pager request more pages if the user is close to the end of the loaded movies
+     */
+    private void prefetchMoviePages() {
+        if (SEARCH_FILTER.equals(currentFilter)) {
+            mMovieSearcher.onScrolled(mLayoutManager.findLastVisibleItemPosition(), mMovieDataAdapter.getItemCount());
+        } else {
+            mMoviePager.onScrolled(mLayoutManager.findLastVisibleItemPosition(), mMovieDataAdapter.getItemCount());
+        }
+    }
+
+    /**
+     * Display a page of movies once it has been retrieved from theMovieDB
+     *
+     * @param movieData the movies on the page
+     * @param page      the number of the page, the first page is 1
+     */
+    @Override
+    public void onMoviePageLoaded(ArrayList<MovieData> movieData, int page) {
+        Log.v(TAG, "Finished retrieving page " + page + " from the api");
+
+        if (page == 1) {
+            // hide the loading indicator and display the grid of movie posters, the first page
+            // replaces the movies of the previous list or search
+            displayLoadingIndicator(false);
+            mPosterPrefetcher.cancelAll();
+            mMovieDataAdapter.setMovieData(movieData);
+        } else {
+            // only bind the movies on the new page
+            mMovieDataAdapter.appendMovieData(movieData);
+        }
+
+        // the new movies may not fill the screen so check if another page is needed once they are laid out
+        mRecyclerView.post(new Runnable() {
+            @Override
+            public void run() {
+                prefetchMoviePages();
+                mPosterPrefetcher.prefetch();
+            }
+        });
+    }
+
+    /**
+     * Replace the first page of the displayed movies with the refreshed one, the pages the user
+     * has scrolled through stay where they are
+     *
+     * @param movieData     the movies on the refreshed first page
+     * @param replacedCount the number of displayed movies the page replaces
+     */
+    @Override
+    public void onFirstPageRefreshed(ArrayList<MovieData> movieData, int replacedCount) {
+        Log.v(TAG, "Refreshed the first page of " + currentFilter);
+        mMovieDataAdapter.replaceFirstMovies(movieData, replacedCount);
+    }
+
+    /**
+     * Display the error message if the first page could not be retrieved. Later pages are
+     * requested again when the user scrolls.
+     *
+     * @param page the number of the page that could not be retrieved
+     */
+    @Override
+    public void onMoviePageFailed(int page) {
+        if (page == 1) {
+            Log.v(TAG, "There was an issue while retrieving the movie data");
+            displayLoadingIndicator(false);
+            mErrorTextView.setVisibility(View.VISIBLE);
+        }
+    }
+
     /**
      * Show a loading indicator or display the grid of movie posters
      *
@@ -193,17 +494,15 @@ public class MoviesOverviewActivity extends AppCompatActivity implements MoviePo
      */
     @Override
     public void onClick(MovieData movieData) {
-        // get the keys to store the movie data in the intent
-        String movieDataKey = getString(R.string.all_single_movie_data);
+        // get the key to store the movie's id in the intent
+        String movieIdKey = getString(R.string.movie_id);
 
         // create an intent to go to the movie detail activity
         Intent intent = new Intent(this, MovieDetailActivity.class);
 
-        // store the movies data in the intent
-        ArrayList<Parcelable> movieParcel = new ArrayList<>();
-        movieParcel.add(movieData);
-
-        intent.putParcelableArrayListExtra(movieDataKey, movieParcel);
+        // the detail activity finds the movie in the registry so only its id is stored in the intent
+        MovieRegistry.getInstance().putMovie(movieData);
+        intent.putExtra(movieIdKey, movieData.id);
 
         Log.v(TAG, "Handling user click on the movie poster for " + movieData.original_title);
         // launch the movie detail activity
@@ -238,9 +537,9 @@ public class MoviesOverviewActivity extends AppCompatActivity implements MoviePo
             @Override
             public Cursor loadInBackground() {
 
-                // Query all the data about all the favorite movies
+                // Query the columns the grid needs for all the favorite movies
                 Uri uri = FavoriteMoviesContract.FavoiteMovieEntry.CONTENT_URI;
-                return getContentResolver().query(uri, null, null, null, null);
+                return getContentResolver().query(uri, FAVORITES_GRID_PROJECTION, null, null, null);
             }
 
             public void deliverResult(Cursor data) {
@@ -262,28 +561,28 @@ public class MoviesOverviewActivity extends AppCompatActivity implements MoviePo
         };
     }
 
-    // convert the cursor data into an list of MovieData and display the user's favorite movies
+    // convert the cursor data into an list of MovieData summaries and display the user's favorite movies
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
+        // ignore the favorites if the user has already switched to a different filter or is searching
+        if (mMoviePager.isActive() || SEARCH_FILTER.equals(currentFilter)) {
+            if (data != null) {
+                data.close();
+            }
+            return;
+        }
+
         // Store all the data about each movie
         ArrayList<MovieData> movieData = new ArrayList<>();
         data.moveToFirst();
         while (!data.isAfterLast()) {
             MovieData singleMovieData = new MovieData();
 
-            singleMovieData.poster_size = data.getInt(data.getColumnIndex(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_SIZE));
-            singleMovieData.poster_data = data.getBlob(data.getColumnIndex(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_Data));
-            singleMovieData.poster_path = data.getString(data.getColumnIndex(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER));
-            singleMovieData.adult = data.getString(data.getColumnIndex(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ADULT));
-            singleMovieData.overview = data.getString(data.getColumnIndex(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_OVERVIEW));
-            singleMovieData.release_date = data.getString(data.getColumnIndex(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_RELEASE_DATE));
-            singleMovieData.id = data.getString(data.getColumnIndex(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_MOVIE_DB_ID));
-            singleMovieData.title = data.getString(data.getColumnIndex(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ORIGINAL_TITLE));
-            singleMovieData.backdrop_path = data.getString(data.getColumnIndex(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_BACKDROP));
-            singleMovieData.popularity = data.getString(data.getColumnIndex(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POPULARITY));
-            singleMovieData.vote_count = data.getString(data.getColumnIndex(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VOTE_COUNT));
-            singleMovieData.video = data.getString(data.getColumnIndex(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VIDEO));
-            singleMovieData.vote_average = data.getString(data.getColumnIndex(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VOTE_AVERAGE));
+            singleMovieData.is_summary = true;
+            singleMovieData.id = data.getInt(INDEX_MOVIE_DB_ID);
+            singleMovieData.title = data.getString(INDEX_TITLE);
+            singleMovieData.poster_path = data.getString(INDEX_POSTER);
+            singleMovieData.poster_file = data.getString(INDEX_POSTER_FILE);
 
             movieData.add(singleMovieData);
             data.moveToNext();
@@ -297,52 +596,4 @@ public class MoviesOverviewActivity extends AppCompatActivity implements MoviePo
     public void onLoaderReset(Loader<Cursor> loader) {
         mMovieDataAdapter.setMovieData(null);
     }
-
-    /**
-     * Retrieve movie data from theMovieDB in an async task
-     */
-    public class FetchMovieData extends AsyncTask<String, Void, ArrayList<MovieData>> {
-        @Override
-        protected void onPostExecute(ArrayList<MovieData> movieData) {
-            Log.v(TAG, "Finished attempting to retrieve data from the api");
-            // hide the loading indicator and display the grid of movie posters
-            displayLoadingIndicator(false);
-
-            // if movie  data was returned show the movie posters in the recycler view
-            // otherwise display the error message
-            if (movieData != null) {
-                mMovieDataAdapter.setMovieData(movieData);
-            } else {
-                Log.v(TAG, "There was an issue while retrieving the movie data");
-                mErrorTextView.setVisibility(View.VISIBLE);
-            }
-        }
-
-        /**
-         * @param filter
-         * @return returns an array list of MovieData with information about all the movie data obtained from
-         * theMovieDB
-         */
-        @Override
-        protected ArrayList<MovieData> doInBackground(String[] filter) {
-            // get the url to retrieve movie data based on the selected filter
-            URL movieDBRequestUrl = NetworkUtils.buildUrl(filter[0], apiToken);
-
-            try {
-
-                Log.v(TAG, "Retrieving movie data using the Url: " + movieDBRequestUrl);
-                // get a response from theMovieDB
-                String MovieDataResponse = NetworkUtils.getResponseFromHttpUrl(movieDBRequestUrl);
-
-                // parse the response into MovieData objects that contain information about each movie
-                ArrayList<MovieData> allMovieData = TheMovieDBJsonUtils
-                        .getMovieDataFromJson(MovieDataResponse);
-                return allMovieData;
-            } catch (Exception e) {
-                // if there was an issue print the stack trace to help determine what the issue is
-                e.printStackTrace();
-                return null;
-            }
-        }
-    }
-}
\ No newline at end of file
+}
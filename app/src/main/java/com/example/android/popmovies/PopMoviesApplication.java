@@ -0,0 +1,46 @@
+package com.example.android.popmovies;
+
+import android.app.Application;
+
+import com.example.android.popmovies.posters.PosterCache;
+
+import java.io.File;
+
+import utilities.NetworkUtils;
+
+/**
+ * Sets up the parts of the app that are shared by every activity before any of them are created
+ */
+public class PopMoviesApplication extends Application
+{
+    // The name of the directory inside the app's cache directory that stores api responses
+    private static final String RESPONSE_CACHE_DIRECTORY = "responses";
+
+    // The maximum number of bytes of api responses to store
+    private static final long MAX_RESPONSE_CACHE_BYTES = 5 * 1024 * 1024;
+
+    @Override
+    public void onCreate()
+    {
+        super.onCreate();
+
+        // reuse api responses rather than downloading the same movie lists, trailers and reviews again
+        NetworkUtils.installResponseCache(new File(getCacheDir(), RESPONSE_CACHE_DIRECTORY), MAX_RESPONSE_CACHE_BYTES);
+    }
+
+    @Override
+    public void onTrimMemory(int level)
+    {
+        super.onTrimMemory(level);
+
+        // stop prefetching posters and release decoded posters while memory is low
+        PosterCache.getInstance(this).trimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory()
+    {
+        super.onLowMemory();
+        PosterCache.getInstance(this).trimMemory(TRIM_MEMORY_COMPLETE);
+    }
+}
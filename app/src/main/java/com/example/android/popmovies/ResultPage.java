@@ -0,0 +1,30 @@
+package com.example.android.popmovies;
+
+import java.util.ArrayList;
+
+/**
+ * A single page of results returned by theMovieDB api along with where the page falls in the
+ * complete set of results
+ */
+
+public class ResultPage<T>
+{
+    // the number of this page, the first page is 1
+    public int page;
+
+    // the number of pages theMovieDB has for the request
+    public int totalPages;
+
+    // the results on this page
+    public ArrayList<T> results = new ArrayList<>();
+
+    public ResultPage(){}
+
+    /**
+     * @return true if theMovieDB has more pages after this one
+     */
+    public boolean hasNextPage()
+    {
+        return page < totalPages;
+    }
+}
@@ -11,12 +11,15 @@ import android.os.Parcelable;
 
 public class ReviewData implements Parcelable
 {
+    // theMovieDB's id of the review, used to tell reviews apart when the list changes
+    public String reviewId;
     public String reviewerName;
     public String reviewContent;
 
     public ReviewData(){}
 
     protected ReviewData(Parcel in) {
+        reviewId = in.readString();
         reviewerName = in.readString();
         reviewContent = in.readString();
     }
@@ -40,6 +43,7 @@ public class ReviewData implements Parcelable
 
     @Override
     public void writeToParcel(Parcel dest, int flags) {
+        dest.writeString(reviewId);
         dest.writeString(reviewerName);
         dest.writeString(reviewContent);
     }
@@ -0,0 +1,168 @@
+package com.example.android.popmovies;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Color;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Measures the text of reviews into layouts on a background thread so displaying a review only
+ * hands its finished layout to a ReviewTextView instead of measuring kilobytes of text while the
+ * list scrolls.
+ *
+ * The layouts are built for the width the review text is displayed at. Until the list has been
+ * laid out the width of the screen is assumed, and every layout is built again if the list turns
+ * out to be a different width.
+ *
+ * measure may be called from any thread, everything else must be called from the main thread.
+ */
+
+public class ReviewLayouts
+{
+    // Store the class name for logging
+    private static final String TAG = ReviewLayouts.class.getSimpleName();
+
+    // The number of layouts kept, more than the reviews of the pages the detail screen keeps in memory
+    private static final int MAX_LAYOUTS = 128;
+
+    // the layouts of every detail screen are built one at a time on the same background thread
+    private static final Executor MEASURE_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    // Describes how the review text is drawn, copied for each layout since a paint isn't thread safe
+    private final TextPaint mPaint;
+
+    // The space around the review text inside the list
+    private final int mHorizontalMargin;
+
+    // The layouts of the most recently displayed reviews
+    private final LruCache<ReviewData, Layout> mLayouts = new LruCache<>(MAX_LAYOUTS);
+
+    // The width in pixels the review text is laid out at
+    private int mTextWidth;
+
+    public ReviewLayouts(Context context)
+    {
+        Resources resources = context.getResources();
+
+        // match the style the review text used when it was displayed by a TextView
+        TypedArray style = context.obtainStyledAttributes(R.style.ContentStyle,
+                new int[]{android.R.attr.textSize, android.R.attr.textColor});
+        mPaint = new TextPaint(TextPaint.ANTI_ALIAS_FLAG);
+        mPaint.density = resources.getDisplayMetrics().density;
+        mPaint.setTextSize(style.getDimensionPixelSize(0, 0));
+        mPaint.setColor(style.getColor(1, Color.BLACK));
+        style.recycle();
+
+        mHorizontalMargin = 2 * resources.getDimensionPixelSize(R.dimen.reviewMargin);
+
+        // the list fills the width of the screen
+        mTextWidth = Math.max(0, resources.getDisplayMetrics().widthPixels - mHorizontalMargin);
+    }
+
+    /**
+     * Use the width of the list once it is laid out
+     *
+     * @return true if the width changed, the layouts that are displayed need to be replaced
+     */
+    public boolean setListWidth(int listWidth)
+    {
+        int textWidth = Math.max(0, listWidth - mHorizontalMargin);
+        synchronized (this)
+        {
+            if (textWidth == mTextWidth)
+            {
+                return false;
+            }
+            Log.v(TAG, "The review text is " + textWidth + " pixels wide rather than " + mTextWidth);
+            mTextWidth = textWidth;
+            mLayouts.evictAll();
+        }
+        return true;
+    }
+
+    /**
+     * Build the layouts of the reviews that aren't measured yet on the thread that is calling, for
+     * example the thread that just retrieved them
+     */
+    public void measure(List<ReviewData> reviews)
+    {
+        for (ReviewData review : reviews)
+        {
+            if (getLayout(review) == null)
+            {
+                putLayout(review, buildLayout(review, getTextWidth()));
+            }
+        }
+    }
+
+    /**
+     * Build the layouts of the reviews that aren't measured yet on a background thread, for
+     * example reviews that were retrieved before the width of the list was known
+     */
+    public void measureInBackground(List<ReviewData> reviews)
+    {
+        final ArrayList<ReviewData> reviewsToMeasure = new ArrayList<>(reviews);
+        MEASURE_EXECUTOR.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                measure(reviewsToMeasure);
+            }
+        });
+    }
+
+    /**
+     * @return the layout of the review at the current width, built now if it wasn't measured ahead
+     */
+    public Layout getOrBuildLayout(ReviewData review)
+    {
+        Layout layout = getLayout(review);
+        if (layout == null)
+        {
+            Log.v(TAG, "Measuring the review by " + review.reviewerName + " while it is displayed");
+            layout = buildLayout(review, getTextWidth());
+            putLayout(review, layout);
+        }
+        return layout;
+    }
+
+    /**
+     * @return the layout of the review at the current width or null if it isn't measured
+     */
+    private synchronized Layout getLayout(ReviewData review)
+    {
+        Layout layout = mLayouts.get(review);
+        return layout != null && layout.getWidth() == mTextWidth ? layout : null;
+    }
+
+    private synchronized void putLayout(ReviewData review, Layout layout)
+    {
+        // a layout built for a width the list no longer has is dropped
+        if (layout.getWidth() == mTextWidth)
+        {
+            mLayouts.put(review, layout);
+        }
+    }
+
+    private synchronized int getTextWidth()
+    {
+        return mTextWidth;
+    }
+
+    private Layout buildLayout(ReviewData review, int width)
+    {
+        String text = review.reviewContent != null ? review.reviewContent : "";
+        return new StaticLayout(text, new TextPaint(mPaint), width, Layout.Alignment.ALIGN_NORMAL, 1f, 0f, true);
+    }
+}
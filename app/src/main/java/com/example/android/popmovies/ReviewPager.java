@@ -0,0 +1,285 @@
+package com.example.android.popmovies;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import utilities.FetchScheduler;
+import utilities.NetworkUtils;
+import utilities.TheMovieDBJsonUtils;
+
+/**
+ * Loads the pages of a movie's reviews from theMovieDB as the user scrolls towards the end of the
+ * reviews that are displayed.
+ *
+ * Only a limited number of consecutive pages are kept. Once the limit is reached loading a page
+ * drops the page at the other end, and a dropped page is requested again if the user scrolls back
+ * to it. One page is requested at a time, and the text of its reviews is measured on the same
+ * background thread before it is handed back so displaying them doesn't measure it.
+ */
+public class ReviewPager
+{
+    // Store the class name for logging
+    private static final String TAG = ReviewPager.class.getSimpleName();
+
+    /**
+     * Receives the reviews every time a page is added or dropped
+     */
+    public interface ReviewPagerListener
+    {
+        /**
+         * @param reviews the reviews of the pages in memory in order, a diff of the previous and
+         *                new reviews finds where the reviews that were already displayed moved to
+         */
+        void onReviewsChanged(ArrayList<ReviewData> reviews);
+    }
+
+    private final String mApiToken;
+    private final ReviewPagerListener mListener;
+
+    // measures the text of the reviews of each page
+    private final ReviewLayouts mReviewLayouts;
+
+    // the maximum number of pages kept in memory
+    private final int mMaxPages;
+
+    // used to hand the pages back on the main thread
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // the id of the movie whose reviews are being paged through
+    private String mMovieId;
+
+    // the pages in memory in order, each page directly follows the page before it
+    private final ArrayList<ResultPage<ReviewData>> mPages = new ArrayList<>();
+
+    // the number of pages of reviews theMovieDB has for the movie
+    private int mTotalPages;
+
+    // the page that has been requested and not handed back yet, null if there isn't one
+    private FetchReviewPageTask mPageInFlight;
+
+    public ReviewPager(String apiToken, int maxPages, ReviewLayouts reviewLayouts, ReviewPagerListener listener)
+    {
+        mApiToken = apiToken;
+        mReviewLayouts = reviewLayouts;
+        mMaxPages = Math.max(2, maxPages);
+        mListener = listener;
+    }
+
+    /**
+     * Start paging through a movie's reviews from the first page, which was retrieved with the
+     * movie's details
+     */
+    public void start(String movieId, ResultPage<ReviewData> firstPage)
+    {
+        restore(movieId, new ArrayList<ResultPage<ReviewData>>());
+
+        // a response without paging information only has the first page
+        if (firstPage.page == 0)
+        {
+            firstPage.page = 1;
+        }
+        mPages.add(firstPage);
+        mTotalPages = firstPage.totalPages;
+        mListener.onReviewsChanged(getReviews());
+    }
+
+    /**
+     * Continue paging from the pages a previous pager had in memory. The reviews of the pages are
+     * expected to already be displayed, so the listener isn't called.
+     */
+    public void restore(String movieId, ArrayList<ResultPage<ReviewData>> pages)
+    {
+        cancel();
+        mMovieId = movieId;
+        mPages.clear();
+        mPages.addAll(pages);
+        mTotalPages = pages.isEmpty() ? 0 : pages.get(pages.size() - 1).totalPages;
+    }
+
+    /**
+     * @return the pages in memory in order
+     */
+    public ArrayList<ResultPage<ReviewData>> getPages()
+    {
+        return new ArrayList<>(mPages);
+    }
+
+    /**
+     * @return the reviews of the pages in memory in order
+     */
+    public ArrayList<ReviewData> getReviews()
+    {
+        ArrayList<ReviewData> reviews = new ArrayList<>();
+        for (ResultPage<ReviewData> page : mPages)
+        {
+            reviews.addAll(page.results);
+        }
+        return reviews;
+    }
+
+    /**
+     * Request the page after the last page in memory if there is one
+     */
+    public void loadNextPage()
+    {
+        if (mPageInFlight != null || mPages.isEmpty())
+        {
+            return;
+        }
+
+        int nextPage = mPages.get(mPages.size() - 1).page + 1;
+        if (nextPage <= mTotalPages)
+        {
+            request(nextPage);
+        }
+    }
+
+    /**
+     * Request the page before the first page in memory if it was dropped
+     */
+    public void loadPreviousPage()
+    {
+        if (mPageInFlight != null || mPages.isEmpty())
+        {
+            return;
+        }
+
+        int previousPage = mPages.get(0).page - 1;
+        if (previousPage >= 1)
+        {
+            request(previousPage);
+        }
+    }
+
+    /**
+     * Stop the page that is in flight
+     */
+    public void cancel()
+    {
+        if (mPageInFlight != null)
+        {
+            mPageInFlight.cancel();
+            mPageInFlight = null;
+        }
+    }
+
+    private void request(int page)
+    {
+        Log.v(TAG, "Requesting page " + page + " of the reviews of " + mMovieId);
+        mPageInFlight = new FetchReviewPageTask(mMovieId, page);
+        mPageInFlight.execute();
+    }
+
+    /**
+     * Add the page at the matching end of the pages in memory, dropping the page at the other end
+     * if there are too many
+     *
+     * @param reviewPage the page or null if it could not be retrieved, it is requested again when the user scrolls
+     */
+    private void onPageFinished(int page, ResultPage<ReviewData> reviewPage)
+    {
+        mPageInFlight = null;
+        if (reviewPage == null || mPages.isEmpty())
+        {
+            Log.v(TAG, "Page " + page + " of the reviews could not be retrieved");
+            return;
+        }
+
+        if (page == mPages.get(mPages.size() - 1).page + 1)
+        {
+            mPages.add(reviewPage);
+            if (mPages.size() > mMaxPages)
+            {
+                mPages.remove(0);
+            }
+        }
+        else if (page == mPages.get(0).page - 1)
+        {
+            mPages.add(0, reviewPage);
+            if (mPages.size() > mMaxPages)
+            {
+                mPages.remove(mPages.size() - 1);
+            }
+        }
+        else
+        {
+            return;
+        }
+
+        mTotalPages = reviewPage.totalPages;
+        mListener.onReviewsChanged(getReviews());
+    }
+
+    /**
+     * Retrieve a page of reviews from theMovieDB and hand it back on the main thread
+     */
+    private class FetchReviewPageTask implements Callable<Void>
+    {
+        private final String mTaskMovieId;
+        private final int mPage;
+
+        // used to cancel the request, removing it from the queue if it hasn't started
+        private Future<Void> mRequest;
+
+        FetchReviewPageTask(String movieId, int page)
+        {
+            mTaskMovieId = movieId;
+            mPage = page;
+        }
+
+        void execute()
+        {
+            mRequest = FetchScheduler.getInstance().submit(FetchScheduler.Priority.DETAIL, this);
+        }
+
+        void cancel()
+        {
+            mRequest.cancel(true);
+        }
+
+        @Override
+        public Void call()
+        {
+            final ResultPage<ReviewData> reviewPage = fetchPage();
+            if (reviewPage != null)
+            {
+                mReviewLayouts.measure(reviewPage.results);
+            }
+            mMainHandler.post(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    // ignore pages that were cancelled
+                    if (mPageInFlight == FetchReviewPageTask.this)
+                    {
+                        onPageFinished(mPage, reviewPage);
+                    }
+                }
+            });
+            return null;
+        }
+
+        private ResultPage<ReviewData> fetchPage()
+        {
+            URL reviewsRequestUrl = NetworkUtils.buildReviewUrl(mTaskMovieId, mApiToken, mPage);
+
+            try
+            {
+                Log.v(TAG, "Retrieving movie review data using the Url: " + reviewsRequestUrl);
+                return NetworkUtils.fetch(reviewsRequestUrl, TheMovieDBJsonUtils.REVIEW_PAGE_PARSER);
+            }
+            catch (Exception e)
+            {
+                e.printStackTrace();
+                return null;
+            }
+        }
+    }
+}
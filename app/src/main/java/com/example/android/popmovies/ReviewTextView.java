@@ -0,0 +1,81 @@
+package com.example.android.popmovies;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.text.Layout;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * Draws the text of a review from a layout that was measured ahead of time by ReviewLayouts,
+ * so displaying a review doesn't measure its text. A collapsed review only shows its first lines.
+ */
+
+public class ReviewTextView extends View
+{
+    // The measured review text, null if there isn't a review to display
+    private Layout mLayout;
+
+    // The number of lines displayed
+    private int mMaxLines = Integer.MAX_VALUE;
+
+    public ReviewTextView(Context context, AttributeSet attrs)
+    {
+        super(context, attrs);
+    }
+
+    /**
+     * @param layout   the measured review text
+     * @param maxLines the number of lines displayed, Integer.MAX_VALUE to display the whole review
+     */
+    public void setLayout(Layout layout, int maxLines)
+    {
+        mLayout = layout;
+        mMaxLines = maxLines;
+        setContentDescription(layout.getText());
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * @return true if the review has more lines than are displayed
+     */
+    public boolean isTruncated()
+    {
+        return mLayout != null && mLayout.getLineCount() > mMaxLines;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec)
+    {
+        int height = getPaddingTop() + getDisplayedTextHeight() + getPaddingBottom();
+        setMeasuredDimension(MeasureSpec.getSize(widthMeasureSpec), resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas)
+    {
+        if (mLayout == null)
+        {
+            return;
+        }
+
+        canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        canvas.clipRect(0, 0, mLayout.getWidth(), getDisplayedTextHeight());
+        mLayout.draw(canvas);
+        canvas.restore();
+    }
+
+    /**
+     * @return the height of the lines that are displayed
+     */
+    private int getDisplayedTextHeight()
+    {
+        if (mLayout == null)
+        {
+            return 0;
+        }
+        return isTruncated() ? mLayout.getLineTop(mMaxLines) : mLayout.getHeight();
+    }
+}
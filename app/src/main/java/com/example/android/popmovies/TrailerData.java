@@ -30,6 +30,11 @@ public class TrailerData implements Parcelable
         trailerKey = key;
     }
 
+    public String getTrailerKey()
+    {
+        return trailerKey;
+    }
+
     public String getTrailerURL()
     {
         return baseYouTubeLink + trailerKey;
@@ -1,17 +1,25 @@
 package com.example.android.popmovies.data;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+
 import static com.example.android.popmovies.data.FavoriteMoviesContract.FavoiteMovieEntry.TABLE_NAME;
 
 /**
@@ -33,6 +41,95 @@ public class FavoriteMoviesContentProvider extends ContentProvider
     // Used  to get a specific favorite movie based on the id
     public static final int FAVORITE_WITH_ID = 101;
 
+    // Used to get or store the cached movies of the popular or top rated list
+    public static final int CACHED_LIST = 200;
+
+    // Used to get a specific cached movie based on the id
+    public static final int CACHED_MOVIE_WITH_ID = 201;
+
+    // Used to search the titles and overviews of the favorite and cached movies
+    public static final int SEARCH = 300;
+
+    // The most movies a search returns
+    private static final int MAX_SEARCH_RESULTS = 100;
+
+    // The columns of a search result, followed by how each is read from a favorite and from a
+    // cached movie. A favorite only stores its original title so it is used for both titles.
+    private static final String[][] SEARCH_COLUMNS = {
+            {FavoriteMoviesContract.CachedMovieEntry.COLUMN_MOVIE_DB_ID,
+                    FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_MOVIE_DB_ID,
+                    FavoriteMoviesContract.CachedMovieEntry.COLUMN_MOVIE_DB_ID},
+            {FavoriteMoviesContract.CachedMovieEntry.COLUMN_POSTER,
+                    FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER,
+                    FavoriteMoviesContract.CachedMovieEntry.COLUMN_POSTER},
+            {FavoriteMoviesContract.MovieSearchEntry.COLUMN_POSTER_FILE,
+                    FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_FILE,
+                    "NULL"},
+            {FavoriteMoviesContract.CachedMovieEntry.COLUMN_ADULT,
+                    FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ADULT,
+                    FavoriteMoviesContract.CachedMovieEntry.COLUMN_ADULT},
+            {FavoriteMoviesContract.CachedMovieEntry.COLUMN_OVERVIEW,
+                    FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_OVERVIEW,
+                    FavoriteMoviesContract.CachedMovieEntry.COLUMN_OVERVIEW},
+            {FavoriteMoviesContract.CachedMovieEntry.COLUMN_RELEASE_DATE,
+                    FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_RELEASE_DATE,
+                    FavoriteMoviesContract.CachedMovieEntry.COLUMN_RELEASE_DATE},
+            {FavoriteMoviesContract.CachedMovieEntry.COLUMN_ORIGINAL_TITLE,
+                    FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ORIGINAL_TITLE,
+                    FavoriteMoviesContract.CachedMovieEntry.COLUMN_ORIGINAL_TITLE},
+            {FavoriteMoviesContract.CachedMovieEntry.COLUMN_ORIGINAL_LANGUAGE,
+                    "NULL",
+                    FavoriteMoviesContract.CachedMovieEntry.COLUMN_ORIGINAL_LANGUAGE},
+            {FavoriteMoviesContract.CachedMovieEntry.COLUMN_TITLE,
+                    FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ORIGINAL_TITLE,
+                    FavoriteMoviesContract.CachedMovieEntry.COLUMN_TITLE},
+            {FavoriteMoviesContract.CachedMovieEntry.COLUMN_BACKDROP,
+                    FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_BACKDROP,
+                    FavoriteMoviesContract.CachedMovieEntry.COLUMN_BACKDROP},
+            {FavoriteMoviesContract.CachedMovieEntry.COLUMN_POPULARITY,
+                    FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POPULARITY,
+                    FavoriteMoviesContract.CachedMovieEntry.COLUMN_POPULARITY},
+            {FavoriteMoviesContract.CachedMovieEntry.COLUMN_VOTE_COUNT,
+                    FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VOTE_COUNT,
+                    FavoriteMoviesContract.CachedMovieEntry.COLUMN_VOTE_COUNT},
+            {FavoriteMoviesContract.CachedMovieEntry.COLUMN_VIDEO,
+                    FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VIDEO,
+                    FavoriteMoviesContract.CachedMovieEntry.COLUMN_VIDEO},
+            {FavoriteMoviesContract.CachedMovieEntry.COLUMN_VOTE_AVERAGE,
+                    FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VOTE_AVERAGE,
+                    FavoriteMoviesContract.CachedMovieEntry.COLUMN_VOTE_AVERAGE}
+    };
+
+    // Searches the favorites and the cached movies that aren't favorites, see buildSearchQuery
+    private static final String SEARCH_QUERY = buildSearchQuery();
+
+    // Joins the movies of a list to the page and position they were on
+    private static final String CACHED_LIST_QUERY = "SELECT movies.*, " +
+            "lists." + FavoriteMoviesContract.MovieListEntry.COLUMN_PAGE + ", " +
+            "lists." + FavoriteMoviesContract.MovieListEntry.COLUMN_TOTAL_PAGES + ", " +
+            "lists." + FavoriteMoviesContract.MovieListEntry.COLUMN_FETCHED_AT +
+            " FROM " + FavoriteMoviesContract.MovieListEntry.TABLE_NAME + " lists" +
+            " INNER JOIN " + FavoriteMoviesContract.CachedMovieEntry.TABLE_NAME + " movies" +
+            " ON movies." + FavoriteMoviesContract.CachedMovieEntry.COLUMN_MOVIE_DB_ID +
+            " = lists." + FavoriteMoviesContract.MovieListEntry.COLUMN_MOVIE_DB_ID +
+            " WHERE lists." + FavoriteMoviesContract.MovieListEntry.COLUMN_LIST_NAME + "=?" +
+            " ORDER BY lists." + FavoriteMoviesContract.MovieListEntry.COLUMN_PAGE +
+            ", lists." + FavoriteMoviesContract.MovieListEntry.COLUMN_POSITION;
+
+    // Removes the cached movies that are no longer on any list
+    private static final String DELETE_UNLISTED_MOVIES = "DELETE FROM " +
+            FavoriteMoviesContract.CachedMovieEntry.TABLE_NAME + " WHERE " +
+            FavoriteMoviesContract.CachedMovieEntry.COLUMN_MOVIE_DB_ID + " NOT IN (SELECT " +
+            FavoriteMoviesContract.MovieListEntry.COLUMN_MOVIE_DB_ID + " FROM " +
+            FavoriteMoviesContract.MovieListEntry.TABLE_NAME + ")";
+
+    // When the stored first page of a list was retrieved, 0 if the list has no stored first page
+    private static final String FIRST_PAGE_FETCHED_AT = "SELECT IFNULL(MIN(" +
+            FavoriteMoviesContract.MovieListEntry.COLUMN_FETCHED_AT + "), 0) FROM " +
+            FavoriteMoviesContract.MovieListEntry.TABLE_NAME + " WHERE " +
+            FavoriteMoviesContract.MovieListEntry.COLUMN_LIST_NAME + "=? AND " +
+            FavoriteMoviesContract.MovieListEntry.COLUMN_PAGE + "=1";
+
     // Used to determine how to respond to the supplied Uri
     private static final UriMatcher sUriMatcher = buildUriMatcher();
 
@@ -49,12 +146,28 @@ public class FavoriteMoviesContentProvider extends ContentProvider
         //add matches for the favorite directory and a single favorite by ID.
         uriMatcher.addURI(FavoriteMoviesContract.AUTHORITY, FavoriteMoviesContract.PATH_FAVORITES, FAVORITES);
         uriMatcher.addURI(FavoriteMoviesContract.AUTHORITY, FavoriteMoviesContract.PATH_FAVORITES +"/#", FAVORITE_WITH_ID);
+        uriMatcher.addURI(FavoriteMoviesContract.AUTHORITY, FavoriteMoviesContract.PATH_CACHED_LISTS + "/*", CACHED_LIST);
+        uriMatcher.addURI(FavoriteMoviesContract.AUTHORITY, FavoriteMoviesContract.PATH_CACHED_MOVIES + "/#", CACHED_MOVIE_WITH_ID);
+        uriMatcher.addURI(FavoriteMoviesContract.AUTHORITY, FavoriteMoviesContract.PATH_SEARCH, SEARCH);
         return uriMatcher;
     }
 
     // Helps the class to interact with the database
     private FavoriteMoviesDbHelper mFavoriteMoviesDbHelper;
 
+    // The uris changed by the batch being applied on the current thread, null if no batch is being
+    // applied. They are notified once the whole batch has been committed.
+    private final ThreadLocal<LinkedHashSet<Uri>> mBatchChanges = new ThreadLocal<>();
+
+    // The poster files that rows of the batch being applied on the current thread stopped referring
+    // to, null if no batch is being applied. The batch can still be rolled back, restoring the rows,
+    // so the files are only deleted once the whole batch has been committed.
+    private final ThreadLocal<LinkedHashSet<String>> mBatchPosterFiles = new ThreadLocal<>();
+
+    // The compiled statements for looking up, inserting and deleting a favorite by its movie id,
+    // created the first time they are needed
+    private FavoriteStatements mStatements;
+
     @Override
     public boolean onCreate()
     {
@@ -106,6 +219,34 @@ public class FavoriteMoviesContentProvider extends ContentProvider
                         null,
                         null);
                 break;
+            // Query for the cached movies of a list in the order they appear in the list, every
+            // column of the movie is returned along with the page it was on
+            case CACHED_LIST:
+                String listName = uri.getLastPathSegment();
+                Log.v(TAG, "Retrieving the cached movies of the list " + listName);
+                resultsCursor = db.rawQuery(CACHED_LIST_QUERY, new String[]{listName});
+                break;
+            // Query for the cached movie that matches the supplied id if there is one
+            case CACHED_MOVIE_WITH_ID:
+                String cachedId = uri.getPathSegments().get(1);
+                Log.v(TAG, "Retrieving the cached movie with id=" + cachedId);
+                resultsCursor = db.query(FavoriteMoviesContract.CachedMovieEntry.TABLE_NAME,
+                        projection,
+                        "moviedb_id=?",
+                        new String[]{cachedId},
+                        null,
+                        null,
+                        null);
+                break;
+            // Query for the stored movies matching the search query, best matches first, every
+            // column of a cached movie is returned along with the poster file and the rank
+            case SEARCH:
+                resultsCursor = searchMovies(db, uri.getQueryParameter(FavoriteMoviesContract.MovieSearchEntry.QUERY_PARAM));
+
+                // the results change whenever a favorite or a cached movie does
+                resultsCursor.setNotificationUri(getContext().getContentResolver(),
+                        FavoriteMoviesContract.BASE_CONTENT_URI);
+                return resultsCursor;
             // Throw an exception if the uri did match a known query
             default:
                 Log.v(TAG, "No matching query operation was found");
@@ -119,6 +260,141 @@ public class FavoriteMoviesContentProvider extends ContentProvider
         return resultsCursor;
     }
 
+    /**
+     * Find the stored movies with a word starting with each word of the query in their title or
+     * overview. Movies whose title starts with the query come first, then movies with every word in
+     * their title, then movies with words only in their overview, the more popular movies first.
+     */
+    private static Cursor searchMovies(SQLiteDatabase db, String query)
+    {
+        String match = buildMatchExpression(query, null);
+        if (match == null)
+        {
+            String[] columns = new String[SEARCH_COLUMNS.length + 1];
+            for (int i = 0; i < SEARCH_COLUMNS.length; i++)
+            {
+                columns[i] = SEARCH_COLUMNS[i][0];
+            }
+            columns[SEARCH_COLUMNS.length] = FavoriteMoviesContract.MovieSearchEntry.COLUMN_RANK;
+            return new MatrixCursor(columns, 0);
+        }
+
+        Log.v(TAG, "Searching the stored movies for " + match);
+        String titlePrefix = escapeLike(query.trim()) + "%";
+        String titleMatch = buildMatchExpression(query, FavoriteMoviesContract.MovieSearchEntry.COLUMN_TITLE);
+        return db.rawQuery(SEARCH_QUERY,
+                new String[]{titlePrefix, titleMatch, match, titlePrefix, titleMatch, match});
+    }
+
+    /**
+     * Build the query that searches both indices. Each index is joined to the movies it indexes by
+     * their id, and a cached movie that is also a favorite is only returned once, as the favorite.
+     * Its arguments are the title prefix, the title match expression and the match expression,
+     * once for the favorites and again for the cached movies.
+     */
+    private static String buildSearchQuery()
+    {
+        return "SELECT * FROM (" +
+                buildSearchSelect(FavoriteMoviesContract.MovieSearchEntry.FAVORITES_TABLE_NAME,
+                        FavoriteMoviesContract.FavoiteMovieEntry.TABLE_NAME, 1, "") +
+                " UNION ALL " +
+                buildSearchSelect(FavoriteMoviesContract.MovieSearchEntry.CACHED_MOVIES_TABLE_NAME,
+                        FavoriteMoviesContract.CachedMovieEntry.TABLE_NAME, 2,
+                        " AND movies." + FavoriteMoviesContract.CachedMovieEntry.COLUMN_MOVIE_DB_ID +
+                                " NOT IN (SELECT " + FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_MOVIE_DB_ID +
+                                " FROM " + FavoriteMoviesContract.FavoiteMovieEntry.TABLE_NAME + ")") +
+                ") ORDER BY " + FavoriteMoviesContract.MovieSearchEntry.COLUMN_RANK + ", " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_POPULARITY + " DESC" +
+                " LIMIT " + MAX_SEARCH_RESULTS;
+    }
+
+    /**
+     * @param source the column of SEARCH_COLUMNS the movie table's columns are read from
+     * @param filter added to the condition of the select
+     */
+    private static String buildSearchSelect(String searchTable, String movieTable, int source, String filter)
+    {
+        StringBuilder select = new StringBuilder("SELECT ");
+        for (String[] column : SEARCH_COLUMNS)
+        {
+            select.append("NULL".equals(column[source]) ? "NULL" : "movies." + column[source])
+                    .append(" AS ").append(column[0]).append(", ");
+        }
+
+        // the index is only searched again for the words in the title once, not for every movie
+        select.append("CASE WHEN movies.").append(FavoriteMoviesContract.MovieSearchEntry.COLUMN_TITLE)
+                .append(" LIKE ? ESCAPE '\\' THEN 0 WHEN ").append(searchTable).append(".docid IN (SELECT docid FROM ")
+                .append(searchTable).append(" WHERE ").append(searchTable).append(" MATCH ?) THEN 1 ELSE 2 END AS ")
+                .append(FavoriteMoviesContract.MovieSearchEntry.COLUMN_RANK);
+
+        select.append(" FROM ").append(searchTable).append(" INNER JOIN ").append(movieTable)
+                .append(" movies ON movies.").append(FavoriteMoviesContract._ID).append(" = ")
+                .append(searchTable).append(".docid WHERE ").append(searchTable).append(" MATCH ?")
+                .append(filter);
+        return select.toString();
+    }
+
+    /**
+     * Turn the words of the query into prefix searches that must all match. The index splits text
+     * into words at every ASCII character that isn't a letter or a digit and only ignores the case
+     * of ASCII letters, so the query is split and lower cased the same way. That also removes the
+     * quotes, operators and special characters of the match syntax.
+     *
+     * @param column the only column to search, null to search every column
+     * @return the match expression or null if the query has no words
+     */
+    private static String buildMatchExpression(String query, String column)
+    {
+        if (query == null)
+        {
+            return null;
+        }
+
+        StringBuilder match = new StringBuilder();
+        boolean inWord = false;
+        for (int i = 0; i < query.length(); i++)
+        {
+            char c = query.charAt(i);
+            if (c < 128 && !Character.isLetterOrDigit(c))
+            {
+                if (inWord)
+                {
+                    match.append('*');
+                    inWord = false;
+                }
+                continue;
+            }
+
+            if (!inWord)
+            {
+                if (match.length() > 0)
+                {
+                    match.append(' ');
+                }
+                if (column != null)
+                {
+                    match.append(column).append(':');
+                }
+                inWord = true;
+            }
+            match.append(c >= 'A' && c <= 'Z' ? (char) (c - 'A' + 'a') : c);
+        }
+
+        if (inWord)
+        {
+            match.append('*');
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+
+    /**
+     * @return the text with the wildcards of a LIKE pattern escaped
+     */
+    private static String escapeLike(String text)
+    {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
     @Nullable
     @Override
     public String getType(@NonNull Uri uri)
@@ -126,7 +402,7 @@ public class FavoriteMoviesContentProvider extends ContentProvider
         throw new UnsupportedOperationException("Not yet implemented");
     }
 
-    // Inserts new favorites into the directory
+    // Inserts new favorites into the directory, a movie that is already a favorite is updated instead
     @Override
     public Uri insert(@NonNull Uri uri, ContentValues values)
     {
@@ -143,14 +419,14 @@ public class FavoriteMoviesContentProvider extends ContentProvider
         {
             // Insert data about a new favorite movie
             case FAVORITES:
-                long id = db.insert(TABLE_NAME, null, values);
-                Log.v(TAG, "Inserting a new favorite movie with the id " + id);
+                Integer movieId = values.getAsInteger(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_MOVIE_DB_ID);
+                Log.v(TAG, "Inserting or updating the favorite movie with the id " + movieId);
 
-                // if a new row was inserted successfully create a uri that points to the row
+                // if the row was stored successfully create a uri that points to the favorite
                 // otherwise throw an exception
-                if ( id > 0 )
+                if (movieId != null && upsertFavorite(db, String.valueOf(movieId), values))
                 {
-                    returnUri = ContentUris.withAppendedId(FavoriteMoviesContract.FavoiteMovieEntry.CONTENT_URI, id);
+                    returnUri = ContentUris.withAppendedId(FavoriteMoviesContract.FavoiteMovieEntry.CONTENT_URI, movieId);
                 }
                 else
                 {
@@ -164,12 +440,218 @@ public class FavoriteMoviesContentProvider extends ContentProvider
         }
 
         // Notify the resolver if the uri has been changed, and return the newly inserted URI
-        getContext().getContentResolver().notifyChange(uri, null);
+        notifyChange(uri);
 
         // Return constructed uri (this points to the newly inserted row of data)
         return returnUri;
     }
 
+    /**
+     * Insert or update many favorites, or store a page of a movie list, in a single transaction
+     * with a single change notification
+     */
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values)
+    {
+        switch (sUriMatcher.match(uri))
+        {
+            case FAVORITES:
+                return bulkInsertFavorites(uri, values);
+            case CACHED_LIST:
+                return insertMoviePage(uri, values);
+            default:
+                return super.bulkInsert(uri, values);
+        }
+    }
+
+    /**
+     * Insert or update every favorite, a favorite without a movie id is skipped. Posters replaced
+     * by the favorites are deleted once every favorite has been committed.
+     *
+     * @return the number of favorites that were stored
+     */
+    private int bulkInsertFavorites(Uri uri, ContentValues[] values)
+    {
+        final SQLiteDatabase db = mFavoriteMoviesDbHelper.getWritableDatabase();
+        Log.v(TAG, "Inserting or updating " + values.length + " favorite movies");
+
+        int count = 0;
+        LinkedHashSet<String> replacedPosterFiles = new LinkedHashSet<>();
+        mBatchPosterFiles.set(replacedPosterFiles);
+        db.beginTransaction();
+        try
+        {
+            for (ContentValues favorite : values)
+            {
+                Integer movieId = favorite.getAsInteger(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_MOVIE_DB_ID);
+                if (movieId != null && upsertFavorite(db, String.valueOf(movieId), favorite))
+                {
+                    count++;
+                }
+            }
+            db.setTransactionSuccessful();
+        }
+        finally
+        {
+            db.endTransaction();
+            mBatchPosterFiles.remove();
+        }
+
+        deletePosterFilesIfUnused(db, replacedPosterFiles);
+
+        if (count != 0)
+        {
+            notifyChange(uri);
+        }
+        return count;
+    }
+
+    /**
+     * Store a page of a movie list. Each row holds the movie's columns along with the page and
+     * position it is on. The whole page is written in one transaction and replaces the stored
+     * movies of the same page.
+     *
+     * Storing the first page again doesn't remove the later pages that were stored after the first
+     * page it replaces. The grid keeps displaying those pages below the refreshed first page, so
+     * their movies must still be found by the detail screen if the process is restarted. They are
+     * replaced as they are retrieved again, and any that are left are removed when the first page
+     * is refreshed the next time, along with the movies no other list refers to. MovieRepository
+     * doesn't display later pages that are older than the first page.
+     */
+    private int insertMoviePage(Uri uri, ContentValues[] values)
+    {
+        if (values.length == 0)
+        {
+            return 0;
+        }
+
+        final SQLiteDatabase db = mFavoriteMoviesDbHelper.getWritableDatabase();
+        String listName = uri.getLastPathSegment();
+        Integer page = values[0].getAsInteger(FavoriteMoviesContract.MovieListEntry.COLUMN_PAGE);
+        if (page == null)
+        {
+            throw new IllegalArgumentException("The page of the list is missing: " + uri);
+        }
+        Log.v(TAG, "Storing page " + page + " of the list " + listName);
+
+        db.beginTransaction();
+        try
+        {
+            if (page == 1)
+            {
+                // the pages left behind by the previous refresh are no longer displayed
+                long replacedFetchedAt = DatabaseUtils.longForQuery(db, FIRST_PAGE_FETCHED_AT,
+                        new String[]{listName});
+                db.delete(FavoriteMoviesContract.MovieListEntry.TABLE_NAME,
+                        FavoriteMoviesContract.MovieListEntry.COLUMN_LIST_NAME + "=? AND (" +
+                                FavoriteMoviesContract.MovieListEntry.COLUMN_PAGE + "=1 OR " +
+                                FavoriteMoviesContract.MovieListEntry.COLUMN_FETCHED_AT + "<?)",
+                        new String[]{listName, String.valueOf(replacedFetchedAt)});
+            }
+            else
+            {
+                db.delete(FavoriteMoviesContract.MovieListEntry.TABLE_NAME,
+                        FavoriteMoviesContract.MovieListEntry.COLUMN_LIST_NAME + "=? AND " +
+                                FavoriteMoviesContract.MovieListEntry.COLUMN_PAGE + "=?",
+                        new String[]{listName, String.valueOf(page)});
+            }
+
+            for (ContentValues movieValues : values)
+            {
+                // split the row into the movie and its place in the list
+                ContentValues movie = new ContentValues(movieValues);
+                ContentValues listing = new ContentValues();
+                listing.put(FavoriteMoviesContract.MovieListEntry.COLUMN_LIST_NAME, listName);
+                listing.put(FavoriteMoviesContract.MovieListEntry.COLUMN_MOVIE_DB_ID,
+                        movie.getAsInteger(FavoriteMoviesContract.CachedMovieEntry.COLUMN_MOVIE_DB_ID));
+                moveValue(movie, listing, FavoriteMoviesContract.MovieListEntry.COLUMN_PAGE);
+                moveValue(movie, listing, FavoriteMoviesContract.MovieListEntry.COLUMN_POSITION);
+                moveValue(movie, listing, FavoriteMoviesContract.MovieListEntry.COLUMN_TOTAL_PAGES);
+                moveValue(movie, listing, FavoriteMoviesContract.MovieListEntry.COLUMN_FETCHED_AT);
+
+                db.insertWithOnConflict(FavoriteMoviesContract.CachedMovieEntry.TABLE_NAME, null, movie,
+                        SQLiteDatabase.CONFLICT_REPLACE);
+                db.insert(FavoriteMoviesContract.MovieListEntry.TABLE_NAME, null, listing);
+            }
+
+            if (page == 1)
+            {
+                db.execSQL(DELETE_UNLISTED_MOVIES);
+            }
+            db.setTransactionSuccessful();
+        }
+        finally
+        {
+            db.endTransaction();
+        }
+
+        notifyChange(uri);
+        return values.length;
+    }
+
+    /**
+     * Apply every operation in a single transaction. If any operation fails none of them are
+     * applied, and the changed uris are only notified once after the batch is committed. Poster
+     * files the batch stopped referring to are also only deleted once it is committed.
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException
+    {
+        final SQLiteDatabase db = mFavoriteMoviesDbHelper.getWritableDatabase();
+        LinkedHashSet<Uri> changes = new LinkedHashSet<>();
+
+        LinkedHashSet<String> releasedPosterFiles = new LinkedHashSet<>();
+
+        ContentProviderResult[] results;
+        mBatchChanges.set(changes);
+        mBatchPosterFiles.set(releasedPosterFiles);
+        db.beginTransaction();
+        try
+        {
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+        }
+        finally
+        {
+            db.endTransaction();
+            mBatchChanges.remove();
+            mBatchPosterFiles.remove();
+        }
+
+        // the batch is committed so the rows that referred to these posters are gone for good
+        deletePosterFilesIfUnused(db, releasedPosterFiles);
+
+        for (Uri uri : changes)
+        {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+        return results;
+    }
+
+    /**
+     * Notify observers that the uri changed, or wait until the end of the batch if one is being applied
+     */
+    private void notifyChange(Uri uri)
+    {
+        LinkedHashSet<Uri> batchChanges = mBatchChanges.get();
+        if (batchChanges != null)
+        {
+            batchChanges.add(uri);
+        }
+        else
+        {
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+    }
+
+    private static void moveValue(ContentValues from, ContentValues to, String key)
+    {
+        to.put(key, from.getAsLong(key));
+        from.remove(key);
+    }
+
     // Remove a favorite movie from the database
     @Override
     public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs)
@@ -191,10 +673,22 @@ public class FavoriteMoviesContentProvider extends ContentProvider
             case FAVORITE_WITH_ID:
                 String id = uri.getPathSegments().get(1);
                 Log.v(TAG, "Deleting the favorite movie with the id " + id);
-                // Insert new values into the database
-                // Inserting values into tasks table
-                 count = db.delete(TABLE_NAME,"moviedb_id=?", new String[]{id});
 
+                // find the poster file before the row is removed so it can be removed as well
+                String posterFile;
+                db.beginTransaction();
+                try
+                {
+                    posterFile = getPosterFile(db, id);
+                    count = getStatements(db).delete(id);
+                    db.setTransactionSuccessful();
+                }
+                finally
+                {
+                    db.endTransaction();
+                }
+
+                releasePosterFile(db, posterFile);
                 break;
             // Throw an exception if the uri did match a known delete operation
             default:
@@ -204,16 +698,228 @@ public class FavoriteMoviesContentProvider extends ContentProvider
         // If more then one record has been deleted send a notification based on the supplied uri
         if (count != 0)
         {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
         }
 
         // Return the number of rows that where delted
         return count;
     }
 
+    /**
+     * Update the favorite with the movie id if there is one, otherwise insert it. The unique index on
+     * the movie id keeps a favorite from being stored twice, and the lookup uses the same index.
+     *
+     * @return true if the favorite was stored
+     */
+    private boolean upsertFavorite(SQLiteDatabase db, String movieId, ContentValues values)
+    {
+        String[] idArgs = new String[]{movieId};
+        String oldPosterFile;
+        boolean stored;
+
+        db.beginTransaction();
+        try
+        {
+            values = withStoredPosterFile(values);
+            oldPosterFile = getPosterFile(db, movieId);
+            stored = db.update(TABLE_NAME, values, "moviedb_id=?", idArgs) > 0
+                    || getStatements(db).insert(values) > 0;
+            db.setTransactionSuccessful();
+        }
+        finally
+        {
+            db.endTransaction();
+        }
+
+        // an updated favorite may have replaced its poster
+        if (oldPosterFile != null && values.containsKey(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_FILE)
+                && !oldPosterFile.equals(values.getAsString(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_FILE)))
+        {
+            releasePosterFile(db, oldPosterFile);
+        }
+        return stored;
+    }
+
+    /**
+     * A poster file that already existed when it was saved may have been deleted since, by the
+     * removal of the last favorite that referred to it. Must be called inside the transaction that
+     * stores the values, which keeps a poster from being deleted until the values are committed.
+     *
+     * @return the values, or a copy without the poster file if the file no longer exists so the
+     * poster is retrieved from theMovieDB instead
+     */
+    private ContentValues withStoredPosterFile(ContentValues values)
+    {
+        String posterFile = values.getAsString(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_FILE);
+        if (posterFile == null || PosterFileStore.getFile(getContext(), posterFile).exists())
+        {
+            return values;
+        }
+
+        Log.v(TAG, "The poster " + posterFile + " was removed before the favorite was stored");
+        ContentValues storedValues = new ContentValues(values);
+        storedValues.putNull(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_FILE);
+        return storedValues;
+    }
+
+    /**
+     * @return the name of the poster file stored for the favorite movie or null if it doesn't have one
+     */
+    private String getPosterFile(SQLiteDatabase db, String id)
+    {
+        return getStatements(db).getPosterFile(id);
+    }
+
+    /**
+     * The statements must only be used inside a transaction, so a thread always holds the database
+     * before it waits for a statement another thread is using
+     */
+    private synchronized FavoriteStatements getStatements(SQLiteDatabase db)
+    {
+        if (mStatements == null)
+        {
+            mStatements = new FavoriteStatements(db);
+        }
+        return mStatements;
+    }
+
+    /**
+     * Delete the poster file once no favorite refers to it. Inside a batch this waits until the
+     * batch has been committed, since rolling it back would restore the rows referring to the file.
+     */
+    private void releasePosterFile(SQLiteDatabase db, String posterFile)
+    {
+        LinkedHashSet<String> batchPosterFiles = mBatchPosterFiles.get();
+        if (batchPosterFiles != null)
+        {
+            if (posterFile != null)
+            {
+                batchPosterFiles.add(posterFile);
+            }
+        }
+        else
+        {
+            deletePosterFileIfUnused(db, posterFile);
+        }
+    }
+
+    /**
+     * Delete each poster file that no favorite refers to, counting the references again now that
+     * the batch that released them has been committed
+     */
+    private void deletePosterFilesIfUnused(SQLiteDatabase db, LinkedHashSet<String> posterFiles)
+    {
+        for (String posterFile : posterFiles)
+        {
+            deletePosterFileIfUnused(db, posterFile);
+        }
+    }
+
+    /**
+     * Posters are stored by the hash of their contents so only remove the file once no other
+     * favorite movie refers to it. The references are counted and the file deleted inside a
+     * transaction, so a favorite being stored with the same poster either commits first and is
+     * counted, or finds the file gone and is stored without it.
+     */
+    private void deletePosterFileIfUnused(SQLiteDatabase db, String posterFile)
+    {
+        if (posterFile == null)
+        {
+            return;
+        }
+
+        db.beginTransaction();
+        try
+        {
+            long references = DatabaseUtils.queryNumEntries(db, TABLE_NAME,
+                    FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_FILE + "=?", new String[]{posterFile});
+            if (references == 0)
+            {
+                PosterFileStore.delete(getContext(), posterFile);
+            }
+            db.setTransactionSuccessful();
+        }
+        finally
+        {
+            db.endTransaction();
+        }
+    }
+
+    // Change the stored data of the favorites matching the selection or of a specific favorite
     @Override
     public int update(@NonNull Uri uri, @Nullable ContentValues values, @Nullable String selection, @Nullable String[] selectionArgs)
     {
-        return 0;
+        if (values == null || values.size() == 0)
+        {
+            return 0;
+        }
+
+        final SQLiteDatabase db = mFavoriteMoviesDbHelper.getWritableDatabase();
+
+        switch (sUriMatcher.match(uri))
+        {
+            // update the favorites matching the supplied selection
+            case FAVORITES:
+                break;
+            // update a specific favorite movie based on the supplied id
+            case FAVORITE_WITH_ID:
+                selection = "moviedb_id=?";
+                selectionArgs = new String[]{uri.getPathSegments().get(1)};
+                break;
+            // Throw an exception if the uri did match a known update operation
+            default:
+                throw new UnsupportedOperationException("Unknown uri: " + uri);
+        }
+
+        Log.v(TAG, "Updating the favorite movies matching " + selection);
+
+        // remember the posters being replaced so they can be removed once nothing refers to them
+        boolean replacesPoster = values.containsKey(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_FILE);
+        ArrayList<String> oldPosterFiles = new ArrayList<>();
+
+        int count;
+        db.beginTransaction();
+        try
+        {
+            if (replacesPoster)
+            {
+                Cursor posters = db.query(true, TABLE_NAME,
+                        new String[]{FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_FILE},
+                        selection, selectionArgs, null, null, null, null);
+                try
+                {
+                    while (posters.moveToNext())
+                    {
+                        if (!posters.isNull(0))
+                        {
+                            oldPosterFiles.add(posters.getString(0));
+                        }
+                    }
+                }
+                finally
+                {
+                    posters.close();
+                }
+            }
+
+            values = withStoredPosterFile(values);
+            count = db.update(TABLE_NAME, values, selection, selectionArgs);
+            db.setTransactionSuccessful();
+        }
+        finally
+        {
+            db.endTransaction();
+        }
+
+        for (String posterFile : oldPosterFiles)
+        {
+            releasePosterFile(db, posterFile);
+        }
+
+        if (count != 0)
+        {
+            notifyChange(uri);
+        }
+        return count;
     }
 }
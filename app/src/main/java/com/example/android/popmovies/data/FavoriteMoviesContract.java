@@ -17,6 +17,12 @@ public class FavoriteMoviesContract implements BaseColumns
 
     public static final String PATH_FAVORITES = "all_favorites";
 
+    public static final String PATH_CACHED_LISTS = "cached_lists";
+
+    public static final String PATH_CACHED_MOVIES = "cached_movies";
+
+    public static final String PATH_SEARCH = "search";
+
     // Favorite Movie table and column names
     public static final class FavoiteMovieEntry implements BaseColumns
     {
@@ -25,8 +31,8 @@ public class FavoriteMoviesContract implements BaseColumns
         public static final Uri CONTENT_URI =
                 BASE_CONTENT_URI.buildUpon().appendPath(PATH_FAVORITES).build();
 
-        public static final String COLUMN_POSTER_SIZE = "poster_size";
-        public static final String COLUMN_POSTER_Data = "poster_data";
+        // The name of the poster file in the PosterFileStore
+        public static final String COLUMN_POSTER_FILE = "poster_file";
         public static final String COLUMN_POSTER = "poster";
         public static final String COLUMN_ADULT = "adult";
         public static final String COLUMN_OVERVIEW = "overview";
@@ -39,4 +45,89 @@ public class FavoriteMoviesContract implements BaseColumns
         public static final String COLUMN_VIDEO = "video";
         public static final String COLUMN_VOTE_AVERAGE = "vote_Average";
     }
+
+    // Movies from the popular and top rated lists that have been browsed, kept so the lists can be
+    // displayed without waiting on theMovieDB
+    public static final class CachedMovieEntry implements BaseColumns
+    {
+        public static final String TABLE_NAME = "CachedMovies";
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_CACHED_MOVIES).build();
+
+        public static final String COLUMN_POSTER = "poster";
+        public static final String COLUMN_ADULT = "adult";
+        public static final String COLUMN_OVERVIEW = "overview";
+        public static final String COLUMN_RELEASE_DATE = "release_date";
+        public static final String COLUMN_MOVIE_DB_ID = "moviedb_id";
+        public static final String COLUMN_ORIGINAL_TITLE = "original_title";
+        public static final String COLUMN_ORIGINAL_LANGUAGE = "original_language";
+        public static final String COLUMN_TITLE = "title";
+        public static final String COLUMN_BACKDROP = "backdrop";
+        public static final String COLUMN_POPULARITY = "popularity";
+        public static final String COLUMN_VOTE_COUNT = "vote_count";
+        public static final String COLUMN_VIDEO = "video";
+        public static final String COLUMN_VOTE_AVERAGE = "vote_Average";
+    }
+
+    // The position of each cached movie in the popular and top rated lists
+    public static final class MovieListEntry implements BaseColumns
+    {
+        public static final String TABLE_NAME = "MovieLists";
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_CACHED_LISTS).build();
+
+        // The filter used to retrieve the list from theMovieDB such as popular or top_rated
+        public static final String COLUMN_LIST_NAME = "list_name";
+        public static final String COLUMN_MOVIE_DB_ID = "moviedb_id";
+        // The page of the list the movie was on and its position on that page
+        public static final String COLUMN_PAGE = "page";
+        public static final String COLUMN_POSITION = "position";
+        // The number of pages theMovieDB had for the list when the page was retrieved
+        public static final String COLUMN_TOTAL_PAGES = "total_pages";
+        // When the page was retrieved from theMovieDB in milliseconds since the epoch
+        public static final String COLUMN_FETCHED_AT = "fetched_at";
+
+        /**
+         * @return the uri of the cached movies of a single list such as popular or top_rated
+         */
+        public static Uri buildListUri(String listName)
+        {
+            return CONTENT_URI.buildUpon().appendPath(listName).build();
+        }
+    }
+
+    // The full text index of the titles and overviews of the favorite and cached movies. Each
+    // source table has its own index whose rows share the ids of the movies they index.
+    public static final class MovieSearchEntry
+    {
+        public static final String FAVORITES_TABLE_NAME = "FavoriteMoviesSearch";
+        public static final String CACHED_MOVIES_TABLE_NAME = "CachedMoviesSearch";
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_SEARCH).build();
+
+        // The text the user typed, passed as a query parameter so an empty query is still a valid uri
+        public static final String QUERY_PARAM = "query";
+
+        // The indexed columns, named the same as the columns of the movies they are copied from
+        public static final String COLUMN_TITLE = "title";
+        public static final String COLUMN_OVERVIEW = "overview";
+
+        // Besides the columns of a cached movie each result has the name of the poster file of a
+        // favorite, null for a movie that isn't a favorite, and how well it matched the query with
+        // 0 being the best match
+        public static final String COLUMN_POSTER_FILE = "poster_file";
+        public static final String COLUMN_RANK = "search_rank";
+
+        /**
+         * @return the uri of the stored movies whose title or overview contain words starting
+         * with the words of the query
+         */
+        public static Uri buildSearchUri(String query)
+        {
+            return CONTENT_URI.buildUpon().appendQueryParameter(QUERY_PARAM, query).build();
+        }
+    }
 }
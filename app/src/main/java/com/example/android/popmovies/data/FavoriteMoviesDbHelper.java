@@ -1,10 +1,17 @@
-// Logic for storing an image as a blob was inspired by: https://stackoverflow.com/a/32163951
-
 package com.example.android.popmovies.data;
 
+import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import com.example.android.popmovies.MovieData;
+
+import java.io.IOException;
+import java.util.ArrayList;
 
 /**
  * Created by Daniel on 6/17/2017.
@@ -15,27 +22,480 @@ import android.database.sqlite.SQLiteOpenHelper;
 
 public class FavoriteMoviesDbHelper extends SQLiteOpenHelper
 {
+    // Store the class name for logging
+    private static final String TAG = FavoriteMoviesDbHelper.class.getSimpleName();
 
     // The name of the database
     private static final String DATABASE_NAME = "favoriteMoviesDb.db";
 
-    // If you change the database schema, you must increment the database version
-    private static final int VERSION = 1;
+    // If you change the database schema, you must increment the database version and add a
+    // Migration to the end of mMigrations that upgrades the previous version to the new one. A
+    // migration creates the tables of its own version rather than the current ones, so it still
+    // produces what the migrations after it expect once the current schema has changed.
+    private static final int VERSION = 6;
+
+    // mMigrations[i] upgrades a database from version i + 1 to version i + 2
+    private final Migration[] mMigrations = {
+            // Version 2 moved the poster BLOBs out of the database into the PosterFileStore
+            new Migration() {
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    movePostersToFiles(db);
+                }
+            },
+            // Version 3 added the tables that cache the browsed popular and top rated movies
+            new Migration() {
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    // version 4 replaced these tables before any were kept, and every upgrade
+                    // through version 3 continues to version 4, so they are only created there
+                }
+            },
+            // Version 4 stored the ids, scores, counts, flags and release dates as numbers instead of text
+            new Migration() {
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    convertFavoritesToNumbers(db);
+                    // the cached movies can be retrieved from theMovieDB again
+                    db.execSQL("DROP TABLE IF EXISTS " + FavoriteMoviesContract.CachedMovieEntry.TABLE_NAME);
+                    db.execSQL("DROP TABLE IF EXISTS " + FavoriteMoviesContract.MovieListEntry.TABLE_NAME);
+                    createVersion4CachedMovieTables(db);
+                }
+            },
+            // Version 5 made the movie id of each favorite unique and indexed it
+            new Migration() {
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    removeDuplicateFavorites(db);
+                    createFavoritesIndex(db);
+                }
+            },
+            // Version 6 added the full text index used to search the stored movies
+            new Migration() {
+                @Override
+                public void migrate(SQLiteDatabase db) {
+                    createSearchIndex(db);
+                }
+            }
+    };
+
+    // The index that keeps each favorite movie unique and makes looking up a favorite by id fast
+    private static final String FAVORITES_ID_INDEX = FavoriteMoviesContract.FavoiteMovieEntry.TABLE_NAME + "_movie_id";
+
+    /**
+     * A change to the database schema, applied to databases created before the change was made
+     */
+    private interface Migration
+    {
+        void migrate(SQLiteDatabase db);
+    }
+
+    // The columns version 1 used to store the poster in the database
+    private static final String LEGACY_COLUMN_POSTER_SIZE = "poster_size";
+    private static final String LEGACY_COLUMN_POSTER_DATA = "poster_data";
+
+    // Used to store the posters of existing favorites while upgrading
+    private final Context mContext;
+
+    // Posters the upgrade stopped referring to, deleted once the upgrade has been committed so a
+    // failed upgrade that is rolled back still has every poster it refers to
+    private final ArrayList<String> mReleasedPosters = new ArrayList<>();
 
     // Constructor
     FavoriteMoviesDbHelper(Context context)
     {
         super(context, DATABASE_NAME, null, VERSION);
+        mContext = context;
+
+        // Write-ahead logging lets the loaders keep reading the favorites while a favorite is
+        // being added or removed instead of waiting for the write to finish
+        setWriteAheadLoggingEnabled(true);
     }
 
     @Override
     public void onCreate(SQLiteDatabase db)
     {
-        // create the database with the columns in the FavoriteMoviesContract
-        final String CREATE_TABLE = "CREATE TABLE "  + FavoriteMoviesContract.FavoiteMovieEntry.TABLE_NAME + " (" +
+        createFavoritesTable(db, FavoriteMoviesContract.FavoiteMovieEntry.TABLE_NAME);
+        createFavoritesIndex(db);
+        createCachedMovieTables(db);
+        createSearchIndex(db);
+    }
+
+    /**
+     * Create the unique index on the movie id of the favorites. Tables that are rebuilt while
+     * upgrading are copied without their indices, so this must follow any later rebuild.
+     */
+    private static void createFavoritesIndex(SQLiteDatabase db)
+    {
+        db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS " + FAVORITES_ID_INDEX + " ON " +
+                FavoriteMoviesContract.FavoiteMovieEntry.TABLE_NAME + " (" +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_MOVIE_DB_ID + ");");
+    }
+
+    /**
+     * Create the full text indices of the titles and overviews of the favorite and cached movies
+     * and fill them with the movies that are already stored.
+     *
+     * The indices don't store a copy of the text, they read it from the movie tables, so triggers
+     * remove the words of a movie from its index before the movie is changed or deleted and add
+     * them again afterwards. A cached movie stored again replaces the previous row without firing
+     * the delete trigger, so the words of the row being replaced are removed before the insert.
+     * Dropping a movie table drops its triggers, so this must follow any later rebuild.
+     */
+    private static void createSearchIndex(SQLiteDatabase db)
+    {
+        createSearchIndex(db, FavoriteMoviesContract.MovieSearchEntry.FAVORITES_TABLE_NAME,
+                FavoriteMoviesContract.FavoiteMovieEntry.TABLE_NAME);
+        createSearchIndex(db, FavoriteMoviesContract.MovieSearchEntry.CACHED_MOVIES_TABLE_NAME,
+                FavoriteMoviesContract.CachedMovieEntry.TABLE_NAME);
+
+        final String searchTable = FavoriteMoviesContract.MovieSearchEntry.CACHED_MOVIES_TABLE_NAME;
+        final String movieTable = FavoriteMoviesContract.CachedMovieEntry.TABLE_NAME;
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + searchTable + "_before_insert BEFORE INSERT ON " + movieTable +
+                " BEGIN DELETE FROM " + searchTable + " WHERE docid IN (SELECT " + FavoriteMoviesContract._ID +
+                " FROM " + movieTable + " WHERE " + FavoriteMoviesContract.CachedMovieEntry.COLUMN_MOVIE_DB_ID +
+                " = new." + FavoriteMoviesContract.CachedMovieEntry.COLUMN_MOVIE_DB_ID + "); END");
+    }
+
+    /**
+     * Create the full text index of a single movie table along with the triggers that keep it in sync
+     */
+    private static void createSearchIndex(SQLiteDatabase db, String searchTable, String movieTable)
+    {
+        final String title = FavoriteMoviesContract.MovieSearchEntry.COLUMN_TITLE;
+        final String overview = FavoriteMoviesContract.MovieSearchEntry.COLUMN_OVERVIEW;
+        final String removeWords = " BEGIN DELETE FROM " + searchTable + " WHERE docid = old." +
+                FavoriteMoviesContract._ID + "; END";
+        final String addWords = " BEGIN INSERT INTO " + searchTable + " (docid, " + title + ", " + overview +
+                ") VALUES (new." + FavoriteMoviesContract._ID + ", new." + title + ", new." + overview + "); END";
+
+        Log.v(TAG, "Creating the search index of " + movieTable);
+
+        // FTS4 reading from an external content table is the newest full text index the SQLite
+        // of every supported android version has
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + searchTable + " USING fts4(content=\"" +
+                movieTable + "\", " + title + ", " + overview + ")");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + searchTable + "_after_insert AFTER INSERT ON " +
+                movieTable + addWords);
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + searchTable + "_before_update BEFORE UPDATE OF " +
+                title + ", " + overview + " ON " + movieTable + removeWords);
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + searchTable + "_after_update AFTER UPDATE OF " +
+                title + ", " + overview + " ON " + movieTable + addWords);
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS " + searchTable + "_before_delete BEFORE DELETE ON " +
+                movieTable + removeWords);
+
+        // index the movies that were stored before the index existed
+        db.execSQL("INSERT INTO " + searchTable + " (" + searchTable + ") VALUES ('rebuild')");
+    }
+
+    /**
+     * Create a table with the columns in the FavoriteMoviesContract
+     */
+    private static void createFavoritesTable(SQLiteDatabase db, String tableName)
+    {
+        final String CREATE_TABLE = "CREATE TABLE "  + tableName + " (" +
                 FavoriteMoviesContract._ID                + " INTEGER PRIMARY KEY, " +
-                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_SIZE + " INTEGER NOT NULL, " +
-                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_Data + " BLOB, " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_FILE + " TEXT, " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER + " BLOB NOT NULL, " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ADULT + " INTEGER NOT NULL, " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_OVERVIEW + " TEXT NOT NULL, " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_RELEASE_DATE + " INTEGER NOT NULL, " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_MOVIE_DB_ID + " INTEGER NOT NULL, " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ORIGINAL_TITLE + " TEXT NOT NULL, " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_BACKDROP + " TEXT NOT NULL, " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POPULARITY + " REAL NOT NULL, " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VOTE_AVERAGE + " REAL NOT NULL, " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VOTE_COUNT + " INTEGER NOT NULL, " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VIDEO + " INTEGER NOT NULL"
+                + ");";
+
+      db.execSQL(CREATE_TABLE);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // the posters of an earlier attempt that was rolled back are found again
+        mReleasedPosters.clear();
+
+        // apply every change made to the schema since the version of the existing database, in
+        // order, the whole upgrade runs in a single transaction
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            Log.v(TAG, "Upgrading the database to version " + version);
+            mMigrations[version - 2].migrate(db);
+        }
+    }
+
+    /**
+     * Called once a created or upgraded database has been committed. Deletes the posters the
+     * upgrade stopped referring to, checking again that no favorite refers to them. A poster
+     * left behind if the app stops first is only an unused file.
+     */
+    @Override
+    public void onOpen(SQLiteDatabase db)
+    {
+        super.onOpen(db);
+
+        final String tableName = FavoriteMoviesContract.FavoiteMovieEntry.TABLE_NAME;
+        final String posterFile = FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_FILE;
+        for (String poster : mReleasedPosters) {
+            if (DatabaseUtils.queryNumEntries(db, tableName, posterFile + "=?", new String[]{poster}) == 0) {
+                PosterFileStore.delete(mContext, poster);
+            }
+        }
+        mReleasedPosters.clear();
+    }
+
+    /**
+     * Keep only the most recently added row of each favorite movie so the movie id can be made
+     * unique. If the kept row has no stored poster it takes the poster of a removed row, and
+     * posters no remaining row refers to are deleted once the upgrade has been committed.
+     */
+    private void removeDuplicateFavorites(SQLiteDatabase db)
+    {
+        final String tableName = FavoriteMoviesContract.FavoiteMovieEntry.TABLE_NAME;
+        final String movieId = FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_MOVIE_DB_ID;
+        final String posterFile = FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_FILE;
+        final String duplicates = FavoriteMoviesContract._ID + " NOT IN (SELECT MAX(" +
+                FavoriteMoviesContract._ID + ") FROM " + tableName + " GROUP BY " + movieId + ")";
+
+        db.execSQL("UPDATE " + tableName + " SET " + posterFile + " = (SELECT other." + posterFile +
+                " FROM " + tableName + " other WHERE other." + movieId + " = " + tableName + "." + movieId +
+                " AND other." + posterFile + " IS NOT NULL LIMIT 1) WHERE " + posterFile + " IS NULL");
+
+        // remember the posters of the removed rows so the ones no longer used can be deleted
+        Cursor cursor = db.query(true, tableName, new String[]{posterFile},
+                duplicates + " AND " + posterFile + " IS NOT NULL", null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                mReleasedPosters.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        int removed = db.delete(tableName, duplicates, null);
+        Log.v(TAG, "Removed " + removed + " duplicate favorite movies");
+    }
+
+    /**
+     * Rebuild the favorites table with numeric columns, converting the text version 3 stored.
+     * Flags were stored as "true" or "false", the release date as only the year and the vote
+     * average with "/10" appended. Only the year of the release date is known so the movie is
+     * treated as released on the first of january of that year.
+     */
+    private static void convertFavoritesToNumbers(SQLiteDatabase db)
+    {
+        final String tableName = FavoriteMoviesContract.FavoiteMovieEntry.TABLE_NAME;
+        final String upgradeTableName = tableName + "_upgrade";
+
+        Log.v(TAG, "Converting the favorite movie columns to numbers");
+
+        createVersion4FavoritesTable(db, upgradeTableName);
+        db.execSQL("INSERT INTO " + upgradeTableName + " (" +
+                FavoriteMoviesContract._ID + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_FILE + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ADULT + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_OVERVIEW + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_RELEASE_DATE + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_MOVIE_DB_ID + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ORIGINAL_TITLE + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_BACKDROP + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POPULARITY + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VOTE_AVERAGE + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VOTE_COUNT + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VIDEO + ") SELECT " +
+                FavoriteMoviesContract._ID + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_FILE + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER + ", " +
+                flagToNumber(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ADULT) + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_OVERVIEW + ", " +
+                "CASE WHEN " + FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_RELEASE_DATE + " GLOB '[0-9][0-9][0-9][0-9]'" +
+                " THEN CAST(julianday(" + FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_RELEASE_DATE +
+                " || '-01-01') - julianday('1970-01-01') AS INTEGER)" +
+                " ELSE " + MovieData.NO_RELEASE_DATE + " END, " +
+                "CAST(" + FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_MOVIE_DB_ID + " AS INTEGER), " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ORIGINAL_TITLE + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_BACKDROP + ", " +
+                "CAST(" + FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POPULARITY + " AS REAL), " +
+                "CAST(REPLACE(" + FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VOTE_AVERAGE + ", '/10', '') AS REAL), " +
+                "CAST(" + FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VOTE_COUNT + " AS INTEGER), " +
+                flagToNumber(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VIDEO) +
+                " FROM " + tableName);
+        db.execSQL("DROP TABLE " + tableName);
+        db.execSQL("ALTER TABLE " + upgradeTableName + " RENAME TO " + tableName);
+    }
+
+    /**
+     * Create a favorites table as version 4 defined it, with numeric columns
+     */
+    private static void createVersion4FavoritesTable(SQLiteDatabase db, String tableName)
+    {
+        db.execSQL("CREATE TABLE "  + tableName + " (" +
+                FavoriteMoviesContract._ID + " INTEGER PRIMARY KEY, " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_FILE + " TEXT, " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER + " BLOB NOT NULL, " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ADULT + " INTEGER NOT NULL, " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_OVERVIEW + " TEXT NOT NULL, " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_RELEASE_DATE + " INTEGER NOT NULL, " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_MOVIE_DB_ID + " INTEGER NOT NULL, " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ORIGINAL_TITLE + " TEXT NOT NULL, " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_BACKDROP + " TEXT NOT NULL, " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POPULARITY + " REAL NOT NULL, " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VOTE_AVERAGE + " REAL NOT NULL, " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VOTE_COUNT + " INTEGER NOT NULL, " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VIDEO + " INTEGER NOT NULL"
+                + ");");
+    }
+
+    /**
+     * Create the cached movie tables as version 4 defined them, with numeric columns
+     */
+    private static void createVersion4CachedMovieTables(SQLiteDatabase db)
+    {
+        db.execSQL("CREATE TABLE " + FavoriteMoviesContract.CachedMovieEntry.TABLE_NAME + " (" +
+                FavoriteMoviesContract._ID + " INTEGER PRIMARY KEY, " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_MOVIE_DB_ID + " INTEGER NOT NULL UNIQUE, " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_POSTER + " TEXT, " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_ADULT + " INTEGER, " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_OVERVIEW + " TEXT, " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_RELEASE_DATE + " INTEGER, " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_ORIGINAL_TITLE + " TEXT, " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_ORIGINAL_LANGUAGE + " TEXT, " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_TITLE + " TEXT, " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_BACKDROP + " TEXT, " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_POPULARITY + " REAL, " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_VOTE_COUNT + " INTEGER, " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_VIDEO + " INTEGER, " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_VOTE_AVERAGE + " REAL"
+                + ");");
+
+        db.execSQL("CREATE TABLE " + FavoriteMoviesContract.MovieListEntry.TABLE_NAME + " (" +
+                FavoriteMoviesContract._ID + " INTEGER PRIMARY KEY, " +
+                FavoriteMoviesContract.MovieListEntry.COLUMN_LIST_NAME + " TEXT NOT NULL, " +
+                FavoriteMoviesContract.MovieListEntry.COLUMN_MOVIE_DB_ID + " INTEGER NOT NULL, " +
+                FavoriteMoviesContract.MovieListEntry.COLUMN_PAGE + " INTEGER NOT NULL, " +
+                FavoriteMoviesContract.MovieListEntry.COLUMN_POSITION + " INTEGER NOT NULL, " +
+                FavoriteMoviesContract.MovieListEntry.COLUMN_TOTAL_PAGES + " INTEGER NOT NULL, " +
+                FavoriteMoviesContract.MovieListEntry.COLUMN_FETCHED_AT + " INTEGER NOT NULL"
+                + ");");
+
+        db.execSQL("CREATE INDEX " + FavoriteMoviesContract.MovieListEntry.TABLE_NAME + "_order ON " +
+                FavoriteMoviesContract.MovieListEntry.TABLE_NAME + " (" +
+                FavoriteMoviesContract.MovieListEntry.COLUMN_LIST_NAME + ", " +
+                FavoriteMoviesContract.MovieListEntry.COLUMN_PAGE + ", " +
+                FavoriteMoviesContract.MovieListEntry.COLUMN_POSITION + ");");
+    }
+
+    /**
+     * @return an expression that converts a flag stored as "true" or "false" to 1 or 0
+     */
+    private static String flagToNumber(String column)
+    {
+        return "CASE WHEN " + column + " = 'true' OR " + column + " = 1 THEN 1 ELSE 0 END";
+    }
+
+    /**
+     * Create the table of cached movies and the table that records which lists they are on.
+     * A movie on both the popular and top rated lists is only stored once.
+     */
+    private static void createCachedMovieTables(SQLiteDatabase db)
+    {
+        db.execSQL("CREATE TABLE " + FavoriteMoviesContract.CachedMovieEntry.TABLE_NAME + " (" +
+                FavoriteMoviesContract._ID + " INTEGER PRIMARY KEY, " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_MOVIE_DB_ID + " INTEGER NOT NULL UNIQUE, " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_POSTER + " TEXT, " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_ADULT + " INTEGER, " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_OVERVIEW + " TEXT, " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_RELEASE_DATE + " INTEGER, " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_ORIGINAL_TITLE + " TEXT, " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_ORIGINAL_LANGUAGE + " TEXT, " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_TITLE + " TEXT, " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_BACKDROP + " TEXT, " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_POPULARITY + " REAL, " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_VOTE_COUNT + " INTEGER, " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_VIDEO + " INTEGER, " +
+                FavoriteMoviesContract.CachedMovieEntry.COLUMN_VOTE_AVERAGE + " REAL"
+                + ");");
+
+        db.execSQL("CREATE TABLE " + FavoriteMoviesContract.MovieListEntry.TABLE_NAME + " (" +
+                FavoriteMoviesContract._ID + " INTEGER PRIMARY KEY, " +
+                FavoriteMoviesContract.MovieListEntry.COLUMN_LIST_NAME + " TEXT NOT NULL, " +
+                FavoriteMoviesContract.MovieListEntry.COLUMN_MOVIE_DB_ID + " INTEGER NOT NULL, " +
+                FavoriteMoviesContract.MovieListEntry.COLUMN_PAGE + " INTEGER NOT NULL, " +
+                FavoriteMoviesContract.MovieListEntry.COLUMN_POSITION + " INTEGER NOT NULL, " +
+                FavoriteMoviesContract.MovieListEntry.COLUMN_TOTAL_PAGES + " INTEGER NOT NULL, " +
+                FavoriteMoviesContract.MovieListEntry.COLUMN_FETCHED_AT + " INTEGER NOT NULL"
+                + ");");
+
+        // the lists are always read in order
+        db.execSQL("CREATE INDEX " + FavoriteMoviesContract.MovieListEntry.TABLE_NAME + "_order ON " +
+                FavoriteMoviesContract.MovieListEntry.TABLE_NAME + " (" +
+                FavoriteMoviesContract.MovieListEntry.COLUMN_LIST_NAME + ", " +
+                FavoriteMoviesContract.MovieListEntry.COLUMN_PAGE + ", " +
+                FavoriteMoviesContract.MovieListEntry.COLUMN_POSITION + ");");
+    }
+
+    /**
+     * Write every poster BLOB to the PosterFileStore, then rebuild the table without the BLOB columns
+     * so only the name of the poster file is stored in each row.
+     *
+     * The files are written inside the upgrade's transaction since the rows store their names. If
+     * the upgrade is rolled back the files are left unused, and as each file is named after its
+     * contents the next attempt reuses them rather than writing them again.
+     */
+    private void movePostersToFiles(SQLiteDatabase db)
+    {
+        final String tableName = FavoriteMoviesContract.FavoiteMovieEntry.TABLE_NAME;
+        final String upgradeTableName = tableName + "_upgrade";
+
+        Log.v(TAG, "Moving the favorite movie posters out of the database");
+
+        db.execSQL("ALTER TABLE " + tableName + " ADD COLUMN " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_FILE + " TEXT");
+
+        // Only get the row ids up front, the posters are read one row at a time so a single
+        // large poster never has to share a CursorWindow with the others
+        Cursor rowIds = db.query(tableName, new String[]{FavoriteMoviesContract._ID},
+                LEGACY_COLUMN_POSTER_DATA + " IS NOT NULL", null, null, null, null);
+        try {
+            while (rowIds.moveToNext()) {
+                movePosterToFile(db, tableName, rowIds.getLong(0));
+            }
+        } finally {
+            rowIds.close();
+        }
+
+        // SQLite can't drop columns so copy the remaining columns into a new table
+        createVersion2FavoritesTable(db, upgradeTableName);
+        final String columns = FavoriteMoviesContract._ID + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_FILE + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ADULT + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_OVERVIEW + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_RELEASE_DATE + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_MOVIE_DB_ID + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ORIGINAL_TITLE + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_BACKDROP + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POPULARITY + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VOTE_AVERAGE + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VOTE_COUNT + ", " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VIDEO;
+        db.execSQL("INSERT INTO " + upgradeTableName + " (" + columns + ") SELECT " + columns + " FROM " + tableName);
+        db.execSQL("DROP TABLE " + tableName);
+        db.execSQL("ALTER TABLE " + upgradeTableName + " RENAME TO " + tableName);
+    }
+
+    /**
+     * Create a favorites table as version 2 defined it, with the poster file and the columns still
+     * stored as text
+     */
+    private static void createVersion2FavoritesTable(SQLiteDatabase db, String tableName)
+    {
+        db.execSQL("CREATE TABLE "  + tableName + " (" +
+                FavoriteMoviesContract._ID + " INTEGER PRIMARY KEY, " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_FILE + " TEXT, " +
                 FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER + " BLOB NOT NULL, " +
                 FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ADULT + " TEXT NOT NULL, " +
                 FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_OVERVIEW + " TEXT NOT NULL, " +
@@ -47,13 +507,33 @@ public class FavoriteMoviesDbHelper extends SQLiteOpenHelper
                 FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VOTE_AVERAGE + " TEXT NOT NULL, " +
                 FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VOTE_COUNT + " TEXT NOT NULL, " +
                 FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VIDEO + " TEXT NOT NULL"
-                + ");";
-
-      db.execSQL(CREATE_TABLE);
+                + ");");
     }
 
-    @Override
-    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+    /**
+     * Write the poster BLOB of a single row to the PosterFileStore and save the name of the file in the row
+     */
+    private void movePosterToFile(SQLiteDatabase db, String tableName, long rowId)
+    {
+        String[] rowArgs = new String[]{String.valueOf(rowId)};
+        Cursor poster = db.query(tableName,
+                new String[]{LEGACY_COLUMN_POSTER_SIZE, LEGACY_COLUMN_POSTER_DATA},
+                FavoriteMoviesContract._ID + "=?", rowArgs, null, null, null);
+        try {
+            if (!poster.moveToFirst() || poster.getInt(0) <= 0) {
+                return;
+            }
 
+            ContentValues values = new ContentValues();
+            values.put(FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_FILE,
+                    PosterFileStore.save(mContext, poster.getBlob(1)));
+            db.update(tableName, values, FavoriteMoviesContract._ID + "=?", rowArgs);
+        } catch (IOException e) {
+            // the poster can still be retrieved from theMovieDB so keep the rest of the favorite
+            Log.v(TAG, "Error encountered while moving the poster of the favorite " + rowId);
+            e.printStackTrace();
+        } finally {
+            poster.close();
+        }
     }
 }
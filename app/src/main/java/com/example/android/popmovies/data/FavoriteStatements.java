@@ -0,0 +1,157 @@
+package com.example.android.popmovies.data;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+/**
+ * The statements the favorite movies content provider runs every time a favorite is looked up,
+ * added or removed. They are compiled once when the provider first writes to the database and
+ * reused after that instead of building and compiling the SQL for every call.
+ *
+ * A statement holds its bound arguments, so each one is only used by one thread at a time.
+ */
+
+class FavoriteStatements
+{
+    // Store the class name for logging
+    private static final String TAG = FavoriteStatements.class.getSimpleName();
+
+    // Every column of a favorite in the order the insert statement binds them
+    private static final String[] INSERT_COLUMNS = {
+            FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_FILE,
+            FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER,
+            FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ADULT,
+            FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_OVERVIEW,
+            FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_RELEASE_DATE,
+            FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_MOVIE_DB_ID,
+            FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_ORIGINAL_TITLE,
+            FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_BACKDROP,
+            FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POPULARITY,
+            FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VOTE_AVERAGE,
+            FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VOTE_COUNT,
+            FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_VIDEO
+    };
+
+    private final SQLiteDatabase mDb;
+    private final SQLiteStatement mPosterFileStatement;
+    private final SQLiteStatement mInsertStatement;
+    private final SQLiteStatement mDeleteStatement;
+
+    FavoriteStatements(SQLiteDatabase db)
+    {
+        mDb = db;
+        mPosterFileStatement = db.compileStatement("SELECT " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_POSTER_FILE + " FROM " +
+                FavoriteMoviesContract.FavoiteMovieEntry.TABLE_NAME + " WHERE " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_MOVIE_DB_ID + "=?");
+
+        StringBuilder insert = new StringBuilder("INSERT INTO ")
+                .append(FavoriteMoviesContract.FavoiteMovieEntry.TABLE_NAME).append(" (");
+        StringBuilder parameters = new StringBuilder();
+        for (int i = 0; i < INSERT_COLUMNS.length; i++)
+        {
+            if (i > 0)
+            {
+                insert.append(", ");
+                parameters.append(", ");
+            }
+            insert.append(INSERT_COLUMNS[i]);
+            parameters.append('?');
+        }
+        insert.append(") VALUES (").append(parameters).append(")");
+        mInsertStatement = db.compileStatement(insert.toString());
+
+        mDeleteStatement = db.compileStatement("DELETE FROM " +
+                FavoriteMoviesContract.FavoiteMovieEntry.TABLE_NAME + " WHERE " +
+                FavoriteMoviesContract.FavoiteMovieEntry.COLUMN_MOVIE_DB_ID + "=?");
+    }
+
+    /**
+     * @return the name of the poster file stored for the favorite movie or null if it doesn't have one
+     */
+    synchronized String getPosterFile(String movieId)
+    {
+        mPosterFileStatement.bindString(1, movieId);
+        try
+        {
+            return mPosterFileStatement.simpleQueryForString();
+        }
+        catch (SQLiteDoneException e)
+        {
+            // there is no favorite with the id
+            return null;
+        }
+        finally
+        {
+            mPosterFileStatement.clearBindings();
+        }
+    }
+
+    /**
+     * Insert a favorite, columns missing from the values are stored as null
+     *
+     * @return the row id of the new favorite or -1 if it couldn't be stored
+     */
+    synchronized long insert(ContentValues values)
+    {
+        // values with columns the statement doesn't know about are inserted the usual way
+        if (!hasOnlyInsertColumns(values))
+        {
+            return mDb.insert(FavoriteMoviesContract.FavoiteMovieEntry.TABLE_NAME, null, values);
+        }
+
+        for (int i = 0; i < INSERT_COLUMNS.length; i++)
+        {
+            DatabaseUtils.bindObjectToProgram(mInsertStatement, i + 1, values.get(INSERT_COLUMNS[i]));
+        }
+
+        try
+        {
+            return mInsertStatement.executeInsert();
+        }
+        catch (SQLException e)
+        {
+            // match SQLiteDatabase.insert which logs a favorite that breaks a constraint
+            Log.e(TAG, "Error inserting a favorite movie", e);
+            return -1;
+        }
+        finally
+        {
+            mInsertStatement.clearBindings();
+        }
+    }
+
+    private static boolean hasOnlyInsertColumns(ContentValues values)
+    {
+        int known = 0;
+        for (String column : INSERT_COLUMNS)
+        {
+            if (values.containsKey(column))
+            {
+                known++;
+            }
+        }
+        return known == values.size();
+    }
+
+    /**
+     * @return the number of favorites removed
+     */
+    synchronized int delete(String movieId)
+    {
+        mDeleteStatement.bindString(1, movieId);
+        try
+        {
+            return mDeleteStatement.executeUpdateDelete();
+        }
+        finally
+        {
+            mDeleteStatement.clearBindings();
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.android.popmovies.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import com.example.android.popmovies.MovieData;
+import com.example.android.popmovies.ResultPage;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores the pages of the popular and top rated lists as they are retrieved from theMovieDB so
+ * the lists can be displayed straight from the database the next time they are opened, and
+ * searches the stored movies without a request to theMovieDB.
+ *
+ * Every method reads or writes the database so they must not be called on the main thread.
+ */
+
+public class MovieRepository
+{
+    // Store the class name for logging
+    private static final String TAG = MovieRepository.class.getSimpleName();
+
+    // How long a cached list is displayed before its first page is retrieved again, this matches
+    // how long theMovieDB responses for the lists are cached
+    public static final long REFRESH_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    /**
+     * The pages of a list that are stored in the database
+     */
+    public static class CachedList
+    {
+        // the movies of each stored page, starting with the first page
+        public final ArrayList<ArrayList<MovieData>> pages = new ArrayList<>();
+
+        // the number of pages theMovieDB had for the list when the first page was retrieved
+        public int totalPages;
+
+        // when the first page was retrieved in milliseconds since the epoch
+        public long fetchedAt;
+
+        public boolean isEmpty()
+        {
+            return pages.isEmpty();
+        }
+
+        /**
+         * @return true if the list should be retrieved from theMovieDB again
+         */
+        public boolean isStale(long now)
+        {
+            return now - fetchedAt > REFRESH_INTERVAL_MILLIS;
+        }
+    }
+
+    private final ContentResolver mContentResolver;
+
+    public MovieRepository(Context context)
+    {
+        mContentResolver = context.getApplicationContext().getContentResolver();
+    }
+
+    /**
+     * @param listName the filter used to retrieve the list such as popular or top_rated
+     * @return the stored pages of the list, only pages following on from the first page without a
+     * gap and retrieved since the first page are included
+     */
+    public CachedList getCachedList(String listName)
+    {
+        CachedList cachedList = new CachedList();
+        Cursor cursor = mContentResolver.query(FavoriteMoviesContract.MovieListEntry.buildListUri(listName),
+                null, null, null, null);
+        if (cursor == null)
+        {
+            return cachedList;
+        }
+
+        try
+        {
+            int pageIndex = cursor.getColumnIndex(FavoriteMoviesContract.MovieListEntry.COLUMN_PAGE);
+            int totalPagesIndex = cursor.getColumnIndex(FavoriteMoviesContract.MovieListEntry.COLUMN_TOTAL_PAGES);
+            int fetchedAtIndex = cursor.getColumnIndex(FavoriteMoviesContract.MovieListEntry.COLUMN_FETCHED_AT);
+            MovieColumns movieColumns = new MovieColumns(cursor);
+
+            ArrayList<MovieData> currentPage = null;
+            int currentPageNumber = 0;
+            while (cursor.moveToNext())
+            {
+                int page = cursor.getInt(pageIndex);
+                if (page != currentPageNumber)
+                {
+                    // a page that failed to load leaves a gap, the pages after it can't be displayed yet
+                    if (page != currentPageNumber + 1)
+                    {
+                        break;
+                    }
+
+                    if (page == 1)
+                    {
+                        cachedList.totalPages = cursor.getInt(totalPagesIndex);
+                        cachedList.fetchedAt = cursor.getLong(fetchedAtIndex);
+                    }
+                    else if (cursor.getLong(fetchedAtIndex) < cachedList.fetchedAt)
+                    {
+                        // the page was kept when the first page was refreshed, but the order of
+                        // the list may have changed since it was retrieved
+                        break;
+                    }
+                    currentPage = new ArrayList<>();
+                    cachedList.pages.add(currentPage);
+                    currentPageNumber = page;
+                }
+                currentPage.add(readMovie(cursor, movieColumns));
+            }
+        }
+        finally
+        {
+            cursor.close();
+        }
+
+        Log.v(TAG, "Found " + cachedList.pages.size() + " cached pages of " + listName);
+        return cachedList;
+    }
+
+    /**
+     * Store a page of a list that was retrieved from theMovieDB, replacing the stored movies of the
+     * same page. The later pages stay stored when the first page is replaced so the movies that
+     * are still displayed can be found, but they aren't part of the cached list until they are
+     * retrieved again.
+     */
+    public void saveMoviePage(String listName, ResultPage<MovieData> moviePage)
+    {
+        long fetchedAt = System.currentTimeMillis();
+        ContentValues[] values = new ContentValues[moviePage.results.size()];
+        for (int i = 0; i < values.length; i++)
+        {
+            values[i] = toContentValues(moviePage.results.get(i));
+            values[i].put(FavoriteMoviesContract.MovieListEntry.COLUMN_PAGE, moviePage.page);
+            values[i].put(FavoriteMoviesContract.MovieListEntry.COLUMN_POSITION, i);
+            values[i].put(FavoriteMoviesContract.MovieListEntry.COLUMN_TOTAL_PAGES, moviePage.totalPages);
+            values[i].put(FavoriteMoviesContract.MovieListEntry.COLUMN_FETCHED_AT, fetchedAt);
+        }
+
+        mContentResolver.bulkInsert(FavoriteMoviesContract.MovieListEntry.buildListUri(listName), values);
+    }
+
+    /**
+     * @return the stored favorite and cached movies matching the query, best matches first
+     */
+    public ArrayList<MovieData> searchMovies(String query)
+    {
+        ArrayList<MovieData> movies = new ArrayList<>();
+        Cursor cursor = mContentResolver.query(FavoriteMoviesContract.MovieSearchEntry.buildSearchUri(query),
+                null, null, null, null);
+        if (cursor == null)
+        {
+            return movies;
+        }
+
+        try
+        {
+            int posterFileIndex = cursor.getColumnIndex(FavoriteMoviesContract.MovieSearchEntry.COLUMN_POSTER_FILE);
+            MovieColumns movieColumns = new MovieColumns(cursor);
+            while (cursor.moveToNext())
+            {
+                MovieData movie = readMovie(cursor, movieColumns);
+                // a favorite's poster can be displayed from its file without theMovieDB
+                movie.poster_file = cursor.getString(posterFileIndex);
+                movies.add(movie);
+            }
+        }
+        finally
+        {
+            cursor.close();
+        }
+
+        Log.v(TAG, "Found " + movies.size() + " stored movies matching " + query);
+        return movies;
+    }
+
+    private static ContentValues toContentValues(MovieData movie)
+    {
+        ContentValues values = new ContentValues();
+        values.put(FavoriteMoviesContract.CachedMovieEntry.COLUMN_MOVIE_DB_ID, movie.id);
+        values.put(FavoriteMoviesContract.CachedMovieEntry.COLUMN_POSTER, movie.poster_path);
+        values.put(FavoriteMoviesContract.CachedMovieEntry.COLUMN_ADULT, movie.adult);
+        values.put(FavoriteMoviesContract.CachedMovieEntry.COLUMN_OVERVIEW, movie.overview);
+        values.put(FavoriteMoviesContract.CachedMovieEntry.COLUMN_RELEASE_DATE, movie.release_date);
+        values.put(FavoriteMoviesContract.CachedMovieEntry.COLUMN_ORIGINAL_TITLE, movie.original_title);
+        values.put(FavoriteMoviesContract.CachedMovieEntry.COLUMN_ORIGINAL_LANGUAGE, movie.original_language);
+        values.put(FavoriteMoviesContract.CachedMovieEntry.COLUMN_TITLE, movie.title);
+        values.put(FavoriteMoviesContract.CachedMovieEntry.COLUMN_BACKDROP, movie.backdrop_path);
+        values.put(FavoriteMoviesContract.CachedMovieEntry.COLUMN_POPULARITY, movie.popularity);
+        values.put(FavoriteMoviesContract.CachedMovieEntry.COLUMN_VOTE_COUNT, movie.vote_count);
+        values.put(FavoriteMoviesContract.CachedMovieEntry.COLUMN_VIDEO, movie.video);
+        values.put(FavoriteMoviesContract.CachedMovieEntry.COLUMN_VOTE_AVERAGE, movie.vote_average);
+        return values;
+    }
+
+    /**
+     * The indices of the cached movie columns in a cursor, looked up once so the columns of every
+     * row can be read without searching the cursor's column names again
+     */
+    public static class MovieColumns
+    {
+        final int id;
+        final int poster;
+        final int adult;
+        final int overview;
+        final int releaseDate;
+        final int originalTitle;
+        final int originalLanguage;
+        final int title;
+        final int backdrop;
+        final int popularity;
+        final int voteCount;
+        final int video;
+        final int voteAverage;
+
+        public MovieColumns(Cursor cursor)
+        {
+            id = cursor.getColumnIndex(FavoriteMoviesContract.CachedMovieEntry.COLUMN_MOVIE_DB_ID);
+            poster = cursor.getColumnIndex(FavoriteMoviesContract.CachedMovieEntry.COLUMN_POSTER);
+            adult = cursor.getColumnIndex(FavoriteMoviesContract.CachedMovieEntry.COLUMN_ADULT);
+            overview = cursor.getColumnIndex(FavoriteMoviesContract.CachedMovieEntry.COLUMN_OVERVIEW);
+            releaseDate = cursor.getColumnIndex(FavoriteMoviesContract.CachedMovieEntry.COLUMN_RELEASE_DATE);
+            originalTitle = cursor.getColumnIndex(FavoriteMoviesContract.CachedMovieEntry.COLUMN_ORIGINAL_TITLE);
+            originalLanguage = cursor.getColumnIndex(FavoriteMoviesContract.CachedMovieEntry.COLUMN_ORIGINAL_LANGUAGE);
+            title = cursor.getColumnIndex(FavoriteMoviesContract.CachedMovieEntry.COLUMN_TITLE);
+            backdrop = cursor.getColumnIndex(FavoriteMoviesContract.CachedMovieEntry.COLUMN_BACKDROP);
+            popularity = cursor.getColumnIndex(FavoriteMoviesContract.CachedMovieEntry.COLUMN_POPULARITY);
+            voteCount = cursor.getColumnIndex(FavoriteMoviesContract.CachedMovieEntry.COLUMN_VOTE_COUNT);
+            video = cursor.getColumnIndex(FavoriteMoviesContract.CachedMovieEntry.COLUMN_VIDEO);
+            voteAverage = cursor.getColumnIndex(FavoriteMoviesContract.CachedMovieEntry.COLUMN_VOTE_AVERAGE);
+        }
+    }
+
+    /**
+     * @param columns the indices of the columns in the cursor
+     * @return the movie in the cursor's current row of cached movies
+     */
+    public static MovieData readMovie(Cursor cursor, MovieColumns columns)
+    {
+        MovieData movie = new MovieData();
+        movie.id = cursor.getInt(columns.id);
+        movie.poster_path = cursor.getString(columns.poster);
+        movie.adult = cursor.getInt(columns.adult) != 0;
+        movie.overview = cursor.getString(columns.overview);
+        movie.release_date = cursor.getInt(columns.releaseDate);
+        movie.original_title = cursor.getString(columns.originalTitle);
+        movie.original_language = cursor.getString(columns.originalLanguage);
+        movie.title = cursor.getString(columns.title);
+        movie.backdrop_path = cursor.getString(columns.backdrop);
+        movie.popularity = cursor.getDouble(columns.popularity);
+        movie.vote_count = cursor.getInt(columns.voteCount);
+        movie.video = cursor.getInt(columns.video) != 0;
+        movie.vote_average = cursor.getDouble(columns.voteAverage);
+        return movie;
+    }
+}
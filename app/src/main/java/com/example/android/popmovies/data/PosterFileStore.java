@@ -0,0 +1,120 @@
+package com.example.android.popmovies.data;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Stores the posters of the user's favorite movies as files in the app's storage rather than
+ * as BLOBs in the favorite movies database. Each poster is named after the hash of its contents
+ * so the database only needs to store the name of the file.
+ */
+
+public final class PosterFileStore
+{
+    // Store the class name for logging
+    private static final String TAG = PosterFileStore.class.getSimpleName();
+
+    // The directory inside the app's files directory that stores the favorite posters
+    private static final String POSTER_DIRECTORY = "favorite_posters";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private PosterFileStore() {}
+
+    /**
+     * Store the poster and return the name it was stored under. If a poster with the same
+     * contents has already been stored the existing file is reused. A reused file is deleted if
+     * the last favorite referring to it is removed before the new favorite is stored, in which
+     * case the content provider stores the new favorite without the poster file.
+     *
+     * @param context   used to get the app's files directory
+     * @param posterData the encoded poster
+     * @return the name of the file the poster is stored in
+     * @throws IOException if the poster could not be written
+     */
+    public static String save(Context context, byte[] posterData) throws IOException
+    {
+        String posterFileName = hash(posterData);
+        File posterFile = getFile(context, posterFileName);
+
+        if (posterFile.exists())
+        {
+            Log.v(TAG, "The poster " + posterFileName + " is already stored");
+            return posterFileName;
+        }
+
+        File posterDirectory = posterFile.getParentFile();
+        if (!posterDirectory.exists() && !posterDirectory.mkdirs())
+        {
+            throw new IOException("Unable to create " + posterDirectory);
+        }
+
+        // write to a temporary file first so a partially written poster is never used
+        File temporaryFile = new File(posterDirectory, posterFileName + ".tmp");
+        FileOutputStream out = new FileOutputStream(temporaryFile);
+        try
+        {
+            out.write(posterData);
+        }
+        finally
+        {
+            out.close();
+        }
+
+        if (!temporaryFile.renameTo(posterFile))
+        {
+            temporaryFile.delete();
+            throw new IOException("Unable to store the poster " + posterFileName);
+        }
+
+        Log.v(TAG, "Stored the poster " + posterFileName);
+        return posterFileName;
+    }
+
+    /**
+     * @return the file a poster is stored in
+     */
+    public static File getFile(Context context, String posterFileName)
+    {
+        return new File(new File(context.getFilesDir(), POSTER_DIRECTORY), posterFileName);
+    }
+
+    /**
+     * Remove a stored poster
+     */
+    public static void delete(Context context, String posterFileName)
+    {
+        if (posterFileName != null && getFile(context, posterFileName).delete())
+        {
+            Log.v(TAG, "Removed the poster " + posterFileName);
+        }
+    }
+
+    /**
+     * @return the SHA-1 hash of the poster as a hex string
+     */
+    private static String hash(byte[] posterData) throws IOException
+    {
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(posterData);
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++)
+            {
+                hex[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+                hex[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xf];
+            }
+            return new String(hex);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IOException(e);
+        }
+    }
+}
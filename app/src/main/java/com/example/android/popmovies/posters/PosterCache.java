@@ -0,0 +1,795 @@
+package com.example.android.popmovies.posters;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import com.example.android.popmovies.MovieData;
+import com.example.android.popmovies.data.PosterFileStore;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import utilities.HttpClient;
+import utilities.NetworkUtils;
+
+/**
+ * Caches movie posters so a poster that has already been shown is never decoded twice.
+ *
+ * Decoded bitmaps are kept in a size bounded in memory LRU keyed by the movie id and poster size,
+ * decoded at the width they are displayed at rather than the width they were downloaded at,
+ * and the encoded poster bytes are kept in a size bounded directory in the app's cache so they
+ * can be decoded again without going back to the network. The posters of favorite movies are
+ * decoded from the PosterFileStore. All disk access, downloading and
+ * decoding happens on a background thread and the bitmap is handed back on the main thread.
+ *
+ * Posters can also be prefetched before their view is bound so they are already decoded when the
+ * grid scrolls to them. Prefetching pauses for a while when the system is low on memory.
+ */
+public class PosterCache
+{
+    // Store the class name for logging
+    private static final String TAG = PosterCache.class.getSimpleName();
+
+    // The name of the directory inside the app's cache directory that stores the encoded posters
+    private static final String DISK_CACHE_DIRECTORY = "posters";
+
+    // The maximum number of bytes of encoded posters to keep on disk
+    private static final long MAX_DISK_CACHE_BYTES = 20 * 1024 * 1024;
+
+    // Posters are written to a temporary file and renamed so a partially written poster is never read
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    // A temporary poster that hasn't been written to for this long was left by a write that never finished
+    private static final long ORPHANED_TEMPORARY_MILLIS = 10 * 60 * 1000;
+
+    // The fraction of the app's available memory used for decoded posters
+    private static final int MEMORY_CACHE_DIVISOR = 8;
+
+    // The number of threads used to read, download and decode posters
+    private static final int DECODE_THREADS = 2;
+
+    // How long prefetching is paused after the system reports it is low on memory
+    private static final long PREFETCH_PAUSE_MILLIS = 30 * 1000;
+
+    private static PosterCache sInstance;
+
+    /**
+     * @return the poster cache shared by the whole app
+     */
+    public static synchronized PosterCache getInstance(Context context)
+    {
+        if (sInstance == null)
+        {
+            sInstance = new PosterCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    // Used to find the stored posters of favorite movies
+    private final Context mContext;
+
+    // Decoded posters sized by the number of kilobytes each bitmap uses
+    private final LruCache<String, Bitmap> mMemoryCache;
+
+    // Stores the encoded poster bytes
+    private final File mDiskCacheDirectory;
+
+    // The number of bytes currently stored in the disk cache, -1 until it has been measured
+    private long mDiskCacheSize = -1;
+
+    private final ExecutorService mDecodeExecutor;
+    private final Handler mMainHandler;
+
+    // The image views waiting on a poster that is currently being loaded, only used on the main thread
+    private final HashMap<String, ArrayList<ImageView>> mPendingViews = new HashMap<>();
+
+    // The prefetches that are still loading so they can be cancelled, only used on the main thread
+    private final HashMap<String, Future<?>> mPrefetchRequests = new HashMap<>();
+
+    // The prefetched posters that haven't been displayed yet, only used on the main thread
+    private final HashSet<String> mPrefetchedKeys = new HashSet<>();
+
+    // Counts how useful the prefetches are so the prefetch distance can be tuned, only used on the main thread
+    private int mPrefetchCount;
+    private int mPrefetchHitCount;
+    private int mPrefetchLateCount;
+    private int mPrefetchCancelledCount;
+
+    // The uptime until which prefetching is paused because the system was low on memory
+    private long mPrefetchPausedUntil;
+
+    private PosterCache(Context context)
+    {
+        mContext = context;
+
+        int maxKilobytes = (int) (Runtime.getRuntime().maxMemory() / 1024);
+        mMemoryCache = new LruCache<String, Bitmap>(maxKilobytes / MEMORY_CACHE_DIVISOR)
+        {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap)
+            {
+                return bitmap.getByteCount() / 1024;
+            }
+        };
+
+        mDiskCacheDirectory = new File(context.getCacheDir(), DISK_CACHE_DIRECTORY);
+        mDecodeExecutor = Executors.newFixedThreadPool(DECODE_THREADS);
+        mMainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * @return the key a movie's decoded poster is stored under for the given poster size
+     */
+    public static String getKey(MovieData movieData, PosterSize posterSize)
+    {
+        return getDiskKey(movieData, posterSize.bucket) + "_" + posterSize.width;
+    }
+
+    /**
+     * @return the key a movie's encoded poster is stored under for the size it was downloaded at
+     */
+    private static String getDiskKey(MovieData movieData, String bucket)
+    {
+        return movieData.id + "_" + bucket;
+    }
+
+    /**
+     * Display the movie's poster in the image view. If the poster is already decoded it is shown
+     * immediately, otherwise it is loaded from the favorite's stored poster, the disk cache or
+     * theMovieDB on a background thread.
+     *
+     * Must be called on the main thread.
+     *
+     * @param movieData  the movie whose poster should be displayed
+     * @param posterSize the size the poster is displayed at
+     * @param imageView  the view to display the poster in
+     */
+    public void loadPoster(MovieData movieData, PosterSize posterSize, ImageView imageView)
+    {
+        String key = getKey(movieData, posterSize);
+
+        // remember which poster this view should show in case it is recycled before the load finishes
+        imageView.setTag(key);
+
+        boolean prefetched = mPrefetchedKeys.remove(key);
+
+        Bitmap cachedPoster = mMemoryCache.get(key);
+        if (cachedPoster != null)
+        {
+            if (prefetched)
+            {
+                mPrefetchHitCount++;
+            }
+            imageView.setImageBitmap(cachedPoster);
+            return;
+        }
+
+        imageView.setImageDrawable(null);
+
+        // if this poster is already being loaded wait for that load rather than decoding it again
+        ArrayList<ImageView> pendingViews = mPendingViews.get(key);
+        if (pendingViews != null)
+        {
+            if (prefetched)
+            {
+                mPrefetchLateCount++;
+            }
+            pendingViews.add(imageView);
+            return;
+        }
+
+        pendingViews = new ArrayList<>();
+        pendingViews.add(imageView);
+        mPendingViews.put(key, pendingViews);
+
+        startLoad(key, movieData, posterSize);
+    }
+
+    /**
+     * Load the movie's poster ahead of it being displayed so it is already decoded when its view
+     * is bound. Nothing is loaded if the poster is already decoded or loading, or if prefetching
+     * is paused because the system is low on memory.
+     *
+     * Must be called on the main thread.
+     *
+     * @return true if the poster is being prefetched
+     */
+    public boolean prefetchPoster(MovieData movieData, PosterSize posterSize)
+    {
+        if (SystemClock.uptimeMillis() < mPrefetchPausedUntil)
+        {
+            return false;
+        }
+
+        String key = getKey(movieData, posterSize);
+        if (mMemoryCache.get(key) != null || mPendingViews.containsKey(key))
+        {
+            return false;
+        }
+
+        // no view is waiting yet, a view bound while the poster loads joins the pending views
+        mPendingViews.put(key, new ArrayList<ImageView>());
+        mPrefetchRequests.put(key, startLoad(key, movieData, posterSize));
+        mPrefetchedKeys.add(key);
+        mPrefetchCount++;
+        return true;
+    }
+
+    /**
+     * Stop prefetching the movie's poster if it hasn't started loading and no view is waiting on it
+     *
+     * Must be called on the main thread.
+     */
+    public void cancelPrefetch(MovieData movieData, PosterSize posterSize)
+    {
+        cancelPrefetch(getKey(movieData, posterSize));
+    }
+
+    private void cancelPrefetch(String key)
+    {
+        Future<?> request = mPrefetchRequests.get(key);
+        ArrayList<ImageView> pendingViews = mPendingViews.get(key);
+        if (request == null || (pendingViews != null && !pendingViews.isEmpty()))
+        {
+            return;
+        }
+
+        if (request.cancel(false))
+        {
+            mPrefetchRequests.remove(key);
+            mPendingViews.remove(key);
+            mPrefetchedKeys.remove(key);
+            mPrefetchCancelledCount++;
+        }
+    }
+
+    /**
+     * Release decoded posters when the system is low on memory and pause prefetching for a while
+     * so the posters aren't decoded again straight away.
+     *
+     * Must be called on the main thread.
+     *
+     * @param level the level passed to ComponentCallbacks2.onTrimMemory
+     */
+    public void trimMemory(int level)
+    {
+        // the app moving to the background doesn't mean memory is low
+        if (level == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN)
+        {
+            return;
+        }
+
+        Log.v(TAG, "Pausing poster prefetching, trim memory level " + level);
+        mPrefetchPausedUntil = SystemClock.uptimeMillis() + PREFETCH_PAUSE_MILLIS;
+        for (String key : new ArrayList<>(mPrefetchRequests.keySet()))
+        {
+            cancelPrefetch(key);
+        }
+
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL)
+        {
+            mMemoryCache.evictAll();
+        }
+        else
+        {
+            mMemoryCache.trimToSize(mMemoryCache.maxSize() / 2);
+        }
+    }
+
+    /**
+     * @return the fraction of the prefetched posters that weren't cancelled and were already
+     * decoded when their view was bound
+     */
+    public float getPrefetchHitRate()
+    {
+        int completed = mPrefetchCount - mPrefetchCancelledCount;
+        return completed == 0 ? 0 : (float) mPrefetchHitCount / completed;
+    }
+
+    /**
+     * Log how many prefetched posters were ready, still loading or cancelled when their view was bound
+     */
+    public void logPrefetchStats()
+    {
+        Log.v(TAG, "Prefetched " + mPrefetchCount + " posters: " + mPrefetchHitCount + " ready when bound, "
+                + mPrefetchLateCount + " still loading, " + mPrefetchCancelledCount + " cancelled, hit rate "
+                + Math.round(getPrefetchHitRate() * 100) + "%");
+    }
+
+    /**
+     * Load the poster on a background thread and hand it to the waiting views on the main thread
+     */
+    private Future<?> startLoad(final String key, final MovieData movieData, final PosterSize posterSize)
+    {
+        return mDecodeExecutor.submit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                final Bitmap poster = loadPosterInBackground(key, movieData, posterSize);
+                mMainHandler.post(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        deliverPoster(key, poster);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Hands the loaded poster to every view that is still waiting for it
+     */
+    private void deliverPoster(String key, Bitmap poster)
+    {
+        mPrefetchRequests.remove(key);
+        ArrayList<ImageView> pendingViews = mPendingViews.remove(key);
+        if (poster == null || pendingViews == null)
+        {
+            return;
+        }
+
+        for (ImageView imageView : pendingViews)
+        {
+            // only set the poster if the view hasn't been reused for a different movie
+            if (key.equals(imageView.getTag()))
+            {
+                imageView.setImageBitmap(poster);
+            }
+        }
+    }
+
+    /**
+     * Check the poster stored with a favorite movie, then the disk cache, then theMovieDB.
+     *
+     * @return the decoded poster or null if it could not be loaded
+     */
+    private Bitmap loadPosterInBackground(String key, MovieData movieData, PosterSize posterSize)
+    {
+        Bitmap poster = null;
+
+        File storedPoster = getStoredPosterFile(movieData);
+        if (storedPoster != null)
+        {
+            poster = decodeFile(storedPoster, posterSize);
+        }
+
+        String diskKey = getDiskKey(movieData, posterSize.bucket);
+        if (poster == null)
+        {
+            poster = readFromDisk(diskKey, posterSize);
+        }
+
+        if (poster == null)
+        {
+            try
+            {
+                byte[] posterBytes = downloadToDisk(diskKey, movieData, posterSize.bucket);
+                poster = decodeBytes(posterBytes, posterSize);
+            }
+            catch (IOException e)
+            {
+                Log.v(TAG, "Error encountered while loading the movie poster for: " + movieData.original_title);
+                e.printStackTrace();
+                return null;
+            }
+        }
+
+        if (poster != null)
+        {
+            mMemoryCache.put(key, poster);
+        }
+        return poster;
+    }
+
+    /**
+     * Get the encoded poster so it can be stored with a favorite movie. The poster is read from
+     * the favorite's stored poster or the disk cache if possible, otherwise it is downloaded.
+     *
+     * Must not be called on the main thread.
+     *
+     * @param movieData the movie whose poster should be returned
+     * @return the encoded poster
+     * @throws IOException if the poster could not be read or downloaded
+     */
+    public byte[] getEncodedPoster(MovieData movieData) throws IOException
+    {
+        File storedPoster = getStoredPosterFile(movieData);
+        if (storedPoster != null)
+        {
+            return readBytes(storedPoster);
+        }
+
+        String key = getDiskKey(movieData, MovieData.DEFAULT_POSTER_SIZE);
+        FileInputStream cachedPoster = openFromDisk(key);
+        if (cachedPoster != null)
+        {
+            return HttpClient.readFully(cachedPoster);
+        }
+
+        return downloadToDisk(key, movieData, MovieData.DEFAULT_POSTER_SIZE);
+    }
+
+    /**
+     * @return the favorite's stored poster or null if the movie doesn't have one
+     */
+    private File getStoredPosterFile(MovieData movieData)
+    {
+        if (movieData.poster_file == null)
+        {
+            return null;
+        }
+
+        File storedPoster = PosterFileStore.getFile(mContext, movieData.poster_file);
+        return storedPoster.exists() ? storedPoster : null;
+    }
+
+    /**
+     * Download the movie's poster from theMovieDB and store it in the disk cache
+     *
+     * @return the encoded poster
+     */
+    private byte[] downloadToDisk(String key, MovieData movieData, String bucket) throws IOException
+    {
+        String posterUrl = movieData.getPosterURL(bucket);
+        Log.v(TAG, "Downloading the movie poster from the Url: " + posterUrl);
+        byte[] posterBytes = download(new URL(posterUrl));
+        writeToDisk(key, posterBytes);
+        return posterBytes;
+    }
+
+    /**
+     * @return the entire contents of the file
+     */
+    private static byte[] readBytes(File file) throws IOException
+    {
+        return HttpClient.readFully(new FileInputStream(file));
+    }
+
+    /**
+     * @return the bytes of the poster at the url
+     */
+    private static byte[] download(URL url) throws IOException
+    {
+        return HttpClient.readFully(NetworkUtils.openStreamFromHttpUrl(url));
+    }
+
+    /**
+     * Decode a poster from the disk cache and mark it as recently used
+     *
+     * @return the decoded poster or null if it isn't stored on disk
+     */
+    private Bitmap readFromDisk(String key, PosterSize posterSize)
+    {
+        FileInputStream in = openFromDisk(key);
+        if (in == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            return decodeStream(in, posterSize);
+        }
+        finally
+        {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Open a poster in the disk cache and mark it as recently used. Only the file is touched while
+     * holding the lock, the poster is read after it is released. An open poster can still be read
+     * if the disk cache is trimmed before it has been read.
+     *
+     * @return a stream of the encoded poster or null if it isn't stored on disk
+     */
+    private synchronized FileInputStream openFromDisk(String key)
+    {
+        File posterFile = new File(mDiskCacheDirectory, key);
+        if (!posterFile.exists())
+        {
+            return null;
+        }
+
+        // the last modified time is used to find the least recently used posters
+        posterFile.setLastModified(System.currentTimeMillis());
+        try
+        {
+            return new FileInputStream(posterFile);
+        }
+        catch (FileNotFoundException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Decode the poster in the file at the width it is displayed at
+     *
+     * @return the decoded poster or null if the file couldn't be read
+     */
+    private Bitmap decodeFile(File file, PosterSize posterSize)
+    {
+        FileInputStream in;
+        try
+        {
+            in = new FileInputStream(file);
+        }
+        catch (FileNotFoundException e)
+        {
+            return null;
+        }
+
+        try
+        {
+            return decodeStream(in, posterSize);
+        }
+        finally
+        {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Decode the poster in the open file at the width it is displayed at. The file is read twice,
+     * once for its size and once for its pixels, decoding a descriptor leaves its position alone.
+     */
+    private Bitmap decodeStream(FileInputStream in, PosterSize posterSize)
+    {
+        try
+        {
+            BitmapFactory.Options bounds = new BitmapFactory.Options();
+            bounds.inJustDecodeBounds = true;
+            BitmapFactory.decodeFileDescriptor(in.getFD(), null, bounds);
+
+            BitmapFactory.Options options = getDecodeOptions(bounds.outWidth, posterSize);
+            return setDisplayDensity(BitmapFactory.decodeFileDescriptor(in.getFD(), null, options), options);
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Decode the encoded poster at the width it is displayed at
+     */
+    private Bitmap decodeBytes(byte[] posterBytes, PosterSize posterSize)
+    {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(posterBytes, 0, posterBytes.length, bounds);
+
+        BitmapFactory.Options options = getDecodeOptions(bounds.outWidth, posterSize);
+        return setDisplayDensity(BitmapFactory.decodeByteArray(posterBytes, 0, posterBytes.length, options), options);
+    }
+
+    /**
+     * Skip whole rows and columns of pixels with inSampleSize while the poster is at least twice
+     * the target width, then scale the rest of the way while decoding so the bitmap is never
+     * larger than it is displayed.
+     *
+     * @param posterWidth the width of the encoded poster
+     */
+    private static BitmapFactory.Options getDecodeOptions(int posterWidth, PosterSize posterSize)
+    {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        if (posterSize.width == 0 || posterWidth <= posterSize.width)
+        {
+            return options;
+        }
+
+        int sampleSize = 1;
+        while (posterWidth / (sampleSize * 2) >= posterSize.width)
+        {
+            sampleSize *= 2;
+        }
+        options.inSampleSize = sampleSize;
+
+        int sampledWidth = posterWidth / sampleSize;
+        if (sampledWidth > posterSize.width)
+        {
+            options.inScaled = true;
+            options.inDensity = sampledWidth;
+            options.inTargetDensity = posterSize.width;
+        }
+        return options;
+    }
+
+    /**
+     * A poster scaled while decoding takes the target density, put back the screen's density so
+     * the poster is drawn at its pixel size like a poster that wasn't scaled
+     */
+    private Bitmap setDisplayDensity(Bitmap poster, BitmapFactory.Options options)
+    {
+        if (poster != null && options.inTargetDensity != 0)
+        {
+            poster.setDensity(mContext.getResources().getDisplayMetrics().densityDpi);
+        }
+        return poster;
+    }
+
+    /**
+     * Store the encoded poster on disk, removing the least recently used posters if the disk
+     * cache has grown too large. The poster is written to a temporary file without holding the
+     * lock and then renamed, so a poster that is being read is never partially written.
+     */
+    private void writeToDisk(String key, byte[] posterBytes)
+    {
+        if (!mDiskCacheDirectory.exists() && !mDiskCacheDirectory.mkdirs())
+        {
+            Log.v(TAG, "Unable to create the poster cache directory");
+            return;
+        }
+
+        File temporaryFile = null;
+        FileOutputStream out = null;
+        try
+        {
+            // each write has its own temporary file in case the same poster is written twice at once
+            temporaryFile = File.createTempFile(key, TEMPORARY_SUFFIX, mDiskCacheDirectory);
+            out = new FileOutputStream(temporaryFile);
+            out.write(posterBytes);
+        }
+        catch (IOException e)
+        {
+            Log.v(TAG, "Error encountered while caching the movie poster " + key);
+            e.printStackTrace();
+            closeQuietly(out);
+            if (temporaryFile != null)
+            {
+                temporaryFile.delete();
+            }
+            return;
+        }
+        closeQuietly(out);
+
+        synchronized (this)
+        {
+            measureDiskCache();
+
+            File posterFile = new File(mDiskCacheDirectory, key);
+            long replacedLength = posterFile.length();
+            if (!temporaryFile.renameTo(posterFile))
+            {
+                Log.v(TAG, "Unable to store the movie poster " + key);
+                temporaryFile.delete();
+                return;
+            }
+
+            mDiskCacheSize += posterBytes.length - replacedLength;
+            trimDiskCache();
+        }
+    }
+
+    /**
+     * Add up the size of the stored posters the first time the disk cache is written to, and
+     * remove the temporary posters left by writes that never finished
+     */
+    private void measureDiskCache()
+    {
+        if (mDiskCacheSize >= 0)
+        {
+            return;
+        }
+
+        File[] temporaryFiles = mDiskCacheDirectory.listFiles(new FilenameFilter()
+        {
+            @Override
+            public boolean accept(File directory, String name)
+            {
+                return name.endsWith(TEMPORARY_SUFFIX);
+            }
+        });
+        if (temporaryFiles != null)
+        {
+            // writes that are still in progress have touched their file recently
+            long orphanedBefore = System.currentTimeMillis() - ORPHANED_TEMPORARY_MILLIS;
+            for (File temporaryFile : temporaryFiles)
+            {
+                if (temporaryFile.lastModified() < orphanedBefore)
+                {
+                    temporaryFile.delete();
+                }
+            }
+        }
+
+        mDiskCacheSize = 0;
+        for (File posterFile : listDiskCache())
+        {
+            mDiskCacheSize += posterFile.length();
+        }
+    }
+
+    /**
+     * Remove the least recently used posters until the disk cache is within its size limit
+     */
+    private void trimDiskCache()
+    {
+        if (mDiskCacheSize <= MAX_DISK_CACHE_BYTES)
+        {
+            return;
+        }
+
+        File[] posterFiles = listDiskCache();
+        Arrays.sort(posterFiles, new Comparator<File>()
+        {
+            @Override
+            public int compare(File first, File second)
+            {
+                long difference = first.lastModified() - second.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+
+        for (File posterFile : posterFiles)
+        {
+            if (mDiskCacheSize <= MAX_DISK_CACHE_BYTES)
+            {
+                break;
+            }
+            long length = posterFile.length();
+            if (posterFile.delete())
+            {
+                mDiskCacheSize -= length;
+            }
+        }
+    }
+
+    /**
+     * @return the stored posters, without the temporary posters that are still being written
+     */
+    private File[] listDiskCache()
+    {
+        File[] posterFiles = mDiskCacheDirectory.listFiles(new FilenameFilter()
+        {
+            @Override
+            public boolean accept(File directory, String name)
+            {
+                return !name.endsWith(TEMPORARY_SUFFIX);
+            }
+        });
+        return posterFiles == null ? new File[0] : posterFiles;
+    }
+
+    private static void closeQuietly(Closeable closeable)
+    {
+        if (closeable != null)
+        {
+            try
+            {
+                closeable.close();
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
+            }
+        }
+    }
+}
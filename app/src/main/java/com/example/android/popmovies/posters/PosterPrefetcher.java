@@ -0,0 +1,186 @@
+package com.example.android.popmovies.posters;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.SparseArray;
+import android.view.View;
+
+import com.example.android.popmovies.MovieData;
+import com.example.android.popmovies.MoviePosterAdapter;
+
+/**
+ * Prefetches the posters of the rows the grid is about to scroll to so they are already decoded
+ * when their cells are bound. The faster the grid scrolls the more rows ahead are prefetched, and
+ * prefetches that fall out of range because the grid changed direction or moved past them are
+ * cancelled if they haven't started loading.
+ *
+ * Must only be used from the main thread.
+ */
+
+public class PosterPrefetcher extends RecyclerView.OnScrollListener
+{
+    // The grid tries to have the posters it will scroll through in this much time already loading
+    private static final long LOOKAHEAD_MILLIS = 500;
+
+    // Scroll events further apart than this are treated as the start of a new scroll
+    private static final long MAX_SCROLL_EVENT_GAP_MILLIS = 100;
+
+    private final PosterCache mPosterCache;
+    private final GridLayoutManager mLayoutManager;
+    private final MoviePosterAdapter mAdapter;
+
+    // The size the grid displays the posters at
+    private final PosterSize mPosterSize;
+
+    // The rows prefetched when the grid is still or scrolled slowly
+    private final int mMinRows;
+
+    // The most rows prefetched however fast the grid is flung
+    private final int mMaxRows;
+
+    // The movies whose posters have been prefetched by their position in the grid
+    private final SparseArray<MovieData> mPrefetched = new SparseArray<>();
+
+    // The scroll speed in pixels per millisecond, positive when scrolling down
+    private float mVelocity;
+
+    // 1 if the grid was last scrolled down and -1 if it was last scrolled up
+    private int mDirection = 1;
+
+    // The uptime of the last scroll event, 0 if the grid isn't scrolling
+    private long mLastScrollTime;
+
+    public PosterPrefetcher(Context context, GridLayoutManager layoutManager, MoviePosterAdapter adapter,
+                            PosterSize posterSize, int minRows, int maxRows)
+    {
+        mPosterCache = PosterCache.getInstance(context);
+        mLayoutManager = layoutManager;
+        mAdapter = adapter;
+        mPosterSize = posterSize;
+        mMinRows = minRows;
+        mMaxRows = maxRows;
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy)
+    {
+        long now = SystemClock.uptimeMillis();
+        long elapsed = now - mLastScrollTime;
+        if (elapsed > 0 && elapsed < MAX_SCROLL_EVENT_GAP_MILLIS)
+        {
+            // average with the previous speed so one uneven frame doesn't change the distance much
+            mVelocity = (mVelocity + dy / (float) elapsed) / 2;
+        }
+        else
+        {
+            mVelocity = 0;
+        }
+        mLastScrollTime = now;
+
+        if (dy != 0)
+        {
+            mDirection = dy > 0 ? 1 : -1;
+        }
+        prefetch();
+    }
+
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState)
+    {
+        if (newState == RecyclerView.SCROLL_STATE_IDLE)
+        {
+            mVelocity = 0;
+            mLastScrollTime = 0;
+            prefetch();
+            mPosterCache.logPrefetchStats();
+        }
+    }
+
+    /**
+     * Prefetch the posters ahead of the visible cells in the direction the grid last scrolled,
+     * for example once new movies have been displayed
+     */
+    public void prefetch()
+    {
+        int firstVisible = mLayoutManager.findFirstVisibleItemPosition();
+        int lastVisible = mLayoutManager.findLastVisibleItemPosition();
+        if (firstVisible == RecyclerView.NO_POSITION)
+        {
+            cancelAll();
+            return;
+        }
+
+        int spanCount = mLayoutManager.getSpanCount();
+        int lastPosition = mAdapter.getItemCount() - 1;
+        int rows = getPrefetchRows();
+
+        int start;
+        int end;
+        if (mDirection > 0)
+        {
+            start = lastVisible + 1;
+            end = Math.min(lastVisible + rows * spanCount, lastPosition);
+        }
+        else
+        {
+            start = Math.max(firstVisible - rows * spanCount, 0);
+            end = firstVisible - 1;
+        }
+
+        // the visible posters are loaded by their cells so only the ones out of range are cancelled
+        for (int i = mPrefetched.size() - 1; i >= 0; i--)
+        {
+            int position = mPrefetched.keyAt(i);
+            if (position < start || position > end)
+            {
+                mPosterCache.cancelPrefetch(mPrefetched.valueAt(i), mPosterSize);
+                mPrefetched.removeAt(i);
+            }
+        }
+
+        // request the nearest posters first since they will be needed first
+        for (int i = 0; i <= end - start; i++)
+        {
+            int position = mDirection > 0 ? start + i : end - i;
+            if (mPrefetched.indexOfKey(position) < 0)
+            {
+                MovieData movie = mAdapter.getPosterMovie(position);
+                if (mPosterCache.prefetchPoster(movie, mPosterSize))
+                {
+                    mPrefetched.put(position, movie);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cancel the prefetches that haven't started, for example when the grid displays different movies
+     */
+    public void cancelAll()
+    {
+        for (int i = 0; i < mPrefetched.size(); i++)
+        {
+            mPosterCache.cancelPrefetch(mPrefetched.valueAt(i), mPosterSize);
+        }
+        mPrefetched.clear();
+    }
+
+    /**
+     * @return the number of rows the grid will scroll through in LOOKAHEAD_MILLIS at the current
+     * speed, at least mMinRows and at most mMaxRows
+     */
+    private int getPrefetchRows()
+    {
+        View firstChild = mLayoutManager.getChildAt(0);
+        int rowHeight = firstChild != null ? firstChild.getHeight() : 0;
+        if (rowHeight == 0)
+        {
+            return mMinRows;
+        }
+
+        int rows = mMinRows + Math.round(Math.abs(mVelocity) * LOOKAHEAD_MILLIS / rowHeight);
+        return Math.min(rows, mMaxRows);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.android.popmovies.posters;
+
+import android.content.Context;
+import android.content.res.Resources;
+
+import com.example.android.popmovies.MovieData;
+import com.example.android.popmovies.R;
+
+/**
+ * The size a poster is downloaded from theMovieDB at and the width it is decoded to. theMovieDB
+ * only resizes posters to a few fixed widths so the smallest one that covers the displayed width
+ * is downloaded, then it is scaled down to the displayed width while it is decoded.
+ */
+
+public final class PosterSize
+{
+    // The poster widths theMovieDB resizes posters to, smallest first
+    private static final int[] BUCKET_WIDTHS = {92, 154, 185, 342, 500, 780};
+
+    /**
+     * The poster at the size stored with favorite movies, decoded without scaling
+     */
+    public static final PosterSize DEFAULT = new PosterSize(MovieData.DEFAULT_POSTER_SIZE, 0);
+
+    // The size theMovieDB resizes the poster to, such as w185
+    public final String bucket;
+
+    // The width in pixels the poster is decoded to, 0 to decode it at the size it was downloaded
+    public final int width;
+
+    private PosterSize(String bucket, int width)
+    {
+        this.bucket = bucket;
+        this.width = width;
+    }
+
+    /**
+     * @param width the width in pixels the poster is displayed at
+     * @return the smallest size that covers the width, or the largest size if none of them do
+     */
+    public static PosterSize forWidth(int width)
+    {
+        int bucketWidth = BUCKET_WIDTHS[BUCKET_WIDTHS.length - 1];
+        for (int candidate : BUCKET_WIDTHS)
+        {
+            if (candidate >= width)
+            {
+                bucketWidth = candidate;
+                break;
+            }
+        }
+        return new PosterSize("w" + bucketWidth, Math.min(width, bucketWidth));
+    }
+
+    /**
+     * @return the size of the posters in a cell of the grid for the current screen and orientation
+     */
+    public static PosterSize forGridCell(Context context)
+    {
+        Resources resources = context.getResources();
+
+        // the grid fills the width of the screen and every column is the same width
+        int cellWidth = resources.getDisplayMetrics().widthPixels / resources.getInteger(R.integer.gridColumns);
+        int cellHeight = resources.getDimensionPixelSize(R.dimen.imageHeight);
+
+        // a poster is two thirds as wide as it is tall and is scaled to fit inside the cell
+        return forWidth(Math.min(cellWidth, cellHeight * 2 / 3));
+    }
+}
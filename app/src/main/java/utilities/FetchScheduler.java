@@ -0,0 +1,193 @@
+package utilities;
+
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Runs the requests made to theMovieDB on a small pool of threads dedicated to fetching.
+ * <p>
+ * Queued requests are run by priority lane first and in the order they were submitted within a
+ * lane, so a slow detail or background request never delays the next page of the grid behind it.
+ * Queued requests can be cancelled, which removes them from the queue. The depth of each lane and
+ * how long requests waited before they started are recorded so head-of-line blocking can be seen.
+ */
+public final class FetchScheduler {
+
+    // Store the class name for logging
+    private static final String TAG = FetchScheduler.class.getSimpleName();
+
+    /**
+     * The priority lanes, earlier lanes are always run before later ones
+     */
+    public enum Priority {
+        // the page of the grid the user is looking at or about to scroll to
+        GRID_PAGE,
+        // the trailers and reviews of the movie the user opened
+        DETAIL,
+        // refreshing data the user already has a copy of
+        BACKGROUND_REFRESH
+    }
+
+    // The number of requests that may run at the same time
+    private static final int POOL_SIZE = 3;
+
+    // How long an idle thread is kept before it is stopped
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    // Requests that wait longer than this are logged as blocked
+    private static final long SLOW_WAIT_MILLIS = 1000;
+
+    private static FetchScheduler sInstance;
+
+    /**
+     * @return the scheduler shared by the whole app
+     */
+    public static synchronized FetchScheduler getInstance() {
+        if (sInstance == null) {
+            sInstance = new FetchScheduler();
+        }
+        return sInstance;
+    }
+
+    private final ThreadPoolExecutor mExecutor;
+
+    // Used to keep requests in the same lane in the order they were submitted
+    private final AtomicLong mSequence = new AtomicLong();
+
+    // The metrics of each lane indexed by the priority's ordinal
+    private final AtomicIntegerArray mQueueDepths = new AtomicIntegerArray(Priority.values().length);
+    private final AtomicLongArray mTotalWaitMillis = new AtomicLongArray(Priority.values().length);
+    private final AtomicLongArray mMaxWaitMillis = new AtomicLongArray(Priority.values().length);
+    private final AtomicIntegerArray mStartedCounts = new AtomicIntegerArray(Priority.values().length);
+    private final AtomicInteger mCancelledCount = new AtomicInteger();
+
+    private FetchScheduler() {
+        mExecutor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>());
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queue the request in the priority's lane.
+     *
+     * @param priority the lane to queue the request in
+     * @param request  the request to run
+     * @return used to get the result of the request or to cancel it
+     */
+    public <T> Future<T> submit(Priority priority, Callable<T> request) {
+        PrioritizedTask<T> task = new PrioritizedTask<>(request, priority, mSequence.getAndIncrement());
+        mQueueDepths.incrementAndGet(priority.ordinal());
+        mExecutor.execute(task);
+        return task;
+    }
+
+    /**
+     * @return the number of requests waiting to start in the priority's lane
+     */
+    public int getQueueDepth(Priority priority) {
+        return mQueueDepths.get(priority.ordinal());
+    }
+
+    /**
+     * @return the average time in milliseconds requests in the priority's lane waited before starting
+     */
+    public long getAverageWaitMillis(Priority priority) {
+        int started = mStartedCounts.get(priority.ordinal());
+        return started == 0 ? 0 : mTotalWaitMillis.get(priority.ordinal()) / started;
+    }
+
+    /**
+     * @return the longest time in milliseconds a request in the priority's lane waited before starting
+     */
+    public long getMaxWaitMillis(Priority priority) {
+        return mMaxWaitMillis.get(priority.ordinal());
+    }
+
+    /**
+     * @return the number of requests that were cancelled before they started
+     */
+    public int getCancelledCount() {
+        return mCancelledCount.get();
+    }
+
+    /**
+     * Record how long a request waited now that it is starting
+     */
+    private void onTaskStarted(PrioritizedTask<?> task) {
+        int lane = task.mPriority.ordinal();
+        long waitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - task.mQueuedAt);
+
+        mQueueDepths.decrementAndGet(lane);
+        mStartedCounts.incrementAndGet(lane);
+        mTotalWaitMillis.addAndGet(lane, waitMillis);
+
+        long maxWait;
+        while (waitMillis > (maxWait = mMaxWaitMillis.get(lane))
+                && !mMaxWaitMillis.compareAndSet(lane, maxWait, waitMillis)) {
+            // another thread updated the maximum, check again
+        }
+
+        if (waitMillis > SLOW_WAIT_MILLIS) {
+            Log.v(TAG, "A " + task.mPriority + " request waited " + waitMillis + "ms with "
+                    + mQueueDepths.get(lane) + " requests still queued in its lane");
+        }
+    }
+
+    /**
+     * A request that is ordered by its lane and then by when it was submitted
+     */
+    private final class PrioritizedTask<T> extends FutureTask<T> implements Comparable<PrioritizedTask<?>> {
+
+        final Priority mPriority;
+        final long mSequence;
+        final long mQueuedAt = System.nanoTime();
+
+        // set once the task has either started or been removed from the queue
+        private final AtomicBoolean mDequeued = new AtomicBoolean();
+
+        PrioritizedTask(Callable<T> request, Priority priority, long sequence) {
+            super(request);
+            mPriority = priority;
+            mSequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            if (mDequeued.compareAndSet(false, true)) {
+                onTaskStarted(this);
+            }
+            super.run();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+
+            // remove a request that hasn't started so it doesn't hold its place in the queue
+            if (cancelled && mExecutor.remove(this) && mDequeued.compareAndSet(false, true)) {
+                mQueueDepths.decrementAndGet(mPriority.ordinal());
+                mCancelledCount.incrementAndGet();
+            }
+            return cancelled;
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask<?> other) {
+            if (mPriority != other.mPriority) {
+                return mPriority.ordinal() - other.mPriority.ordinal();
+            }
+            return mSequence < other.mSequence ? -1 : (mSequence > other.mSequence ? 1 : 0);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package utilities;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The HTTP layer used by NetworkUtils to talk to theMovieDB.
+ * <p>
+ * Connections are kept alive and pooled by the platform's HttpURLConnection, so a request to a
+ * host that was recently contacted skips the TCP and TLS handshakes. A connection only returns to
+ * the pool once its body has been read to the end and closed, so bodies are drained on close and
+ * connections are never disconnected. Compressed bodies are requested with gzip and decompressed
+ * while they are read, and bodies are copied through a buffer that is reused by each thread.
+ */
+public final class HttpClient {
+
+    // The number of idle keep-alive connections kept per host
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+
+    // The size of the buffer each thread uses to copy response bodies
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    // The most bytes left in a body that are read when it is closed early to keep the connection
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    private static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+    private static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+    private static final String GZIP_ENCODING = "gzip";
+
+    private static final ThreadLocal<byte[]> sBuffers = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    static {
+        // these are the defaults on most platforms but make sure connections are pooled
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", String.valueOf(MAX_IDLE_CONNECTIONS));
+    }
+
+    private HttpClient() {
+    }
+
+    /**
+     * Open a keep-alive connection that asks for a gzip compressed body.
+     *
+     * @param url               the url to connect to
+     * @param connectionTimeout the connection time out in milliseconds
+     * @param readTimeout       the read time out in milliseconds
+     * @return the connection, the request is sent once the response is requested
+     * @throws IOException if the connection could not be opened
+     */
+    public static HttpURLConnection openConnection(URL url, int connectionTimeout, int readTimeout) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(connectionTimeout);
+        connection.setReadTimeout(readTimeout);
+
+        // setting this ourselves means the body has to be decompressed by getBody
+        connection.setRequestProperty(ACCEPT_ENCODING_HEADER, GZIP_ENCODING);
+        return connection;
+    }
+
+    /**
+     * Get the decompressed body of the response. Closing the returned stream reads any remaining
+     * bytes so the connection can be reused.
+     *
+     * @throws IOException if the server returned an error or the body could not be read
+     */
+    public static InputStream getBody(HttpURLConnection connection) throws IOException {
+        int responseCode = connection.getResponseCode();
+        if (responseCode >= HttpURLConnection.HTTP_BAD_REQUEST) {
+            release(connection);
+            throw new IOException("Server returned HTTP " + responseCode + " for " + connection.getURL());
+        }
+
+        InputStream body = new ReusableConnectionStream(connection.getInputStream());
+        if (GZIP_ENCODING.equalsIgnoreCase(connection.getHeaderField(CONTENT_ENCODING_HEADER))) {
+            body = new GZIPInputStream(body, BUFFER_SIZE);
+        }
+        return body;
+    }
+
+    /**
+     * Read and close whatever is left of the response so the connection returns to the pool.
+     * Use this instead of disconnect for responses whose body isn't needed.
+     */
+    public static void release(HttpURLConnection connection) {
+        InputStream body;
+        try {
+            body = connection.getInputStream();
+        } catch (IOException e) {
+            body = connection.getErrorStream();
+        }
+
+        if (body != null) {
+            try {
+                new ReusableConnectionStream(body).close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Copy the stream using this thread's reusable buffer. Neither stream is closed.
+     *
+     * @return the number of bytes copied
+     */
+    public static long copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = sBuffers.get();
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * Read the entire stream using this thread's reusable buffer and close it
+     */
+    public static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            copy(in, out);
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Drains the rest of the body when it is closed so the connection can be reused
+     */
+    private static final class ReusableConnectionStream extends FilterInputStream {
+
+        ReusableConnectionStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                byte[] buffer = sBuffers.get();
+                int drained = 0;
+                int read;
+                while (drained < MAX_DRAIN_BYTES && (read = in.read(buffer)) != -1) {
+                    drained += read;
+                }
+            } catch (IOException e) {
+                // the connection can't be reused but the stream still needs to be closed
+            } finally {
+                in.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package utilities;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps track of the requests that are currently being made so concurrent callers asking for the
+ * same thing share a single network call and its parsed result.
+ * <p>
+ * The first caller for a key makes the request on its own thread and every caller that arrives
+ * before it finishes waits for that result. A waiting caller whose thread is interrupted, for
+ * example because its AsyncTask was cancelled, stops waiting without affecting the other callers.
+ */
+public final class InFlightRequests {
+
+    // The requests currently being made by their key
+    private static final HashMap<String, FutureTask<?>> sInFlight = new HashMap<>();
+
+    // The number of callers that shared a request instead of making their own
+    private static final AtomicInteger sSharedCount = new AtomicInteger();
+
+    private InFlightRequests() {
+    }
+
+    /**
+     * Make the request unless an identical request is already being made, in which case wait for
+     * its result instead.
+     *
+     * @param key     identifies the request, callers with the same key receive the same result
+     * @param request makes the request and parses the response
+     * @return the parsed response
+     * @throws IOException if the request failed or the caller was interrupted while waiting
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T execute(String key, Callable<T> request) throws IOException {
+        FutureTask<T> call;
+        boolean isFirstCaller = false;
+
+        synchronized (sInFlight) {
+            call = (FutureTask<T>) sInFlight.get(key);
+            if (call == null) {
+                call = new FutureTask<>(request);
+                sInFlight.put(key, call);
+                isFirstCaller = true;
+            } else {
+                sSharedCount.incrementAndGet();
+            }
+        }
+
+        if (isFirstCaller) {
+            try {
+                call.run();
+            } finally {
+                // later callers should make a new request rather than reuse this result
+                synchronized (sInFlight) {
+                    if (sInFlight.get(key) == call) {
+                        sInFlight.remove(key);
+                    }
+                }
+            }
+        }
+
+        try {
+            return call.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Stopped waiting for " + key);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * @return the number of requests currently being made
+     */
+    public static int getInFlightCount() {
+        synchronized (sInFlight) {
+            return sInFlight.size();
+        }
+    }
+
+    /**
+     * @return the number of callers that shared a request instead of making their own
+     */
+    public static int getSharedCount() {
+        return sSharedCount.get();
+    }
+}
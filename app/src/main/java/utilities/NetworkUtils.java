@@ -6,15 +6,14 @@ package utilities;
 import android.net.Uri;
 import android.util.Log;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLConnection;
-import java.util.Scanner;
+import java.util.concurrent.Callable;
 
 /**
  * These utilities will be used to communicate with theMovieDB api.
@@ -29,16 +28,66 @@ public final class NetworkUtils {
     // The base path for theMovieDB api
     private static final String MOVIES_DB_BASE_URL = "https://api.themoviedb.org/3/movie/";
 
+    // The path used to search theMovieDB for movies by their title
+    private static final String MOVIES_DB_SEARCH_URL = "https://api.themoviedb.org/3/search/movie";
+
     private static final String reviewsPath = "reviews";
     private static final String trailersPath = "videos";
 
+    // The key used to add the trailers and reviews to the movie's details in a single request
+    private final static String APPEND_TO_RESPONSE_PARAM = "append_to_response";
+
     // The key used to build the url to get the movie data
     private final static String API_TOKEN_PARAM = "api_key";
 
+    // The key used to request a specific page of results
+    private final static String PAGE_PARAM = "page";
+
+    // The key used to pass the text to search for
+    private final static String QUERY_PARAM = "query";
+
     // The connection and read time outs
     private static int connectionTimeout = 5000;
     private static int readTimeout = 10000;
 
+    // Stores api responses on disk, null until installResponseCache is called
+    private static TheMovieDBResponseCache sResponseCache;
+
+    // Opens the connections the response cache requests responses with
+    private static final TheMovieDBResponseCache.Connector CONNECTOR = new TheMovieDBResponseCache.Connector() {
+        @Override
+        public HttpURLConnection open(URL url) throws IOException {
+            return openConnection(url);
+        }
+    };
+
+    /**
+     * Turns the body of a response into the result the caller needs
+     */
+    public interface ResponseParser<T> {
+        T parse(InputStream response) throws IOException;
+    }
+
+    /**
+     * Store api responses in the directory so they can be reused or revalidated rather than
+     * downloaded again.
+     *
+     * @param cacheDirectory where the responses are stored
+     * @param maxBytes       the maximum number of bytes of responses to store
+     */
+    public static synchronized void installResponseCache(File cacheDirectory, long maxBytes) {
+        if (sResponseCache == null) {
+            sResponseCache = new TheMovieDBResponseCache(cacheDirectory, maxBytes);
+        }
+    }
+
+    /**
+     * @return the cache storing api responses or null if one hasn't been installed
+     */
+    public static TheMovieDBResponseCache getResponseCache() {
+        return sResponseCache;
+    }
+
     /**
      * Builds the URL used to talk to the movieDB server based on which filter was selected.
      *
@@ -46,9 +95,21 @@ public final class NetworkUtils {
      * @return The URL to use to query the movieDB server.
      */
     public static URL buildUrl(String filterOption, String apiToken) {
-        // build the uri with the base path, the supplied filter options and the api token
+        return buildUrl(filterOption, apiToken, 1);
+    }
+
+    /**
+     * Builds the URL used to get a single page of movies from the movieDB server based on which filter was selected.
+     *
+     * @param filterOption The filter that will be queried for.
+     * @param page         The page of results to get, the first page is 1.
+     * @return The URL to use to query the movieDB server.
+     */
+    public static URL buildUrl(String filterOption, String apiToken, int page) {
+        // build the uri with the base path, the supplied filter options, the page and the api token
         Uri builtUri = Uri.parse(MOVIES_DB_BASE_URL).buildUpon()
                 .appendPath(filterOption)
+                .appendQueryParameter(PAGE_PARAM, String.valueOf(page))
                 .appendQueryParameter(API_TOKEN_PARAM, apiToken)
                 .build();
 
@@ -65,6 +126,34 @@ public final class NetworkUtils {
         return url;
     }
 
+    /**
+     * Builds the URL used to get a single page of the movies whose title matches the search query
+     *
+     * @param query The text the user searched for.
+     * @param page  The page of results to get, the first page is 1.
+     * @return The URL to use to query the movieDB server.
+     */
+    public static URL buildSearchUrl(String query, String apiToken, int page) {
+        // build the uri with the search path, the query, the page and the api token
+        Uri builtUri = Uri.parse(MOVIES_DB_SEARCH_URL).buildUpon()
+                .appendQueryParameter(QUERY_PARAM, query)
+                .appendQueryParameter(PAGE_PARAM, String.valueOf(page))
+                .appendQueryParameter(API_TOKEN_PARAM, apiToken)
+                .build();
+
+        URL url = null;
+        try {
+            url = new URL(builtUri.toString());
+        } catch (MalformedURLException e) {
+            e.printStackTrace();
+        }
+
+        Log.v(TAG, "Built URI " + url);
+
+        // Return the path to use to search for movies
+        return url;
+    }
+
     /**
      * Builds the URL to retrieve a movie's trailers
      *
@@ -93,16 +182,28 @@ public final class NetworkUtils {
     }
 
     /**
-     * Builds the URL used to get the reviews of the movie
+     * Builds the URL used to get the first page of reviews of the movie
      *
      * @param movieID  The movie's id.
      * @param apiToken
      * @return The URL to use to query the movieDB server.
      */
     public static URL buildReviewUrl(String movieID, String apiToken) {
-        // build the uri with the base path, the supplied movie's id and the api token
+        return buildReviewUrl(movieID, apiToken, 1);
+    }
+
+    /**
+     * Builds the URL used to get a single page of reviews of the movie
+     *
+     * @param movieID  The movie's id.
+     * @param page     The page of reviews to get, the first page is 1.
+     * @return The URL to use to query the movieDB server.
+     */
+    public static URL buildReviewUrl(String movieID, String apiToken, int page) {
+        // build the uri with the base path, the supplied movie's id, the page and the api token
         Uri builtUri = Uri.parse(MOVIES_DB_BASE_URL).buildUpon()
                 .appendPath(movieID).appendPath(reviewsPath)
+                .appendQueryParameter(PAGE_PARAM, String.valueOf(page))
                 .appendQueryParameter(API_TOKEN_PARAM, apiToken)
                 .build();
 
@@ -119,39 +220,86 @@ public final class NetworkUtils {
         return url;
     }
 
-
     /**
-     * This method returns the entire result from the HTTP response.
+     * Builds the URL used to get the movie's details along with its trailers and the first page
+     * of its reviews in a single request
      *
-     * @param url The URL to fetch the HTTP response from.
-     * @return The contents of the HTTP response.
-     * @throws IOException Related to network and stream reading
+     * @param movieID  The movie's id.
+     * @param apiToken
+     * @return The URL to use to query the movieDB server.
      */
-    public static String getResponseFromHttpUrl(URL url) throws IOException {
-
-        URLConnection connection = url.openConnection();
+    public static URL buildMovieDetailsUrl(String movieID, String apiToken) {
+        // build the uri with the base path, the movie's id, the extra responses to append and the api token
+        Uri builtUri = Uri.parse(MOVIES_DB_BASE_URL).buildUpon()
+                .appendPath(movieID)
+                .appendQueryParameter(APPEND_TO_RESPONSE_PARAM, trailersPath + "," + reviewsPath)
+                .appendQueryParameter(API_TOKEN_PARAM, apiToken)
+                .build();
 
-        // set the connection timeout and the read timeout
-        connection.setConnectTimeout(connectionTimeout);
-        connection.setReadTimeout(readTimeout);
-        BufferedReader in = null;
+        URL url = null;
         try {
-            // get a stream to read data from
-            in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
+            url = new URL(builtUri.toString());
+        } catch (MalformedURLException e) {
+            e.printStackTrace();
+        }
 
-            Scanner scanner = new Scanner(in);
-            scanner.useDelimiter("\\A");
+        Log.v(TAG, "Built URI " + url);
 
-            boolean hasInput = scanner.hasNext();
-            if (hasInput) {
-                return scanner.next();
-            } else {
-                return null;
-            }
-        } finally {
-            if (in != null) {
-                in.close();
+        // Return the path to use to retrieve the movie's details, trailers and reviews
+        return url;
+    }
+
+
+    /**
+     * Request the url and parse the response. If the same url is already being requested and
+     * parsed the same way, the result of that request is shared rather than making another one.
+     *
+     * @param url    The URL to fetch the HTTP response from.
+     * @param parser Parses the response, the stream it is given is closed once it has been parsed.
+     * @return The parsed response.
+     * @throws IOException Related to network and stream reading or if the caller was interrupted
+     */
+    public static <T> T fetch(final URL url, final ResponseParser<T> parser) throws IOException {
+        // include the parser so callers that parse the same response differently don't share a result
+        String key = TheMovieDBResponseCache.getKey(url) + " " + parser.getClass().getName();
+
+        return InFlightRequests.execute(key, new Callable<T>() {
+            @Override
+            public T call() throws IOException {
+                InputStream response = openStreamFromHttpUrl(url);
+                try {
+                    return parser.parse(response);
+                } finally {
+                    response.close();
+                }
             }
+        });
+    }
+
+    /**
+     * Opens a stream to the HTTP response so the body can be parsed as it arrives rather than
+     * being read into a single String first. The caller is responsible for closing the stream.
+     *
+     * @param url The URL to fetch the HTTP response from.
+     * @return A buffered stream over the body of the HTTP response.
+     * @throws IOException Related to network and stream reading
+     */
+    public static InputStream openStreamFromHttpUrl(URL url) throws IOException {
+
+        TheMovieDBResponseCache responseCache = sResponseCache;
+        if (responseCache == null || !TheMovieDBResponseCache.isCacheable(url)) {
+            return new BufferedInputStream(HttpClient.getBody(openConnection(url)));
         }
+
+        // a fresh stored response is used, an older one is revalidated with the server and a stored
+        // response is also used if the server can't be reached or fails
+        return new BufferedInputStream(responseCache.fetch(url, CONNECTOR, System.currentTimeMillis()));
+    }
+
+    /**
+     * @return a pooled keep-alive connection to the url with the connection and read time outs set
+     */
+    private static HttpURLConnection openConnection(URL url) throws IOException {
+        return HttpClient.openConnection(url, connectionTimeout, readTimeout);
     }
-}
\ No newline at end of file
+}
@@ -3,15 +3,17 @@
  */
 package utilities;
 
+import android.util.JsonReader;
+import android.util.JsonToken;
 import android.util.Log;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-import org.json.JSONStringer;
-
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.util.ArrayList;
 import com.example.android.popmovies.MovieData;
+import com.example.android.popmovies.MovieDetails;
+import com.example.android.popmovies.ResultPage;
 import com.example.android.popmovies.ReviewData;
 import com.example.android.popmovies.TrailerData;
 
@@ -26,6 +28,14 @@ public final class TheMovieDBJsonUtils
     // The tag for all the movie information
     final static String OUTER_TAG = "results";
 
+    // The tags describing which page of results was returned
+    final static String PAGE_TAG = "page";
+    final static String TOTAL_PAGES_TAG = "total_pages";
+
+    // The tags of the trailers and reviews appended to a movie's details
+    final static String VIDEOS_TAG = "videos";
+    final static String REVIEWS_TAG = "reviews";
+
     // The tags for information about an individual movie
     final static String MD_POSTER_PATH = "poster_path";
     final static String MD_ADULT = "adult";
@@ -41,117 +51,523 @@ public final class TheMovieDBJsonUtils
     final static String MD_VIDEO = "video";
     final static String MD_VOTE_AVERAGE = "vote_average";
 
-    public static ArrayList<ReviewData> getMovieReviewsFromJson(String MovieReviewJsonStr) throws JSONException
-    {
-        JSONObject reviewJson = new JSONObject(MovieReviewJsonStr);
+    // The tags for information about an individual trailer
+    final static String TD_KEY = "key";
+    final static String TD_SITE = "site";
+    final static String TD_TYPE = "type";
+    final static String TD_NAME = "name";
 
-        JSONArray reviewArray = reviewJson.getJSONArray(OUTER_TAG);
+    // The tags for information about an individual review
+    final static String RD_ID = "id";
+    final static String RD_AUTHOR = "author";
+    final static String RD_CONTENT = "content";
 
-        ArrayList<ReviewData> parsedReviewData = new ArrayList<ReviewData>();
+    // The encoding theMovieDB uses for its responses
+    private static final String RESPONSE_ENCODING = "UTF-8";
 
-        Log.v(TAG, "Creating ReviewData objects for the " + reviewArray.length() + " reviews that were passed by the api");
+    /**
+     * Receives each item as soon as it has been parsed from a streamed response, so a response
+     * is never held in memory as a whole
+     */
+    private interface JsonItemHandler<T>
+    {
+        void onItemParsed(T item);
+    }
 
-        for (int i = 0; i < reviewArray.length(); i++)
-        {
-            JSONObject singleReviewJSON = reviewArray.getJSONObject(i);
-            ReviewData singleReview = new ReviewData();
+    // Parsers used to share the result of identical requests made with NetworkUtils.fetch
+    public static final NetworkUtils.ResponseParser<ResultPage<MovieData>> MOVIE_PAGE_PARSER =
+            new NetworkUtils.ResponseParser<ResultPage<MovieData>>()
+            {
+                @Override
+                public ResultPage<MovieData> parse(InputStream response) throws IOException
+                {
+                    return getMoviePageFromStream(response);
+                }
+            };
 
-            singleReview.reviewerName = singleReviewJSON.getString("author");
-            singleReview.reviewContent = singleReviewJSON.getString("content");
+    public static final NetworkUtils.ResponseParser<MovieDetails> MOVIE_DETAILS_PARSER =
+            new NetworkUtils.ResponseParser<MovieDetails>()
+            {
+                @Override
+                public MovieDetails parse(InputStream response) throws IOException
+                {
+                    return getMovieDetailsFromStream(response);
+                }
+            };
 
-            Log.v(TAG, "Adding ReviewData for the review by " + singleReview.reviewerName);
-            parsedReviewData.add(singleReview);
-        }
+    public static final NetworkUtils.ResponseParser<ArrayList<TrailerData>> TRAILERS_PARSER =
+            new NetworkUtils.ResponseParser<ArrayList<TrailerData>>()
+            {
+                @Override
+                public ArrayList<TrailerData> parse(InputStream response) throws IOException
+                {
+                    return getMovieTrailersFromStream(response);
+                }
+            };
 
-        return parsedReviewData;
-    }
+    public static final NetworkUtils.ResponseParser<ResultPage<ReviewData>> REVIEW_PAGE_PARSER =
+            new NetworkUtils.ResponseParser<ResultPage<ReviewData>>()
+            {
+                @Override
+                public ResultPage<ReviewData> parse(InputStream response) throws IOException
+                {
+                    return getReviewPageFromStream(response);
+                }
+            };
 
-    public static ArrayList<TrailerData> getMovieTrailersFromJson(String MovieTrailerJsonStr) throws JSONException
+    /**
+     * Reads a single JSON object from the stream into a model object
+     */
+    private interface JsonObjectReader<T>
     {
-        JSONObject trailerJson = new JSONObject(MovieTrailerJsonStr);
-
-        JSONArray trailerArray = trailerJson.getJSONArray(OUTER_TAG);
+        T readObject(JsonReader reader) throws IOException;
+    }
 
-        ArrayList<TrailerData> parsedTrailerData = new ArrayList<TrailerData>();
+    /**
+     * Parses a single page of movie data from a web response stream along with the paging
+     * information. The stream is closed once it has been read.
+     *
+     * @param movieJsonStream JSON response stream from the server
+     *
+     * @return The page of movies and the total number of pages available
+     *
+     * @throws IOException If the stream can not be read or the JSON is malformed
+     */
+    public static ResultPage<MovieData> getMoviePageFromStream(InputStream movieJsonStream)
+            throws IOException
+    {
+        final ResultPage<MovieData> moviePage = new ResultPage<>();
+        readResultsFromStream(movieJsonStream, MOVIE_READER, moviePage, new JsonItemHandler<MovieData>()
+        {
+            @Override
+            public void onItemParsed(MovieData item)
+            {
+                moviePage.results.add(item);
+            }
+        });
+        return moviePage;
+    }
 
-        Log.v(TAG, "Creating TrailerData objects for the " + trailerArray.length() + " Trailers that were passed by the api");
+    /**
+     * Parses the supported trailers directly from a web response stream. The stream is closed
+     * once it has been read.
+     *
+     * @param trailerJsonStream JSON response stream from the server
+     *
+     * @return Array list of the supported trailers
+     *
+     * @throws IOException If the stream can not be read or the JSON is malformed
+     */
+    public static ArrayList<TrailerData> getMovieTrailersFromStream(InputStream trailerJsonStream)
+            throws IOException
+    {
+        ArrayList<TrailerData> parsedTrailerData = new ArrayList<>();
+        readResultsFromStream(trailerJsonStream, TRAILER_READER, null, supportedTrailerCollector(parsedTrailerData));
+        return parsedTrailerData;
+    }
 
-        for (int i = 0; i < trailerArray.length(); i++)
+    /**
+     * @return a handler that only adds the trailers we are able to display to the list
+     */
+    private static JsonItemHandler<TrailerData> supportedTrailerCollector(final ArrayList<TrailerData> trailers)
+    {
+        return new JsonItemHandler<TrailerData>()
         {
-            JSONObject singleTrailerJSON = trailerArray.getJSONObject(i);
-            TrailerData singleTrailer = new TrailerData();
+            @Override
+            public void onItemParsed(TrailerData item)
+            {
+                if (item.isTrailerSupported())
+                {
+                    Log.v(TAG, "Added the supported movie trailer " + item.trailerName);
+                    trailers.add(item);
+                }
+            }
+        };
+    }
 
-            singleTrailer.setTrailerKey(singleTrailerJSON.getString("key"));
-            singleTrailer.trailerSite = singleTrailerJSON.getString("site");
-            singleTrailer.trailerType = singleTrailerJSON.getString("type");
-            singleTrailer.trailerName = singleTrailerJSON.getString("name");
+    /**
+     * Parses a single page of reviews directly from a web response stream along with the paging
+     * information. The stream is closed once it has been read.
+     *
+     * @param reviewJsonStream JSON response stream from the server
+     *
+     * @return The page of the movie's reviews and the total number of pages available
+     *
+     * @throws IOException If the stream can not be read or the JSON is malformed
+     */
+    public static ResultPage<ReviewData> getReviewPageFromStream(InputStream reviewJsonStream)
+            throws IOException
+    {
+        final ResultPage<ReviewData> reviewPage = new ResultPage<>();
+        readResultsFromStream(reviewJsonStream, REVIEW_READER, reviewPage, new JsonItemHandler<ReviewData>()
+        {
+            @Override
+            public void onItemParsed(ReviewData item)
+            {
+                reviewPage.results.add(item);
+            }
+        });
+        return reviewPage;
+    }
 
-            Log.v(TAG, "Created the TrailerData objects for the trailer " + singleTrailer.trailerName);
+    /**
+     * Parses a movie's details, its trailers and the first page of its reviews from the response to
+     * a request made with append_to_response in a single pass. The stream is closed once it has
+     * been read.
+     *
+     * @param detailsJsonStream JSON response stream from the server
+     *
+     * @return The movie's details, supported trailers and first page of reviews
+     *
+     * @throws IOException If the stream can not be read or the JSON is malformed
+     */
+    public static MovieDetails getMovieDetailsFromStream(InputStream detailsJsonStream)
+            throws IOException
+    {
+        final MovieDetails movieDetails = new MovieDetails();
 
-            if(singleTrailer.isTrailerSupported())
+        JsonReader reader = new JsonReader(new InputStreamReader(detailsJsonStream, RESPONSE_ENCODING));
+        try
+        {
+            reader.beginObject();
+            while (reader.hasNext())
             {
-                Log.v(TAG, "Added the supported movie trailer " + singleTrailer.trailerName);
-                parsedTrailerData.add(singleTrailer);
+                String name = reader.nextName();
+                if (VIDEOS_TAG.equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT)
+                {
+                    readResultsObject(reader, TRAILER_READER, null, supportedTrailerCollector(movieDetails.trailers));
+                }
+                else if (REVIEWS_TAG.equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT)
+                {
+                    readResultsObject(reader, REVIEW_READER, movieDetails.reviews, new JsonItemHandler<ReviewData>()
+                    {
+                        @Override
+                        public void onItemParsed(ReviewData item)
+                        {
+                            movieDetails.reviews.results.add(item);
+                        }
+                    });
+                }
+                else if (!readMovieField(reader, name, movieDetails.movie))
+                {
+                    // genres, production companies and any other details we don't display
+                    reader.skipValue();
+                }
             }
+            reader.endObject();
+        }
+        finally
+        {
+            reader.close();
         }
 
-        return parsedTrailerData;
+        Log.v(TAG, "Created the MovieDetails for the movie " + movieDetails.movie.original_title + " with "
+                + movieDetails.trailers.size() + " trailers and " + movieDetails.reviews.results.size() + " reviews");
+        return movieDetails;
     }
 
     /**
-     * This method parses JSON from a web response and returns an array of MovieData with information
-     * about each movies.
-     *
-     * @param MovieJsonStr JSON response from server
+     * Walks the top level object of a response and hands every object in the results array to
+     * the handler one at a time. Any other top level values are skipped without being parsed.
      *
-     * @return Array list of MovieData describing each movie
+     * @param pageInfo if not null the page number and total number of pages are stored in it
+     */
+    private static <T> void readResultsFromStream(InputStream jsonStream, JsonObjectReader<T> objectReader,
+                                                  ResultPage<?> pageInfo, JsonItemHandler<T> handler) throws IOException
+    {
+        JsonReader reader = new JsonReader(new InputStreamReader(jsonStream, RESPONSE_ENCODING));
+        try
+        {
+            readResultsObject(reader, objectReader, pageInfo, handler);
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads the object the reader is positioned on and hands every object in its results array to
+     * the handler one at a time. Any other values are skipped without being parsed.
      *
-     * @throws JSONException If JSON data cannot be properly parsed
+     * @param pageInfo if not null the page number and total number of pages are stored in it
      */
-    public static ArrayList<MovieData> getMovieDataFromJson(String MovieJsonStr)
-            throws JSONException
+    private static <T> void readResultsObject(JsonReader reader, JsonObjectReader<T> objectReader,
+                                              ResultPage<?> pageInfo, JsonItemHandler<T> handler) throws IOException
     {
-        // The overall response as a JSONObject
-        JSONObject movieJson = new JSONObject(MovieJsonStr);
+        reader.beginObject();
+        while (reader.hasNext())
+        {
+            String name = reader.nextName();
+            if (OUTER_TAG.equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY)
+            {
+                readResultsArray(reader, objectReader, handler);
+            }
+            else if (pageInfo != null && PAGE_TAG.equals(name) && reader.peek() == JsonToken.NUMBER)
+            {
+                pageInfo.page = reader.nextInt();
+            }
+            else if (pageInfo != null && TOTAL_PAGES_TAG.equals(name) && reader.peek() == JsonToken.NUMBER)
+            {
+                pageInfo.totalPages = reader.nextInt();
+            }
+            else
+            {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Reads every object in the array the reader is positioned on
+     */
+    private static <T> void readResultsArray(JsonReader reader, JsonObjectReader<T> objectReader,
+                                             JsonItemHandler<T> handler) throws IOException
+    {
+        reader.beginArray();
+        while (reader.hasNext())
+        {
+            handler.onItemParsed(objectReader.readObject(reader));
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Reads the current value as a String the same way JSONObject.getString would, so numbers and
+     * booleans are returned as their text. A null value is returned as an empty String.
+     */
+    private static String nextString(JsonReader reader) throws IOException
+    {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL)
+        {
+            reader.nextNull();
+            return "";
+        }
+        else if (token == JsonToken.BOOLEAN)
+        {
+            return String.valueOf(reader.nextBoolean());
+        }
+        return reader.nextString();
+    }
+
+    /**
+     * Reads the current value as an int, a null value is returned as 0
+     */
+    private static int nextInt(JsonReader reader) throws IOException
+    {
+        if (reader.peek() == JsonToken.NULL)
+        {
+            reader.nextNull();
+            return 0;
+        }
+        return reader.nextInt();
+    }
 
-        // The array of data about each movie
-        JSONArray movieArray = movieJson.getJSONArray(OUTER_TAG);
+    /**
+     * Reads the current value as a double, a null value is returned as 0
+     */
+    private static double nextDouble(JsonReader reader) throws IOException
+    {
+        if (reader.peek() == JsonToken.NULL)
+        {
+            reader.nextNull();
+            return 0;
+        }
+        return reader.nextDouble();
+    }
 
-        // stores the information about each movie
-        ArrayList<MovieData> parsedMovieData = new ArrayList<>();
-        Log.v(TAG, "Creating MovieData objects for the " + movieArray.length() + " movies that were passed by the api");
-        // loop through all the JSON objects containing movie data
-        for (int i = 0; i < movieArray.length(); i++)
+    /**
+     * Reads the current value as a boolean, a null value is returned as false
+     */
+    private static boolean nextBoolean(JsonReader reader) throws IOException
+    {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL)
+        {
+            reader.nextNull();
+            return false;
+        }
+        else if (token == JsonToken.STRING)
         {
+            return Boolean.parseBoolean(reader.nextString());
+        }
+        return reader.nextBoolean();
+    }
 
-            /* Get the JSON object representing the movie data */
-            JSONObject singleMovieJSON = movieArray.getJSONObject(i);
+    /**
+     * @return the number of days since 1970-01-01 of a release date in the format yyyy-mm-dd, or
+     * MovieData.NO_RELEASE_DATE if the date is missing or in a different format
+     */
+    static int releaseDay(String releaseDate)
+    {
+        if (releaseDate == null || releaseDate.length() != 10
+                || releaseDate.charAt(4) != '-' || releaseDate.charAt(7) != '-')
+        {
+            return MovieData.NO_RELEASE_DATE;
+        }
+
+        try
+        {
+            int year = Integer.parseInt(releaseDate.substring(0, 4));
+            int month = Integer.parseInt(releaseDate.substring(5, 7));
+            int day = Integer.parseInt(releaseDate.substring(8, 10));
+            return MovieData.toEpochDay(year, month, day);
+        }
+        catch (NumberFormatException e)
+        {
+            return MovieData.NO_RELEASE_DATE;
+        }
+    }
+
+    /**
+     * Stores the value of a single movie field that is displayed or stored
+     *
+     * @return false if the field isn't one we store, in which case its value hasn't been read
+     */
+    private static boolean readMovieField(JsonReader reader, String name, MovieData singleMovie) throws IOException
+    {
+        switch (name)
+        {
+            case MD_POSTER_PATH:
+                singleMovie.poster_path = nextString(reader);
+                return true;
+            case MD_ADULT:
+                singleMovie.adult = nextBoolean(reader);
+                return true;
+            case MD_OVERVIEW:
+                singleMovie.overview = nextString(reader);
+                return true;
+            case MD_RELEASE_DATE:
+                singleMovie.release_date = releaseDay(nextString(reader));
+                return true;
+            case MD_ID:
+                singleMovie.id = nextInt(reader);
+                return true;
+            case MD_ORIGINAL_TITLE:
+                singleMovie.original_title = nextString(reader);
+                return true;
+            case MD_ORIGINAL_LANGUAGE:
+                singleMovie.original_language = nextString(reader);
+                return true;
+            case MD_TITLE:
+                singleMovie.title = nextString(reader);
+                return true;
+            case MD_BACKDROP_PATH:
+                singleMovie.backdrop_path = nextString(reader);
+                return true;
+            case MD_POPULARITY:
+                singleMovie.popularity = nextDouble(reader);
+                return true;
+            case MD_VOTE_COUNT:
+                singleMovie.vote_count = nextInt(reader);
+                return true;
+            case MD_VIDEO:
+                singleMovie.video = nextBoolean(reader);
+                return true;
+            case MD_VOTE_AVERAGE:
+                singleMovie.vote_average = nextDouble(reader);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Reads a single movie from a list of movies
+    private static final JsonObjectReader<MovieData> MOVIE_READER = new JsonObjectReader<MovieData>()
+    {
+        @Override
+        public MovieData readObject(JsonReader reader) throws IOException
+        {
             MovieData singleMovie = new MovieData();
 
-            // Retrieve and store all the data about a single movie
-            singleMovie.poster_path = singleMovieJSON.getString(MD_POSTER_PATH);
-            singleMovie.adult = singleMovieJSON.getString(MD_ADULT);
-            singleMovie.overview = singleMovieJSON.getString(MD_OVERVIEW);
-            String releaseData = singleMovieJSON.getString(MD_RELEASE_DATE);
-            releaseData = releaseData.substring(0,releaseData.indexOf('-'));
-            singleMovie.release_date = releaseData;
-            singleMovie.id = singleMovieJSON.getString(MD_ID);
-            singleMovie.original_title = singleMovieJSON.getString(MD_ORIGINAL_TITLE);
-            singleMovie.original_language = singleMovieJSON.getString(MD_ORIGINAL_LANGUAGE);
-            singleMovie.title = singleMovieJSON.getString(MD_TITLE);
-            singleMovie.backdrop_path = singleMovieJSON.getString(MD_BACKDROP_PATH);
-            singleMovie.popularity = singleMovieJSON.getString(MD_POPULARITY);
-            singleMovie.vote_count = singleMovieJSON.getString(MD_VOTE_COUNT);
-            singleMovie.video = singleMovieJSON.getString(MD_VIDEO);
-            singleMovie.vote_average = singleMovieJSON.getString(MD_VOTE_AVERAGE) + "/10";
+            reader.beginObject();
+            while (reader.hasNext())
+            {
+                if (!readMovieField(reader, reader.nextName(), singleMovie))
+                {
+                    // genre ids and any other fields we don't display
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
 
             Log.v(TAG, "Created the MovieData objects for the movie " + singleMovie.original_title);
+            return singleMovie;
+        }
+    };
+
+    // Reads a single trailer
+    private static final JsonObjectReader<TrailerData> TRAILER_READER = new JsonObjectReader<TrailerData>()
+    {
+        @Override
+        public TrailerData readObject(JsonReader reader) throws IOException
+        {
+            TrailerData singleTrailer = new TrailerData();
 
-            // save the single movies data in the list of all the movies
-            parsedMovieData.add(singleMovie);
+            reader.beginObject();
+            while (reader.hasNext())
+            {
+                String name = reader.nextName();
+                switch (name)
+                {
+                    case TD_KEY:
+                        singleTrailer.setTrailerKey(nextString(reader));
+                        break;
+                    case TD_SITE:
+                        singleTrailer.trailerSite = nextString(reader);
+                        break;
+                    case TD_TYPE:
+                        singleTrailer.trailerType = nextString(reader);
+                        break;
+                    case TD_NAME:
+                        singleTrailer.trailerName = nextString(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+
+            Log.v(TAG, "Created the TrailerData objects for the trailer " + singleTrailer.trailerName);
+            return singleTrailer;
         }
+    };
 
-        // Return the movie data
-        return parsedMovieData;
-    }
-}
\ No newline at end of file
+    // Reads a single review
+    private static final JsonObjectReader<ReviewData> REVIEW_READER = new JsonObjectReader<ReviewData>()
+    {
+        @Override
+        public ReviewData readObject(JsonReader reader) throws IOException
+        {
+            ReviewData singleReview = new ReviewData();
+
+            reader.beginObject();
+            while (reader.hasNext())
+            {
+                String name = reader.nextName();
+                switch (name)
+                {
+                    case RD_ID:
+                        singleReview.reviewId = nextString(reader);
+                        break;
+                    case RD_AUTHOR:
+                        singleReview.reviewerName = nextString(reader);
+                        break;
+                    case RD_CONTENT:
+                        singleReview.reviewContent = nextString(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+
+            Log.v(TAG, "Adding ReviewData for the review by " + singleReview.reviewerName);
+            return singleReview;
+        }
+    };
+}
@@ -0,0 +1,588 @@
+package utilities;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stores theMovieDB api responses on disk so the same payload isn't downloaded again every time
+ * the user switches filters or reopens a movie.
+ * <p>
+ * Responses are keyed by their URL without the api token. Each endpoint has its own time to live,
+ * once a response is older than that it is revalidated with the ETag and Last-Modified headers the
+ * server sent. The total size of the stored responses is bounded and the least recently used
+ * responses are removed first. If the server can't be reached, or fails with a server error, the
+ * stored response is used even if it is older than its time to live.
+ * <p>
+ * This class only depends on java.io and java.net so it can be tested against a local server on the JVM.
+ */
+public final class TheMovieDBResponseCache {
+
+    // The host of theMovieDB api, responses from any other host are not cached
+    private static final String API_HOST = "api.themoviedb.org";
+
+    // The query parameter holding the api token, it is removed from the cache keys
+    private static final String API_TOKEN_PARAM = "api_key";
+
+    // The time to live of each endpoint
+    private static final long MINUTE_MILLIS = 60 * 1000;
+    private static final long LIST_TIME_TO_LIVE = 15 * MINUTE_MILLIS;
+    private static final long VIDEOS_TIME_TO_LIVE = 24 * 60 * MINUTE_MILLIS;
+    private static final long REVIEWS_TIME_TO_LIVE = 6 * 60 * MINUTE_MILLIS;
+    private static final long DEFAULT_TIME_TO_LIVE = 60 * MINUTE_MILLIS;
+
+    // The last path segment of the endpoints that have their own time to live
+    private static final String POPULAR_PATH = "popular";
+    private static final String TOP_RATED_PATH = "top_rated";
+    private static final String VIDEOS_PATH = "videos";
+    private static final String REVIEWS_PATH = "reviews";
+
+    // The path of movie searches, which aren't cached on disk
+    private static final String SEARCH_PATH = "/3/search/movie";
+
+    // The file extensions of the response body and the response's headers
+    private static final String BODY_EXTENSION = ".body";
+    private static final String METADATA_EXTENSION = ".meta";
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    // A temporary body that hasn't been written to for this long was left by a response that
+    // never finished being stored, a body being stored is written to at least every read time out
+    private static final long ORPHANED_TEMPORARY_MILLIS = 10 * MINUTE_MILLIS;
+
+    // The headers used to revalidate a stored response
+    private static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+    private static final String IF_MODIFIED_SINCE_HEADER = "If-Modified-Since";
+    private static final String ETAG_HEADER = "ETag";
+    private static final String LAST_MODIFIED_HEADER = "Last-Modified";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Opens the connection a response is requested with
+     */
+    public interface Connector {
+        HttpURLConnection open(URL url) throws IOException;
+    }
+
+    /**
+     * A stored response and the headers needed to revalidate it
+     */
+    public static final class Entry {
+        final String key;
+        final File body;
+        final String eTag;
+        final String lastModified;
+        final long fetchedAt;
+
+        Entry(String key, File body, String eTag, String lastModified, long fetchedAt) {
+            this.key = key;
+            this.body = body;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.fetchedAt = fetchedAt;
+        }
+
+        /**
+         * @return the ETag the server sent with the response or null if it didn't send one
+         */
+        public String getETag() {
+            return eTag;
+        }
+
+        /**
+         * @return the Last-Modified header the server sent with the response or null if it didn't send one
+         */
+        public String getLastModified() {
+            return lastModified;
+        }
+    }
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+
+    // The number of bytes stored in the cache, -1 until it has been measured
+    private long mSize = -1;
+
+    private final AtomicInteger mHitCount = new AtomicInteger();
+    private final AtomicInteger mRevalidatedCount = new AtomicInteger();
+    private final AtomicInteger mMissCount = new AtomicInteger();
+    private final AtomicInteger mStaleCount = new AtomicInteger();
+
+    /**
+     * @param directory where the responses are stored
+     * @param maxBytes  the maximum number of bytes of responses to store
+     */
+    public TheMovieDBResponseCache(File directory, long maxBytes) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * @return the key the response of the url is stored under, this is the url without the api token
+     */
+    public static String getKey(URL url) {
+        String query = url.getQuery();
+        StringBuilder key = new StringBuilder();
+        key.append(url.getProtocol()).append("://").append(url.getHost()).append(url.getPath());
+
+        if (query != null) {
+            char separator = '?';
+            for (String parameter : query.split("&")) {
+                if (!parameter.startsWith(API_TOKEN_PARAM + "=")) {
+                    key.append(separator).append(parameter);
+                    separator = '&';
+                }
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return how long the response of the url can be used before it must be revalidated, or -1
+     * if responses from the url shouldn't be cached
+     */
+    public static long getTimeToLive(URL url) {
+        if (!API_HOST.equals(url.getHost())) {
+            return -1;
+        }
+
+        String path = url.getPath();
+
+        // every prefix the user types is a different search, MovieSearcher keeps recent searches in
+        // memory rather than filling the disk cache with them
+        if (SEARCH_PATH.equals(path)) {
+            return -1;
+        }
+
+        String lastSegment = path.substring(path.lastIndexOf('/') + 1);
+        switch (lastSegment) {
+            case POPULAR_PATH:
+            case TOP_RATED_PATH:
+                return LIST_TIME_TO_LIVE;
+            case VIDEOS_PATH:
+                return VIDEOS_TIME_TO_LIVE;
+            case REVIEWS_PATH:
+                return REVIEWS_TIME_TO_LIVE;
+            default:
+                return DEFAULT_TIME_TO_LIVE;
+        }
+    }
+
+    /**
+     * @return true if the response of the url can be stored
+     */
+    public static boolean isCacheable(URL url) {
+        return getTimeToLive(url) >= 0;
+    }
+
+    /**
+     * @return true if the entry is younger than the time to live of its endpoint
+     */
+    public boolean isFresh(Entry entry, long now) {
+        try {
+            return now - entry.fetchedAt < getTimeToLive(new URL(entry.key));
+        } catch (MalformedURLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the stored response for the key or null if there isn't one
+     */
+    public synchronized Entry get(String key) {
+        String fileName = fileName(key);
+        File body = new File(mDirectory, fileName + BODY_EXTENSION);
+        File metadata = new File(mDirectory, fileName + METADATA_EXTENSION);
+        if (!body.exists() || !metadata.exists()) {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(metadata));
+            String storedKey = in.readUTF();
+            String eTag = readNullableString(in);
+            String lastModified = readNullableString(in);
+            long fetchedAt = in.readLong();
+
+            // two keys with the same hash should never share an entry
+            if (!key.equals(storedKey)) {
+                return null;
+            }
+            return new Entry(key, body, eTag, lastModified, fetchedAt);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Get the response of the url. A fresh stored response is used without contacting the server,
+     * an older one is revalidated with the server and a missing one is downloaded and stored.
+     *
+     * @param url       the url of the response
+     * @param connector opens the connection if the server has to be contacted
+     * @param now       the current time in milliseconds since the epoch
+     * @return a stream of the body of the response
+     * @throws IOException if the response could not be retrieved and there is no stored response
+     */
+    public InputStream fetch(URL url, Connector connector, long now) throws IOException {
+        String key = getKey(url);
+        Entry cachedResponse = get(key);
+
+        if (cachedResponse != null && isFresh(cachedResponse, now)) {
+            InputStream hit = open(cachedResponse);
+            if (hit != null) {
+                mHitCount.incrementAndGet();
+                return hit;
+            }
+            // the response was evicted since it was looked up
+            cachedResponse = null;
+        }
+
+        InputStream response = request(key, url, connector, cachedResponse);
+        if (response == null) {
+            // the server confirmed the response was unchanged but it was evicted in the meantime
+            response = request(key, url, connector, null);
+        }
+        return response;
+    }
+
+    /**
+     * Request the response from the server, asking it to only send the body if it has changed
+     * since the stored response was received.
+     *
+     * @return a stream of the body or null if the server confirmed the stored response is
+     * unchanged but it has since been evicted
+     */
+    private InputStream request(String key, URL url, Connector connector, Entry cachedResponse) throws IOException {
+        HttpURLConnection connection = connector.open(url);
+        if (cachedResponse != null) {
+            if (cachedResponse.eTag != null) {
+                connection.setRequestProperty(IF_NONE_MATCH_HEADER, cachedResponse.eTag);
+            }
+            if (cachedResponse.lastModified != null) {
+                connection.setRequestProperty(IF_MODIFIED_SINCE_HEADER, cachedResponse.lastModified);
+            }
+        }
+
+        int responseCode;
+        try {
+            responseCode = connection.getResponseCode();
+        } catch (IOException e) {
+            // if the server can't be reached an old response is better than no response
+            InputStream stale = openStale(cachedResponse);
+            if (stale != null) {
+                return stale;
+            }
+            throw e;
+        }
+
+        if (responseCode >= HttpURLConnection.HTTP_INTERNAL_ERROR && cachedResponse != null) {
+            // the same goes for a server that is failing
+            InputStream stale = openStale(cachedResponse);
+            if (stale != null) {
+                HttpClient.release(connection);
+                return stale;
+            }
+        }
+
+        if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cachedResponse != null) {
+            // release rather than disconnect so the connection can be reused
+            HttpClient.release(connection);
+            return openRevalidated(cachedResponse);
+        }
+
+        // getBody throws if the server returned an error
+        return put(key, HttpClient.getBody(connection),
+                connection.getHeaderField(ETAG_HEADER), connection.getHeaderField(LAST_MODIFIED_HEADER));
+    }
+
+    /**
+     * Record that the server confirmed the entry is unchanged, open its body and count it as a
+     * revalidated hit
+     *
+     * @return the body or null if the entry has been evicted
+     */
+    private synchronized InputStream openRevalidated(Entry entry) throws IOException {
+        if (!entry.body.exists()) {
+            return null;
+        }
+        mRevalidatedCount.incrementAndGet();
+        writeMetadata(entry.key, entry.eTag, entry.lastModified, System.currentTimeMillis());
+        return open(entry);
+    }
+
+    /**
+     * Open the body of an entry that could not be revalidated because the server could not be
+     * reached or failed. This is counted as stale rather than as a hit.
+     *
+     * @return the body or null if there is no entry or it has been evicted
+     */
+    private InputStream openStale(Entry entry) throws IOException {
+        if (entry == null) {
+            return null;
+        }
+        InputStream stale = open(entry);
+        if (stale != null) {
+            mStaleCount.incrementAndGet();
+        }
+        return stale;
+    }
+
+    /**
+     * Store a new response and count it as a miss.
+     *
+     * @param key          the key the response is stored under
+     * @param body         the body of the response, it is read completely and closed
+     * @param eTag         the ETag header of the response or null
+     * @param lastModified the Last-Modified header of the response or null
+     * @return a stream of the stored body
+     * @throws IOException if the body could not be read or stored
+     */
+    public InputStream put(String key, InputStream body, String eTag, String lastModified) throws IOException {
+        mMissCount.incrementAndGet();
+
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            throw new IOException("Unable to create " + mDirectory);
+        }
+
+        String fileName = fileName(key);
+        File temporaryBody = File.createTempFile(fileName, TEMPORARY_EXTENSION, mDirectory);
+        boolean written = false;
+        try {
+            OutputStream out = new FileOutputStream(temporaryBody);
+            try {
+                HttpClient.copy(body, out);
+            } finally {
+                out.close();
+            }
+            written = true;
+        } finally {
+            body.close();
+            if (!written) {
+                temporaryBody.delete();
+            }
+        }
+
+        File storedBody = new File(mDirectory, fileName + BODY_EXTENSION);
+        synchronized (this) {
+            measureSize();
+            mSize -= storedBody.length();
+            if (!temporaryBody.renameTo(storedBody)) {
+                temporaryBody.delete();
+                throw new IOException("Unable to store the response for " + key);
+            }
+            mSize += storedBody.length();
+            writeMetadata(key, eTag, lastModified, System.currentTimeMillis());
+
+            // the stream stays readable even if the entry is evicted while it is being read
+            InputStream storedStream = new FileInputStream(storedBody);
+            trim();
+            return storedStream;
+        }
+    }
+
+    /**
+     * @return the number of responses served from the cache without contacting the server
+     */
+    public int getHitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * @return the number of responses served from the cache after the server confirmed they were unchanged
+     */
+    public int getRevalidatedCount() {
+        return mRevalidatedCount.get();
+    }
+
+    /**
+     * @return the number of responses that had to be downloaded
+     */
+    public int getMissCount() {
+        return mMissCount.get();
+    }
+
+    /**
+     * @return the number of stored responses used because the server could not be reached or failed
+     */
+    public int getStaleCount() {
+        return mStaleCount.get();
+    }
+
+    /**
+     * @return the number of bytes of responses currently stored
+     */
+    public synchronized long getSize() {
+        measureSize();
+        return mSize;
+    }
+
+    /**
+     * Open the body of the entry while trim can't remove it. Once it is open the stream stays
+     * readable even if the entry is evicted.
+     *
+     * @return the body or null if the entry has been evicted
+     */
+    private synchronized InputStream open(Entry entry) throws IOException {
+        // the last modified time of the body is used to find the least recently used responses
+        entry.body.setLastModified(System.currentTimeMillis());
+        try {
+            return new FileInputStream(entry.body);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
+
+    private synchronized void writeMetadata(String key, String eTag, String lastModified, long fetchedAt) throws IOException {
+        File metadata = new File(mDirectory, fileName(key) + METADATA_EXTENSION);
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(metadata));
+        try {
+            out.writeUTF(key);
+            writeNullableString(out, eTag);
+            writeNullableString(out, lastModified);
+            out.writeLong(fetchedAt);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Remove the least recently used responses until the cache is within its size limit, along
+     * with the temporary bodies of responses that never finished being stored
+     */
+    private void trim() {
+        if (mSize <= mMaxBytes) {
+            return;
+        }
+
+        removeOrphanedTemporaryFiles();
+
+        File[] bodies = listBodies();
+        Arrays.sort(bodies, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                long difference = first.lastModified() - second.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+
+        for (File body : bodies) {
+            if (mSize <= mMaxBytes) {
+                break;
+            }
+            long length = body.length();
+            String name = body.getName();
+            File metadata = new File(mDirectory,
+                    name.substring(0, name.length() - BODY_EXTENSION.length()) + METADATA_EXTENSION);
+            if (body.delete()) {
+                mSize -= length;
+                metadata.delete();
+            }
+        }
+    }
+
+    private void measureSize() {
+        if (mSize >= 0) {
+            return;
+        }
+
+        // a process that was killed while storing a response leaves its temporary body behind
+        removeOrphanedTemporaryFiles();
+
+        mSize = 0;
+        for (File body : listBodies()) {
+            mSize += body.length();
+        }
+    }
+
+    /**
+     * Delete the temporary bodies that haven't been written to recently. Bodies that are still
+     * being written are kept, they are stored without holding the lock.
+     */
+    private void removeOrphanedTemporaryFiles() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long orphanedBefore = System.currentTimeMillis() - ORPHANED_TEMPORARY_MILLIS;
+        for (File file : files) {
+            if (file.getName().endsWith(TEMPORARY_EXTENSION) && file.lastModified() < orphanedBefore) {
+                file.delete();
+            }
+        }
+    }
+
+    private File[] listBodies() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+
+        int count = 0;
+        File[] bodies = new File[files.length];
+        for (File file : files) {
+            if (file.getName().endsWith(BODY_EXTENSION)) {
+                bodies[count++] = file;
+            }
+        }
+        return Arrays.copyOf(bodies, count);
+    }
+
+    /**
+     * @return the MD5 hash of the key as a hex string so it can be used as a file name
+     */
+    private static String fileName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes("UTF-8"));
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+                hex[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xf];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException | IOException e) {
+            // MD5 and UTF-8 are always available
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void closeQuietly(InputStream in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
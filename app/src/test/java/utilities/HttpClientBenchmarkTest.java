@@ -0,0 +1,321 @@
+package utilities;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import javax.net.ssl.HandshakeCompletedEvent;
+import javax.net.ssl.HandshakeCompletedListener;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Stands in for theMovieDB with a local HTTPS server to compare the requests HttpClient makes
+ * against requests that open a new connection each time and download the body uncompressed. The
+ * server's certificate is in a test keystore that both clients trust, and the TLS handshakes each
+ * client makes are counted.
+ * <p>
+ * The local server only answers promptly over a reused connection with TCP_NODELAY, which the
+ * build turns on with the sun.net.httpserver.nodelay property.
+ */
+public class HttpClientBenchmarkTest {
+
+    private static final int REQUESTS = 200;
+    private static final int TIME_OUT_MILLIS = 2000;
+
+    // holds the server's key and self signed certificate for 127.0.0.1
+    private static final String KEYSTORE = "benchmark_server.jks";
+    private static final char[] KEYSTORE_PASSWORD = "benchmark".toCharArray();
+
+    // how long to wait for the handshake listeners, which are notified on another thread
+    private static final long HANDSHAKE_WAIT_MILLIS = 5000;
+
+    // roughly the size and repetitiveness of a page of popular movies
+    private static final int MOVIES_ON_PAGE = 20;
+
+    private HttpsServer mServer;
+    private SSLSocketFactory mClientSocketFactory;
+    private byte[] mPage;
+    private byte[] mCompressedPage;
+
+    // the ports of the client's connections, one for each connection that was opened
+    private final Set<Integer> mClientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+
+    // the number of body bytes the server sent
+    private final AtomicLong mBytesSent = new AtomicLong();
+
+    // the number of TLS sockets the clients opened and the number that completed a handshake
+    private final AtomicInteger mClientSockets = new AtomicInteger();
+    private final AtomicInteger mHandshakes = new AtomicInteger();
+
+    @Before
+    public void startServer() throws IOException, GeneralSecurityException {
+        mPage = buildMoviePage();
+        mCompressedPage = gzip(mPage);
+
+        KeyStore keyStore = loadKeyStore();
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, KEYSTORE_PASSWORD);
+        SSLContext serverContext = SSLContext.getInstance("TLS");
+        serverContext.init(keyManagers.getKeyManagers(), null, null);
+
+        // the clients trust the server's self signed certificate and nothing else
+        TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagers.init(keyStore);
+        SSLContext clientContext = SSLContext.getInstance("TLS");
+        clientContext.init(null, trustManagers.getTrustManagers(), null);
+        mClientSocketFactory = new HandshakeCountingSocketFactory(clientContext.getSocketFactory());
+
+        mServer = HttpsServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.setHttpsConfigurator(new HttpsConfigurator(serverContext));
+        mServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mClientPorts.add(exchange.getRemoteAddress().getPort());
+
+                byte[] body = mPage;
+                String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                    body = mCompressedPage;
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                }
+
+                mBytesSent.addAndGet(body.length);
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+                exchange.close();
+            }
+        });
+        mServer.start();
+    }
+
+    @After
+    public void stopServer() {
+        mServer.stop(0);
+    }
+
+    @Test
+    public void pooledGzipRequestsReuseAConnectionAndSendFewerBytes() throws IOException, InterruptedException {
+        URL url = new URL("https", "127.0.0.1", mServer.getAddress().getPort(), "/3/movie/popular");
+
+        // warm up both paths so the timings don't include class loading
+        requestWithHttpClient(url);
+        requestWithNewConnection(url);
+        awaitHandshakes();
+        resetCounts();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            assertArrayEquals(mPage, requestWithHttpClient(url));
+        }
+        long pooledNanos = System.nanoTime() - start;
+        int pooledConnections = mClientPorts.size();
+        int pooledHandshakes = awaitHandshakes();
+        long pooledBytes = mBytesSent.get();
+
+        resetCounts();
+        start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            assertArrayEquals(mPage, requestWithNewConnection(url));
+        }
+        long newConnectionNanos = System.nanoTime() - start;
+        int newConnections = mClientPorts.size();
+        int newConnectionHandshakes = awaitHandshakes();
+        long uncompressedBytes = mBytesSent.get();
+
+        // drained bodies return their connection to the pool, so the handshake is only made once
+        assertTrue("HttpClient opened " + pooledConnections + " connections", pooledConnections <= 2);
+        assertTrue("HttpClient made " + pooledHandshakes + " TLS handshakes", pooledHandshakes <= 2);
+
+        // every other request pays for a TCP and a TLS handshake
+        assertTrue(newConnections >= REQUESTS / 2);
+        assertTrue("New connections made " + newConnectionHandshakes + " TLS handshakes",
+                newConnectionHandshakes >= REQUESTS / 2);
+        assertTrue("HttpClient took " + pooledNanos / 1000000 + " ms and new connections "
+                + newConnectionNanos / 1000000 + " ms", pooledNanos < newConnectionNanos);
+
+        // the repetitive json compresses to well under half its size
+        assertTrue(pooledBytes * 2 < uncompressedBytes);
+    }
+
+    private byte[] requestWithHttpClient(URL url) throws IOException {
+        HttpURLConnection connection = HttpClient.openConnection(url, TIME_OUT_MILLIS, TIME_OUT_MILLIS);
+        ((HttpsURLConnection) connection).setSSLSocketFactory(mClientSocketFactory);
+        return HttpClient.readFully(HttpClient.getBody(connection));
+    }
+
+    /**
+     * Request the url the way NetworkUtils did before connections were pooled and bodies compressed
+     */
+    private byte[] requestWithNewConnection(URL url) throws IOException {
+        HttpsURLConnection connection = (HttpsURLConnection) url.openConnection();
+        connection.setSSLSocketFactory(mClientSocketFactory);
+        connection.setConnectTimeout(TIME_OUT_MILLIS);
+        connection.setReadTimeout(TIME_OUT_MILLIS);
+        connection.setRequestProperty("Connection", "close");
+        try {
+            return HttpClient.readFully(connection.getInputStream());
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private void resetCounts() {
+        mClientPorts.clear();
+        mBytesSent.set(0);
+        mClientSockets.set(0);
+        mHandshakes.set(0);
+    }
+
+    /**
+     * Wait for the listeners of every socket opened since the counts were reset to be notified
+     *
+     * @return the number of handshakes that were completed
+     */
+    private int awaitHandshakes() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + HANDSHAKE_WAIT_MILLIS;
+        while (mHandshakes.get() < mClientSockets.get() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        return mHandshakes.get();
+    }
+
+    private static KeyStore loadKeyStore() throws IOException, GeneralSecurityException {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        InputStream in = HttpClientBenchmarkTest.class.getResourceAsStream(KEYSTORE);
+        try {
+            keyStore.load(in, KEYSTORE_PASSWORD);
+        } finally {
+            in.close();
+        }
+        return keyStore;
+    }
+
+    /**
+     * Counts the TLS sockets the clients open and the handshakes they complete
+     */
+    private class HandshakeCountingSocketFactory extends SSLSocketFactory {
+
+        private final SSLSocketFactory mDelegate;
+
+        private final HandshakeCompletedListener mListener = new HandshakeCompletedListener() {
+            @Override
+            public void handshakeCompleted(HandshakeCompletedEvent event) {
+                mHandshakes.incrementAndGet();
+            }
+        };
+
+        HandshakeCountingSocketFactory(SSLSocketFactory delegate) {
+            mDelegate = delegate;
+        }
+
+        private Socket count(Socket socket) {
+            mClientSockets.incrementAndGet();
+            ((SSLSocket) socket).addHandshakeCompletedListener(mListener);
+            return socket;
+        }
+
+        @Override
+        public String[] getDefaultCipherSuites() {
+            return mDelegate.getDefaultCipherSuites();
+        }
+
+        @Override
+        public String[] getSupportedCipherSuites() {
+            return mDelegate.getSupportedCipherSuites();
+        }
+
+        @Override
+        public Socket createSocket() throws IOException {
+            return count(mDelegate.createSocket());
+        }
+
+        @Override
+        public Socket createSocket(Socket socket, String host, int port, boolean autoClose) throws IOException {
+            return count(mDelegate.createSocket(socket, host, port, autoClose));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return count(mDelegate.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+            return count(mDelegate.createSocket(host, port, localHost, localPort));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress host, int port) throws IOException {
+            return count(mDelegate.createSocket(host, port));
+        }
+
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort)
+                throws IOException {
+            return count(mDelegate.createSocket(address, port, localAddress, localPort));
+        }
+    }
+
+    private static byte[] buildMoviePage() throws IOException {
+        StringBuilder page = new StringBuilder("{\"page\":1,\"total_pages\":500,\"results\":[");
+        for (int i = 0; i < MOVIES_ON_PAGE; i++) {
+            if (i > 0) {
+                page.append(',');
+            }
+            page.append("{\"poster_path\":\"/poster").append(i).append(".jpg\",\"adult\":false,")
+                    .append("\"overview\":\"A story about movie number ").append(i)
+                    .append(" that goes on for a while so the overview is about as long as a real one, ")
+                    .append("with a hero, a villain and a twist nobody saw coming.\",")
+                    .append("\"release_date\":\"2017-06-").append(10 + i % 20).append("\",")
+                    .append("\"genre_ids\":[28,12,878],\"id\":").append(100000 + i).append(',')
+                    .append("\"original_title\":\"Movie ").append(i).append("\",\"original_language\":\"en\",")
+                    .append("\"title\":\"Movie ").append(i).append("\",\"backdrop_path\":\"/backdrop")
+                    .append(i).append(".jpg\",\"popularity\":").append(100.5 - i).append(',')
+                    .append("\"vote_count\":").append(1000 + i).append(",\"video\":false,\"vote_average\":7.")
+                    .append(i % 10).append('}');
+        }
+        page.append("],\"total_results\":10000}");
+        return page.toString().getBytes("UTF-8");
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        GZIPOutputStream out = new GZIPOutputStream(compressed);
+        out.write(body);
+        out.close();
+        return compressed.toByteArray();
+    }
+}
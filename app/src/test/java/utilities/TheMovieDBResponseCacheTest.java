@@ -0,0 +1,213 @@
+package utilities;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs TheMovieDBResponseCache against a local server standing in for theMovieDB. The urls are
+ * theMovieDB's so they get its time to live, the connector sends them to the local server.
+ */
+public class TheMovieDBResponseCacheTest {
+
+    private static final String POPULAR_URL = "https://api.themoviedb.org/3/movie/popular?page=1&api_key=test";
+
+    private static final int TIME_OUT_MILLIS = 2000;
+
+    // file times may only be accurate to the second, so waiting this long orders two uses
+    private static final long FILE_TIME_RESOLUTION_MILLIS = 1100;
+
+    @Rule
+    public TemporaryFolder mCacheDirectory = new TemporaryFolder();
+
+    private HttpServer mServer;
+    private TheMovieDBResponseCache mCache;
+
+    // what the local server responds with
+    private volatile int mStatus = HttpURLConnection.HTTP_OK;
+    private volatile String mBody = "first";
+    private volatile String mETag;
+
+    // what the local server received
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+    private volatile String mLastIfNoneMatch;
+
+    // sends theMovieDB urls to the local server
+    private final TheMovieDBResponseCache.Connector mConnector = new TheMovieDBResponseCache.Connector() {
+        @Override
+        public HttpURLConnection open(URL url) throws IOException {
+            URL localUrl = new URL("http", "127.0.0.1", mServer.getAddress().getPort(), url.getFile());
+            return HttpClient.openConnection(localUrl, TIME_OUT_MILLIS, TIME_OUT_MILLIS);
+        }
+    };
+
+    @Before
+    public void startServer() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mRequestCount.incrementAndGet();
+                mLastIfNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+
+                String eTag = mETag;
+                if (eTag != null && eTag.equals(mLastIfNoneMatch)) {
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+                } else {
+                    if (eTag != null) {
+                        exchange.getResponseHeaders().set("ETag", eTag);
+                    }
+                    byte[] body = mBody.getBytes("UTF-8");
+                    exchange.sendResponseHeaders(mStatus, body.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(body);
+                    out.close();
+                }
+                exchange.close();
+            }
+        });
+        mServer.start();
+
+        mCache = new TheMovieDBResponseCache(mCacheDirectory.getRoot(), 1024 * 1024);
+    }
+
+    @After
+    public void stopServer() {
+        mServer.stop(0);
+    }
+
+    @Test
+    public void freshResponseIsServedWithoutContactingTheServer() throws IOException {
+        long now = System.currentTimeMillis();
+        assertEquals("first", fetch(POPULAR_URL, now));
+
+        mBody = "second";
+        assertEquals("first", fetch(POPULAR_URL, now));
+
+        assertEquals(1, mRequestCount.get());
+        assertEquals(1, mCache.getMissCount());
+        assertEquals(1, mCache.getHitCount());
+    }
+
+    @Test
+    public void expiredResponseIsRevalidatedWithItsETag() throws IOException {
+        mETag = "\"v1\"";
+        long now = System.currentTimeMillis();
+        assertEquals("first", fetch(POPULAR_URL, now));
+
+        // the server answers 304 without a body, the stored body is served
+        mBody = "not sent";
+        assertEquals("first", fetch(POPULAR_URL, afterTimeToLive(now)));
+
+        assertEquals(2, mRequestCount.get());
+        assertEquals("\"v1\"", mLastIfNoneMatch);
+        assertEquals(1, mCache.getRevalidatedCount());
+    }
+
+    @Test
+    public void responseExpiresAfterItsTimeToLive() throws IOException {
+        long now = System.currentTimeMillis();
+        assertEquals("first", fetch(POPULAR_URL, now));
+
+        mBody = "second";
+        long timeToLive = TheMovieDBResponseCache.getTimeToLive(new URL(POPULAR_URL));
+        assertEquals("first", fetch(POPULAR_URL, now + timeToLive - 1000));
+        assertEquals(1, mRequestCount.get());
+
+        assertEquals("second", fetch(POPULAR_URL, afterTimeToLive(now)));
+        assertEquals(2, mRequestCount.get());
+        assertNull(mLastIfNoneMatch);
+    }
+
+    @Test
+    public void leastRecentlyUsedResponsesAreRemoved() throws Exception {
+        char[] hundredBytes = new char[100];
+        Arrays.fill(hundredBytes, 'x');
+        mBody = new String(hundredBytes);
+        mCache = new TheMovieDBResponseCache(mCacheDirectory.getRoot(), 250);
+
+        String first = "https://api.themoviedb.org/3/movie/popular?page=1&api_key=test";
+        String second = "https://api.themoviedb.org/3/movie/popular?page=2&api_key=test";
+        String third = "https://api.themoviedb.org/3/movie/popular?page=3&api_key=test";
+        long now = System.currentTimeMillis();
+
+        fetch(first, now);
+        fetch(second, now);
+        Thread.sleep(FILE_TIME_RESOLUTION_MILLIS);
+
+        // using the first page makes the second page the least recently used
+        fetch(first, now);
+        Thread.sleep(FILE_TIME_RESOLUTION_MILLIS);
+
+        fetch(third, now);
+
+        assertTrue(mCache.getSize() <= 250);
+        assertNotNull(mCache.get(TheMovieDBResponseCache.getKey(new URL(first))));
+        assertNull(mCache.get(TheMovieDBResponseCache.getKey(new URL(second))));
+        assertNotNull(mCache.get(TheMovieDBResponseCache.getKey(new URL(third))));
+    }
+
+    @Test
+    public void staleResponseIsServedWhenTheServerCantBeReached() throws IOException {
+        long now = System.currentTimeMillis();
+        assertEquals("first", fetch(POPULAR_URL, now));
+
+        mServer.stop(0);
+        assertEquals("first", fetch(POPULAR_URL, afterTimeToLive(now)));
+        assertEquals(1, mCache.getStaleCount());
+    }
+
+    @Test
+    public void staleResponseIsServedWhenTheServerFails() throws IOException {
+        long now = System.currentTimeMillis();
+        assertEquals("first", fetch(POPULAR_URL, now));
+
+        mStatus = HttpURLConnection.HTTP_UNAVAILABLE;
+        mBody = "error";
+        assertEquals("first", fetch(POPULAR_URL, afterTimeToLive(now)));
+        assertEquals(2, mRequestCount.get());
+        assertEquals(1, mCache.getStaleCount());
+    }
+
+    @Test
+    public void serverErrorWithoutAStoredResponseFails() throws IOException {
+        mStatus = HttpURLConnection.HTTP_UNAVAILABLE;
+        try {
+            fetch(POPULAR_URL, System.currentTimeMillis());
+            fail("The error response should not be served");
+        } catch (IOException e) {
+            // expected
+        }
+        assertNull(mCache.get(TheMovieDBResponseCache.getKey(new URL(POPULAR_URL))));
+    }
+
+    private String fetch(String url, long now) throws IOException {
+        InputStream body = mCache.fetch(new URL(url), mConnector, now);
+        return new String(HttpClient.readFully(body), "UTF-8");
+    }
+
+    private static long afterTimeToLive(long fetchedAt) throws IOException {
+        return fetchedAt + TheMovieDBResponseCache.getTimeToLive(new URL(POPULAR_URL)) + 1000;
+    }
+}